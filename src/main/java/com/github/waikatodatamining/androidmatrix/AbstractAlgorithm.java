@@ -19,6 +19,11 @@ package com.github.waikatodatamining.androidmatrix;
 
 import java.io.InputStream;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.Set;
 
 /**
  * Ancestor for matrix algorithms.
@@ -28,6 +33,9 @@ import java.io.Serializable;
 public abstract class AbstractAlgorithm
   implements Algorithm, Serializable {
 
+  /** for splitting expensive calls across cores, null if sequential. */
+  protected transient ParallelExecution m_ParallelExecution;
+
   /**
    * Initializes the algorithm.
    *
@@ -37,10 +45,317 @@ public abstract class AbstractAlgorithm
     initialize(stream);
   }
 
+  /**
+   * For sub-classes that get initialized from other data than a stream,
+   * e.g., derived views of loaded algorithms.
+   */
+  protected AbstractAlgorithm() {
+  }
+
   /**
    * Configures the algorithm with the data read from the stream.
    *
    * @param stream	the stream to read the setup (eg matrices) from
    */
   protected abstract void initialize(InputStream stream);
+
+  /**
+   * Applies the algorithm to the data, writing the output into the provided
+   * buffer. Performs no size checks, the caller must ensure that the data
+   * has a supported width and the buffer has the width of the output (see
+   * {@link #getOutputWidth(int)}).
+   *
+   * @param data	the data to convert
+   * @param result	the buffer for the converted data
+   * @throws Exception	if conversion fails
+   */
+  protected void applyInto(double[] data, double[] result) throws Exception {
+    double[] output = apply(data);
+    System.arraycopy(output, 0, result, 0, output.length);
+  }
+
+  /**
+   * Applies the algorithm to the values between position and limit of the
+   * data buffer, writing the output at the position of the result buffer.
+   * Advances the positions of both buffers, like the bulk get/put methods
+   * of NIO buffers. Heap and direct buffers are read and written in place,
+   * without copying the data into intermediate arrays.
+   *
+   * @param data	the data to convert
+   * @param result	the buffer for the converted data
+   * @throws Exception	if conversion fails
+   */
+  public void apply(DoubleBuffer data, DoubleBuffer result) throws Exception {
+    int outputWidth = checkBufferWidths(data.remaining(), result.remaining());
+    applyInto(data, result);
+    data.position(data.limit());
+    result.position(result.position() + outputWidth);
+  }
+
+  /**
+   * Applies the algorithm to the doubles between position and limit of the
+   * data buffer, writing the output at the position of the result buffer.
+   * The doubles get read and written in the byte order of the buffers,
+   * use {@link java.nio.ByteOrder#LITTLE_ENDIAN} for the PyMA layout.
+   * Advances the positions of both buffers.
+   *
+   * @param data	the data to convert
+   * @param result	the buffer for the converted data
+   * @throws Exception	if conversion fails
+   */
+  public void apply(ByteBuffer data, ByteBuffer result) throws Exception {
+    if (data.remaining() % Double.BYTES != 0)
+      throw new IllegalArgumentException("Data buffer does not hold whole doubles: " + data.remaining() + " bytes");
+
+    DoubleBuffer output = result.asDoubleBuffer();
+    apply(data.asDoubleBuffer(), output);
+    data.position(data.limit());
+    result.position(result.position() + output.position() * Double.BYTES);
+  }
+
+  /**
+   * Checks the width of the data and the space in the result buffer.
+   *
+   * @param width	the width of the data
+   * @param available	the space in the result buffer
+   * @return		the width of the output
+   * @throws IllegalArgumentException	if the width is not supported or the result buffer is too small
+   */
+  protected int checkBufferWidths(int width, int available) {
+    int required = getInputWidth();
+    if ((required != -1) && (required != width))
+      throw new IllegalArgumentException("Data size doesn't match state size (" + width + " values for " + required + " state columns)");
+
+    int result = getOutputWidth(width);
+    if (result < 1)
+      throw new IllegalArgumentException("No output for data size " + width);
+    if (result > available)
+      throw new IllegalArgumentException("Result buffer too small (" + available + " remaining, " + result + " required)");
+
+    return result;
+  }
+
+  /**
+   * Applies the algorithm to the values between position and limit of the
+   * data buffer, writing the output at the position of the result buffer.
+   * Performs no size checks and leaves the positions unchanged. The default
+   * implementation copies via arrays, sub-classes should read and write the
+   * buffers directly.
+   *
+   * @param data	the data to convert
+   * @param result	the buffer for the converted data
+   * @throws Exception	if conversion fails
+   */
+  protected void applyInto(DoubleBuffer data, DoubleBuffer result) throws Exception {
+    double[] input = new double[data.remaining()];
+    data.duplicate().get(input);
+    result.duplicate().put(apply(input));
+  }
+
+  /**
+   * Returns whether the algorithm can be applied to the data, without
+   * throwing an exception.
+   *
+   * @param data	the data to check
+   * @return		true if applicable
+   */
+  public boolean isApplicable(double[] data) {
+    return (data != null);
+  }
+
+  /**
+   * Returns whether the other algorithm has the same state as this one,
+   * i.e., always produces the same output for the same input.
+   *
+   * @param other	the algorithm to compare with
+   * @return		true if the same state
+   */
+  public boolean hasSameState(AbstractAlgorithm other) {
+    return (this == other);
+  }
+
+  /**
+   * Returns the (approximate) number of bytes of heap the algorithm
+   * retains.
+   *
+   * @return		the bytes
+   * @see MemoryFootprint
+   */
+  public long getRetainedBytes() {
+    return retainedBytes(MemoryFootprint.newSeen());
+  }
+
+  /**
+   * Returns the bytes retained by the state, skipping objects that were
+   * counted already.
+   *
+   * @param seen	the objects counted already
+   * @return		the bytes
+   */
+  protected long retainedBytes(Set<Object> seen) {
+    if (!seen.add(this))
+      return 0;
+    return MemoryFootprint.ALGORITHM_OVERHEAD;
+  }
+
+  /**
+   * Sets how to split expensive calls across cores. Only algorithms with
+   * expensive kernels make use of it, and only for calls with enough work.
+   *
+   * @param value	the execution, null to compute sequentially
+   */
+  public void setParallelExecution(ParallelExecution value) {
+    m_ParallelExecution = value;
+  }
+
+  /**
+   * Returns how expensive calls get split across cores.
+   *
+   * @return		the execution, null if sequential
+   */
+  public ParallelExecution getParallelExecution() {
+    return m_ParallelExecution;
+  }
+
+  /**
+   * Returns the input width the algorithm requires.
+   *
+   * @return		the width, -1 if any width is accepted
+   */
+  public int getInputWidth() {
+    return -1;
+  }
+
+  /**
+   * Returns the input width that generates the given output width.
+   *
+   * @param outputWidth	the width of the output
+   * @return		the width of the input
+   */
+  public int getInputWidth(int outputWidth) {
+    return outputWidth;
+  }
+
+  /**
+   * Returns the width of the output for the given input width.
+   *
+   * @param inputWidth	the width of the input
+   * @return		the width of the output
+   */
+  public int getOutputWidth(int inputWidth) {
+    return inputWidth;
+  }
+
+  /**
+   * Generates synthetic input data that the algorithm can be applied to,
+   * e.g., for warming up.
+   *
+   * @param width	the width of the data
+   * @param random	the random number generator to use
+   * @return		the data
+   */
+  protected double[] sampleInput(int width, Random random) {
+    double[] result = new double[width];
+    for (int i = 0; i < width; i++)
+      result[i] = random.nextDouble();
+
+    return result;
+  }
+
+  /**
+   * Clamps the data into the domain of the algorithm.
+   *
+   * @param data	the data to clamp
+   * @return		the clamped copy of the data, null if not supported
+   */
+  protected double[] clamp(double[] data) {
+    return null;
+  }
+
+  /**
+   * Applies the algorithm to the data, if applicable.
+   *
+   * @param data	the data to convert
+   * @return		the converted data, null if not applicable
+   * @throws Exception	if conversion fails
+   */
+  protected double[] applyIfApplicable(double[] data) throws Exception {
+    if (!isApplicable(data))
+      return null;
+
+    return apply(data);
+  }
+
+  /**
+   * Applies the algorithm to the clamped data.
+   *
+   * @param data	the data to clamp and convert
+   * @return		the converted data, null if the data cannot be clamped
+   * @throws Exception	if conversion fails
+   */
+  protected double[] applyClamped(double[] data) throws Exception {
+    // Clamp the data
+    data = clamp(data);
+    if (data == null)
+      return null;
+
+    return applyIfApplicable(data);
+  }
+
+  /**
+   * Applies the algorithm to a batch of rows, handling rows that the
+   * algorithm cannot process according to the policy. Invalid rows are
+   * detected without throwing exceptions (apart from policy FAIL).
+   *
+   * @param data	the rows to convert
+   * @param policy	how to handle invalid rows
+   * @return		the converted rows and the validity mask
+   * @throws Exception	if conversion fails
+   */
+  public BatchResult applyBatch(double[][] data, RowPolicy policy) throws Exception {
+    BatchResult result = new BatchResult(data.length, policy);
+
+    for (int i = 0; i < data.length; i++) {
+      // Process valid rows
+      double[] output = applyIfApplicable(data[i]);
+      if (output != null) {
+        result.addValid(i, output);
+        continue;
+      }
+
+      // Handle invalid row
+      switch (policy) {
+        case FAIL:
+          // generates the exception
+          result.addValid(i, apply(data[i]));
+          break;
+        case CLAMP:
+          output = applyClamped(data[i]);
+          result.addInvalid(i, (output != null) ? output : nanRow(data[i]));
+          break;
+        case NAN:
+          result.addInvalid(i, nanRow(data[i]));
+          break;
+        case SKIP:
+          result.addInvalid(i, null);
+          break;
+        default:
+          throw new IllegalStateException("Unhandled row policy: " + policy);
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Generates the output row for an invalid input row.
+   *
+   * @param data	the invalid input row
+   * @return		the row of NaNs
+   */
+  protected double[] nanRow(double[] data) {
+    double[] result = new double[Math.max(0, getOutputWidth((data == null) ? 0 : data.length))];
+    Arrays.fill(result, Double.NaN);
+    return result;
+  }
 }
@@ -0,0 +1,156 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * BatchResult.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.waikatodatamining.androidmatrix;
+
+import java.util.Arrays;
+
+/**
+ * The result of applying an algorithm to a batch of rows, together with a
+ * bitmask of the rows that were valid.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ * @see AbstractAlgorithm#applyBatch(double[][], RowPolicy)
+ */
+public class BatchResult {
+
+  /** the policy that was applied. */
+  protected final RowPolicy m_Policy;
+
+  /** the number of input rows. */
+  protected final int m_NumRows;
+
+  /** the validity of the input rows, one bit per row. */
+  protected final long[] m_Valid;
+
+  /** the output rows. */
+  protected double[][] m_Rows;
+
+  /** the number of output rows. */
+  protected int m_NumOutput;
+
+  /** the number of invalid rows. */
+  protected int m_NumInvalid;
+
+  /**
+   * Initializes the result.
+   *
+   * @param numRows	the number of input rows
+   * @param policy	the policy that gets applied
+   */
+  public BatchResult(int numRows, RowPolicy policy) {
+    m_Policy    = policy;
+    m_NumRows   = numRows;
+    m_Valid     = new long[(numRows + 63) >>> 6];
+    m_Rows      = new double[numRows][];
+    m_NumOutput = 0;
+  }
+
+  /**
+   * Adds the output of a valid row.
+   *
+   * @param row		the index of the input row
+   * @param output	the output
+   */
+  public void addValid(int row, double[] output) {
+    m_Valid[row >>> 6] |= 1L << row;
+    m_Rows[m_NumOutput++] = output;
+  }
+
+  /**
+   * Records an invalid row.
+   *
+   * @param row		the index of the input row
+   * @param output	the replacement output, null to omit the row
+   */
+  public void addInvalid(int row, double[] output) {
+    m_NumInvalid++;
+    if (output != null)
+      m_Rows[m_NumOutput++] = output;
+  }
+
+  /**
+   * Returns the policy that was applied.
+   *
+   * @return		the policy
+   */
+  public RowPolicy getPolicy() {
+    return m_Policy;
+  }
+
+  /**
+   * Returns the output rows. With {@link RowPolicy#SKIP}, invalid rows are
+   * omitted, i.e., the output rows are the valid rows in input order.
+   *
+   * @return		the rows
+   */
+  public double[][] getRows() {
+    if (m_NumOutput < m_Rows.length)
+      m_Rows = Arrays.copyOf(m_Rows, m_NumOutput);
+    return m_Rows;
+  }
+
+  /**
+   * Returns whether the input row was valid.
+   *
+   * @param row		the index of the input row
+   * @return		true if valid
+   */
+  public boolean isValid(int row) {
+    return (m_Valid[row >>> 6] & (1L << row)) != 0;
+  }
+
+  /**
+   * Returns the validity bitmask, bit (i % 64) of element (i / 64)
+   * corresponds to input row i.
+   *
+   * @return		the mask
+   */
+  public long[] getValidityMask() {
+    return m_Valid;
+  }
+
+  /**
+   * Returns the number of input rows.
+   *
+   * @return		the number of rows
+   */
+  public int getNumRows() {
+    return m_NumRows;
+  }
+
+  /**
+   * Returns the number of valid input rows.
+   *
+   * @return		the number of rows
+   */
+  public int getNumValid() {
+    return m_NumRows - m_NumInvalid;
+  }
+
+  /**
+   * Returns the number of invalid input rows.
+   *
+   * @return		the number of rows
+   */
+  public int getNumInvalid() {
+    return m_NumInvalid;
+  }
+}
@@ -0,0 +1,505 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * BulkScorer.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.waikatodatamining.androidmatrix;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Scores a matrix file in the PyMA matrix layout (int rows, int columns,
+ * little-endian doubles in row-major order) with an algorithm or a
+ * preprocessing map, writing the results to a matrix file in the same
+ * layout. Both files get memory-mapped in chunks of rows, so the memory
+ * usage is independent of the file size.
+ * <br>
+ * When scoring with a {@link PreprocessingMap}, every row is fed to all
+ * inputs and the outputs get concatenated in the order of the inputs.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class BulkScorer {
+
+  /** the size of the matrix header in bytes. */
+  public static final int HEADER_SIZE = 2 * Integer.BYTES;
+
+  /** the default maximum number of bytes to map per chunk. */
+  public static final int DEFAULT_CHUNK_BYTES = 64 * 1024 * 1024;
+
+  /** the algorithm to apply. */
+  protected final Algorithm m_Algorithm;
+
+  /** the maximum number of bytes to map per chunk. */
+  protected int m_ChunkBytes;
+
+  /**
+   * Initializes the scorer with the algorithm.
+   *
+   * @param algorithm	the algorithm to apply to each row
+   */
+  public BulkScorer(Algorithm algorithm) {
+    m_Algorithm  = algorithm;
+    m_ChunkBytes = DEFAULT_CHUNK_BYTES;
+  }
+
+  /**
+   * Initializes the scorer with the map. Each row gets fed to all the
+   * inputs of the map.
+   *
+   * @param map		the map to apply to each row
+   */
+  public BulkScorer(PreprocessingMap map) {
+    this(new MapAlgorithm(map));
+  }
+
+  /**
+   * Sets the maximum number of bytes to map per chunk (input and output
+   * separately). At least one row gets mapped.
+   *
+   * @param value	the number of bytes
+   */
+  public void setChunkBytes(int value) {
+    if (value < 1)
+      throw new IllegalArgumentException("Chunk size must be at least 1 byte, provided: " + value);
+    m_ChunkBytes = value;
+  }
+
+  /**
+   * Returns the maximum number of bytes to map per chunk.
+   *
+   * @return		the number of bytes
+   */
+  public int getChunkBytes() {
+    return m_ChunkBytes;
+  }
+
+  /**
+   * Reads the header of the matrix file.
+   *
+   * @param channel	the channel to read from
+   * @return		the number of rows and columns
+   * @throws IOException	if reading fails
+   */
+  public static int[] readHeader(FileChannel channel) throws IOException {
+    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    while (header.hasRemaining()) {
+      if (channel.read(header, header.position()) == -1)
+        throw new IOException("Failed to read matrix header");
+    }
+    header.flip();
+
+    return new int[]{header.getInt(), header.getInt()};
+  }
+
+  /**
+   * Writes the header of the matrix file.
+   *
+   * @param channel	the channel to write to
+   * @param numRows	the number of rows
+   * @param numColumns	the number of columns
+   * @throws IOException	if writing fails
+   */
+  public static void writeHeader(FileChannel channel, int numRows, int numColumns) throws IOException {
+    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    header.putInt(numRows);
+    header.putInt(numColumns);
+    header.flip();
+    while (header.hasRemaining())
+      channel.write(header, header.position());
+  }
+
+  /**
+   * Maps the specified rows of the matrix file.
+   *
+   * @param channel	the channel of the file
+   * @param mode	the mapping mode
+   * @param numColumns	the number of columns of the matrix
+   * @param startRow	the first row to map
+   * @param numRows	the number of rows to map
+   * @return		the mapped rows
+   * @throws IOException	if mapping fails
+   */
+  protected static DoubleBuffer mapRows(FileChannel channel, FileChannel.MapMode mode, int numColumns, long startRow, int numRows) throws IOException {
+    long offset = HEADER_SIZE + startRow * numColumns * Double.BYTES;
+    long size = (long) numRows * numColumns * Double.BYTES;
+
+    return channel.map(mode, offset, size).order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+  }
+
+  /**
+   * Determines the number of rows per chunk.
+   *
+   * @param numColumns	the widest row (input or output)
+   * @return		the number of rows
+   */
+  protected int chunkRows(int numColumns) {
+    long rowBytes = Math.max(1, (long) numColumns * Double.BYTES);
+    return (int) Math.max(1, Math.min(Integer.MAX_VALUE / rowBytes, m_ChunkBytes / rowBytes));
+  }
+
+  /**
+   * Scores all the rows of the input file and writes the results to the
+   * output file.
+   *
+   * @param input	the input matrix file
+   * @param output	the output matrix file to create
+   * @return		the statistics
+   * @throws Exception	if scoring fails
+   */
+  public Result score(File input, File output) throws Exception {
+    long start = System.nanoTime();
+    int numRows = prepare(input, output);
+    score(input, output, 0, numRows);
+
+    return new Result(numRows, System.nanoTime() - start);
+  }
+
+  /**
+   * Reads the dimensions of the input file and makes sure it is complete.
+   *
+   * @param channel	the channel of the input file
+   * @param input	the input file
+   * @return		the number of rows and columns
+   * @throws IOException	if reading fails or the file is too short
+   */
+  protected static int[] readInputHeader(FileChannel channel, File input) throws IOException {
+    int[] result = readHeader(channel);
+    if (channel.size() < HEADER_SIZE + (long) result[0] * result[1] * Double.BYTES)
+      throw new IOException("Input file too short for " + result[0] + "x" + result[1] + " matrix: " + input);
+
+    return result;
+  }
+
+  /**
+   * Creates the output file for scoring the input file, with the header
+   * and the size of the complete output. The output width gets determined
+   * from the input width (see {@link #outputWidth(int, FileChannel)}), so
+   * an invalid first row does not fail the preparation.
+   *
+   * @param input	the input matrix file
+   * @param output	the output matrix file to create
+   * @return		the number of rows of the input
+   * @throws Exception	if determining the output width fails
+   * @see #score(File, File, long, long)
+   */
+  public int prepare(File input, File output) throws Exception {
+    try (RandomAccessFile inFile = new RandomAccessFile(input, "r");
+         RandomAccessFile outFile = new RandomAccessFile(output, "rw")) {
+      FileChannel inChannel = inFile.getChannel();
+
+      // Read the input dimensions
+      int[] dimensions = readInputHeader(inChannel, input);
+      int numRows = dimensions[0];
+      int numColumns = dimensions[1];
+
+      // Determine the output width
+      int numOutputColumns = 0;
+      if (numRows > 0)
+        numOutputColumns = outputWidth(numColumns, inChannel);
+
+      // Create the output file
+      prepare(outFile, numRows, numOutputColumns);
+
+      return numRows;
+    }
+  }
+
+  /**
+   * Returns the output width of the algorithm for the input width. Stages
+   * and maps infer it from their state; other algorithms have the first
+   * row scored.
+   *
+   * @param numColumns	the width of the input
+   * @param inChannel	the input matrix file, for scoring the first row
+   * @return		the width of the output
+   * @throws Exception	if scoring the first row fails
+   */
+  protected int outputWidth(int numColumns, FileChannel inChannel) throws Exception {
+    if (m_Algorithm instanceof AbstractAlgorithm)
+      return ((AbstractAlgorithm) m_Algorithm).getOutputWidth(numColumns);
+    if (m_Algorithm instanceof MapAlgorithm)
+      return ((MapAlgorithm) m_Algorithm).getOutputWidth(numColumns);
+
+    double[] row = new double[numColumns];
+    mapRows(inChannel, FileChannel.MapMode.READ_ONLY, numColumns, 0, 1).get(row);
+    return m_Algorithm.apply(row).length;
+  }
+
+  /**
+   * Creates the output file with the header and the size of the complete
+   * output, for an output width that is already known.
+   *
+   * @param output	the output matrix file to create
+   * @param numRows	the number of rows
+   * @param numOutputColumns	the number of output columns
+   * @throws IOException	if creating the file fails
+   * @see #score(File, File, long, long)
+   */
+  public static void prepare(File output, int numRows, int numOutputColumns) throws IOException {
+    try (RandomAccessFile outFile = new RandomAccessFile(output, "rw")) {
+      prepare(outFile, numRows, numOutputColumns);
+    }
+  }
+
+  /**
+   * Sizes the output file and writes the header.
+   *
+   * @param outFile	the output file
+   * @param numRows	the number of rows
+   * @param numOutputColumns	the number of output columns
+   * @throws IOException	if writing fails
+   */
+  protected static void prepare(RandomAccessFile outFile, int numRows, int numOutputColumns) throws IOException {
+    outFile.setLength(HEADER_SIZE + (long) numRows * numOutputColumns * Double.BYTES);
+    writeHeader(outFile.getChannel(), numRows, numOutputColumns);
+  }
+
+  /**
+   * Scores a range of rows of the input file and writes the results to the
+   * same rows of the output file, which must have been created with
+   * {@link #prepare(File, File)}. Separate processes can score disjoint
+   * ranges into the same output file.
+   *
+   * @param input	the input matrix file
+   * @param output	the prepared output matrix file
+   * @param startRow	the first row to score (incl)
+   * @param endRow	the last row to score (excl)
+   * @return		the statistics
+   * @throws Exception	if scoring fails
+   */
+  public Result score(File input, File output, long startRow, long endRow) throws Exception {
+    long start = System.nanoTime();
+
+    try (RandomAccessFile inFile = new RandomAccessFile(input, "r");
+         RandomAccessFile outFile = new RandomAccessFile(output, "rw")) {
+      FileChannel inChannel = inFile.getChannel();
+      FileChannel outChannel = outFile.getChannel();
+
+      // Read the dimensions
+      int[] dimensions = readInputHeader(inChannel, input);
+      int numRows = dimensions[0];
+      int numColumns = dimensions[1];
+      int[] outDimensions = readHeader(outChannel);
+      int numOutputColumns = outDimensions[1];
+      if (outDimensions[0] != numRows)
+        throw new IOException("Output file has " + outDimensions[0] + " rows, expected " + numRows + ": " + output);
+      if ((startRow < 0) || (endRow > numRows) || (startRow > endRow))
+        throw new IllegalArgumentException("Invalid row range [" + startRow + ", " + endRow + ") for " + numRows + " rows");
+
+      // Stream the chunks
+      double[] row = new double[numColumns];
+      int chunkRows = chunkRows(Math.max(numColumns, numOutputColumns));
+      for (long chunkStart = startRow; chunkStart < endRow; chunkStart += chunkRows) {
+        int numChunkRows = (int) Math.min(chunkRows, endRow - chunkStart);
+        DoubleBuffer inBuffer = mapRows(inChannel, FileChannel.MapMode.READ_ONLY, numColumns, chunkStart, numChunkRows);
+        DoubleBuffer outBuffer = mapRows(outChannel, FileChannel.MapMode.READ_WRITE, numOutputColumns, chunkStart, numChunkRows);
+        for (int i = 0; i < numChunkRows; i++) {
+          inBuffer.get(row);
+          double[] result = m_Algorithm.apply(row);
+          if (result.length != numOutputColumns)
+            throw new IllegalStateException("Row " + (chunkStart + i) + " generated " + result.length + " columns, expected " + numOutputColumns);
+          outBuffer.put(result);
+        }
+      }
+
+      return new Result(endRow - startRow, System.nanoTime() - start);
+    }
+  }
+
+  /**
+   * Adapter that feeds a row to all inputs of a map and returns the
+   * concatenated outputs.
+   */
+  protected static class MapAlgorithm
+    implements Algorithm {
+
+    /** the map to apply. */
+    protected final PreprocessingMap m_Map;
+
+    /** the frame to use. */
+    protected final FeatureFrame m_Frame;
+
+    /**
+     * Initializes the adapter.
+     *
+     * @param map		the map to apply
+     */
+    protected MapAlgorithm(PreprocessingMap map) {
+      m_Map   = map;
+      m_Frame = map.newFrame();
+    }
+
+    /**
+     * Returns the width of the concatenated outputs for the input width.
+     *
+     * @param inputWidth	the width of the row fed to all inputs
+     * @return		the width of the output
+     */
+    protected int getOutputWidth(int inputWidth) {
+      int result = 0;
+      for (PreprocessingStages stages : m_Map.m_OrderedStages)
+        result += stages.getOutputWidth(inputWidth);
+      return result;
+    }
+
+    /**
+     * Applies the map to the data.
+     *
+     * @param data	the data to convert
+     * @return		the concatenated outputs (re-used by the next call)
+     * @throws Exception	if conversion fails
+     */
+    @Override
+    public double[] apply(double[] data) throws Exception {
+      for (int i = 0; i < m_Frame.size(); i++)
+        m_Frame.set(i, data);
+      return m_Map.apply(m_Frame);
+    }
+  }
+
+  /**
+   * The statistics of a scoring run.
+   */
+  public static class Result {
+
+    /** the number of rows scored. */
+    protected final long m_NumRows;
+
+    /** the duration in nanoseconds. */
+    protected final long m_Nanos;
+
+    /**
+     * Initializes the result.
+     *
+     * @param numRows	the number of rows scored
+     * @param nanos	the duration in nanoseconds
+     */
+    public Result(long numRows, long nanos) {
+      m_NumRows = numRows;
+      m_Nanos   = nanos;
+    }
+
+    /**
+     * Returns the number of rows scored.
+     *
+     * @return		the number of rows
+     */
+    public long getNumRows() {
+      return m_NumRows;
+    }
+
+    /**
+     * Returns the duration.
+     *
+     * @return		the duration in nanoseconds
+     */
+    public long getNanos() {
+      return m_Nanos;
+    }
+
+    /**
+     * Returns the throughput.
+     *
+     * @return		the rows per second
+     */
+    public double getRowsPerSecond() {
+      if (m_Nanos == 0)
+        return 0;
+      return m_NumRows * 1e9 / m_Nanos;
+    }
+
+    /**
+     * Returns a short description of the statistics.
+     *
+     * @return		the description
+     */
+    @Override
+    public String toString() {
+      return String.format("%d rows in %.3f s (%.1f rows/sec)", m_NumRows, m_Nanos / 1e9, getRowsPerSecond());
+    }
+  }
+
+  /**
+   * Scores a matrix file from the command-line.
+   * <br>
+   * Usage: BulkScorer [-map] [-chunk bytes] [-rows start end] model input output
+   * <br>
+   * With -rows, only the specified range of rows gets scored into the
+   * existing output file (see {@link #prepare(File, File)}).
+   *
+   * @param args	the command-line arguments
+   * @throws Exception	if scoring fails
+   */
+  public static void main(String[] args) throws Exception {
+    boolean map = false;
+    int chunkBytes = DEFAULT_CHUNK_BYTES;
+    long startRow = -1;
+    long endRow = -1;
+    int index = 0;
+
+    // Parse the options
+    while ((index < args.length) && args[index].startsWith("-")) {
+      if (args[index].equals("-map")) {
+        map = true;
+      }
+      else if (args[index].equals("-chunk") && (index + 1 < args.length)) {
+        chunkBytes = Integer.parseInt(args[++index]);
+      }
+      else if (args[index].equals("-rows") && (index + 2 < args.length)) {
+        startRow = Long.parseLong(args[++index]);
+        endRow = Long.parseLong(args[++index]);
+      }
+      else {
+        System.err.println("Unknown option: " + args[index]);
+        System.exit(1);
+      }
+      index++;
+    }
+    if (args.length - index != 3) {
+      System.err.println("Usage: " + BulkScorer.class.getName() + " [-map] [-chunk bytes] [-rows start end] model input output");
+      System.exit(1);
+    }
+
+    // Load the model
+    BulkScorer scorer;
+    try (InputStream stream = new FileInputStream(args[index])) {
+      if (map)
+        scorer = new BulkScorer(new PreprocessingMap(stream));
+      else
+        scorer = new BulkScorer(new PreprocessingStages(stream));
+    }
+    scorer.setChunkBytes(chunkBytes);
+
+    // Score
+    Result result;
+    if (startRow == -1)
+      result = scorer.score(new File(args[index + 1]), new File(args[index + 2]));
+    else
+      result = scorer.score(new File(args[index + 1]), new File(args[index + 2]), startRow, endRow);
+    System.out.println(result);
+  }
+}
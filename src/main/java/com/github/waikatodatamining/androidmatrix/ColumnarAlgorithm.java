@@ -0,0 +1,41 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * ColumnarAlgorithm.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.waikatodatamining.androidmatrix;
+
+/**
+ * Optional interface for algorithms which can process a batch of rows
+ * in columnar layout.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public interface ColumnarAlgorithm
+  extends Algorithm {
+
+  /**
+   * Applies the algorithm to the batch.
+   *
+   * @param batch	the batch to convert
+   * @return		the converted batch
+   * @throws Exception	if conversion fails
+   */
+  ColumnarBatch applyColumnar(ColumnarBatch batch) throws Exception;
+
+}
@@ -0,0 +1,130 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * ColumnarBatch.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.waikatodatamining.androidmatrix;
+
+/**
+ * Batch of rows stored column by column (structure of arrays), i.e., one
+ * contiguous array per feature across all rows.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ * @see ColumnarAlgorithm
+ */
+public class ColumnarBatch {
+
+  /** the columns. */
+  protected final double[][] m_Columns;
+
+  /** the number of rows. */
+  protected final int m_NumRows;
+
+  /**
+   * Initializes an empty batch.
+   *
+   * @param numRows	the number of rows
+   * @param numColumns	the number of columns
+   */
+  public ColumnarBatch(int numRows, int numColumns) {
+    m_Columns = new double[numColumns][numRows];
+    m_NumRows = numRows;
+  }
+
+  /**
+   * Initializes the batch with the columns (not copied).
+   *
+   * @param numRows	the number of rows
+   * @param columns	the columns, each with numRows values
+   */
+  public ColumnarBatch(int numRows, double[][] columns) {
+    for (int j = 0; j < columns.length; j++) {
+      if (columns[j].length != numRows)
+        throw new IllegalArgumentException("Column " + j + " has " + columns[j].length + " values, expected " + numRows);
+    }
+
+    m_Columns = columns;
+    m_NumRows = numRows;
+  }
+
+  /**
+   * Converts the row-major data into a columnar batch.
+   *
+   * @param rows	the rows, all of the same width
+   * @return		the batch
+   */
+  public static ColumnarBatch fromRows(double[][] rows) {
+    int numColumns = (rows.length == 0) ? 0 : rows[0].length;
+    ColumnarBatch result = new ColumnarBatch(rows.length, numColumns);
+
+    for (int i = 0; i < rows.length; i++) {
+      double[] row = rows[i];
+      if (row.length != numColumns)
+        throw new IllegalArgumentException("Row " + i + " has " + row.length + " columns, expected " + numColumns);
+      for (int j = 0; j < numColumns; j++)
+        result.m_Columns[j][i] = row[j];
+    }
+
+    return result;
+  }
+
+  /**
+   * Converts the batch into row-major data.
+   *
+   * @return		the rows
+   */
+  public double[][] toRows() {
+    double[][] result = new double[m_NumRows][m_Columns.length];
+
+    for (int j = 0; j < m_Columns.length; j++) {
+      double[] column = m_Columns[j];
+      for (int i = 0; i < m_NumRows; i++)
+        result[i][j] = column[i];
+    }
+
+    return result;
+  }
+
+  /**
+   * Returns the number of rows.
+   *
+   * @return		the number of rows
+   */
+  public int getNumRows() {
+    return m_NumRows;
+  }
+
+  /**
+   * Returns the number of columns.
+   *
+   * @return		the number of columns
+   */
+  public int getNumColumns() {
+    return m_Columns.length;
+  }
+
+  /**
+   * Returns the specified column (not a copy).
+   *
+   * @param index	the index of the column
+   * @return		the column
+   */
+  public double[] getColumn(int index) {
+    return m_Columns[index];
+  }
+}
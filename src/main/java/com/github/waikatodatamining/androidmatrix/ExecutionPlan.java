@@ -0,0 +1,210 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * ExecutionPlan.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.waikatodatamining.androidmatrix;
+
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+
+/**
+ * Compiled form of {@link PreprocessingStages} for a fixed input width.
+ * The widths of all intermediate results are known when compiling, so the
+ * plan preallocates a buffer per stage and only checks the width of the
+ * input once per call, instead of every stage checking its own input.
+ * <br>
+ * The buffers get re-used between calls, so a plan is not thread-safe;
+ * use {@link #copy()} to obtain a plan for another thread. Metrics
+ * attached to the stages are not recorded.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ * @see PreprocessingStages#compile()
+ */
+public class ExecutionPlan
+  implements Algorithm {
+
+  /** the stages to apply. */
+  protected final AbstractAlgorithm[] m_Stages;
+
+  /** the widths, the input width followed by the output width of each stage. */
+  protected final int[] m_Widths;
+
+  /** the output buffers of the stages. */
+  protected final double[][] m_Buffers;
+
+  /** the output buffers of the stages, wrapped for the NIO kernels. */
+  protected final DoubleBuffer[] m_Views;
+
+  /**
+   * Initializes the plan.
+   *
+   * @param stages	the stages to apply
+   * @param widths	the input width followed by the output width of each stage
+   */
+  protected ExecutionPlan(AbstractAlgorithm[] stages, int[] widths) {
+    m_Stages  = stages;
+    m_Widths  = widths;
+    m_Buffers = new double[stages.length][];
+    m_Views   = new DoubleBuffer[stages.length];
+    for (int i = 0; i < stages.length; i++) {
+      m_Buffers[i] = new double[widths[i + 1]];
+      m_Views[i]   = DoubleBuffer.wrap(m_Buffers[i]);
+    }
+  }
+
+  /**
+   * Returns the number of stages.
+   *
+   * @return		the number of stages
+   */
+  public int getNumStages() {
+    return m_Stages.length;
+  }
+
+  /**
+   * Returns the width of the input.
+   *
+   * @return		the width
+   */
+  public int getInputWidth() {
+    return m_Widths[0];
+  }
+
+  /**
+   * Returns the width of the output.
+   *
+   * @return		the width
+   */
+  public int getOutputWidth() {
+    return m_Widths[m_Widths.length - 1];
+  }
+
+  /**
+   * Returns the width of the output of the specified stage.
+   *
+   * @param index	the index of the stage
+   * @return		the width
+   */
+  public int getOutputWidth(int index) {
+    return m_Widths[index + 1];
+  }
+
+  /**
+   * Applies the stages to the data.
+   *
+   * @param data	the data to convert
+   * @return		the converted data, re-used by the next call
+   * @throws Exception	if conversion fails
+   */
+  @Override
+  public double[] apply(double[] data) throws Exception {
+    // Only the input needs checking, the other widths are guaranteed
+    if (data.length != m_Widths[0])
+      throw new IllegalArgumentException("Plan compiled for input width " + m_Widths[0] + ", provided: " + data.length);
+
+    // Apply the data to each stage in turn
+    for (int i = 0; i < m_Stages.length; i++) {
+      m_Stages[i].applyInto(data, m_Buffers[i]);
+      data = m_Buffers[i];
+    }
+
+    return data;
+  }
+
+  /**
+   * Applies the stages to the data, copying the output into the provided
+   * buffer.
+   *
+   * @param data	the data to convert
+   * @param result	the buffer for the output
+   * @throws Exception	if conversion fails
+   */
+  public void apply(double[] data, double[] result) throws Exception {
+    if (result.length != getOutputWidth())
+      throw new IllegalArgumentException("Plan generates output width " + getOutputWidth() + ", provided buffer: " + result.length);
+
+    double[] output = apply(data);
+    System.arraycopy(output, 0, result, 0, output.length);
+  }
+
+  /**
+   * Applies the stages to the values between position and limit of the
+   * data buffer, writing the output at the position of the result buffer.
+   * The first stage reads from the data buffer and the last stage writes
+   * into the result buffer, the preallocated buffers get used in between.
+   * Advances the positions of both buffers.
+   *
+   * @param data	the data to convert
+   * @param result	the buffer for the converted data
+   * @throws Exception	if conversion fails
+   */
+  public void apply(DoubleBuffer data, DoubleBuffer result) throws Exception {
+    if (data.remaining() != m_Widths[0])
+      throw new IllegalArgumentException("Plan compiled for input width " + m_Widths[0] + ", provided: " + data.remaining());
+    int outputWidth = getOutputWidth();
+    if (result.remaining() < outputWidth)
+      throw new IllegalArgumentException("Result buffer too small (" + result.remaining() + " remaining, " + outputWidth + " required)");
+
+    int last = m_Stages.length - 1;
+    if (last == -1) {
+      result.duplicate().put(data.duplicate());
+    }
+    else if (last == 0) {
+      m_Stages[0].applyInto(data, result);
+    }
+    else {
+      m_Stages[0].applyInto(data, m_Views[0]);
+      for (int i = 1; i < last; i++)
+        m_Stages[i].applyInto(m_Buffers[i - 1], m_Buffers[i]);
+      m_Stages[last].applyInto(m_Views[last - 1], result);
+    }
+
+    data.position(data.limit());
+    result.position(result.position() + outputWidth);
+  }
+
+  /**
+   * Applies the stages to the doubles between position and limit of the
+   * data buffer, writing the output at the position of the result buffer.
+   * The doubles get read and written in the byte order of the buffers.
+   * Advances the positions of both buffers.
+   *
+   * @param data	the data to convert
+   * @param result	the buffer for the converted data
+   * @throws Exception	if conversion fails
+   */
+  public void apply(ByteBuffer data, ByteBuffer result) throws Exception {
+    if (data.remaining() % Double.BYTES != 0)
+      throw new IllegalArgumentException("Data buffer does not hold whole doubles: " + data.remaining() + " bytes");
+
+    DoubleBuffer output = result.asDoubleBuffer();
+    apply(data.asDoubleBuffer(), output);
+    data.position(data.limit());
+    result.position(result.position() + output.position() * Double.BYTES);
+  }
+
+  /**
+   * Returns a plan for the same stages with its own buffers.
+   *
+   * @return		the copy
+   */
+  public ExecutionPlan copy() {
+    return new ExecutionPlan(m_Stages, m_Widths);
+  }
+}
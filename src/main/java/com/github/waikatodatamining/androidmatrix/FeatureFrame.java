@@ -0,0 +1,198 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * FeatureFrame.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.waikatodatamining.androidmatrix;
+
+/**
+ * Reusable container for the inputs of a {@link PreprocessingMap}, with
+ * one slot per input in the order of the map's inputs. Slots get addressed
+ * by position, so filling a frame requires neither a map nor hashing of the
+ * input names. The frame also holds the concatenated output vector of
+ * {@link PreprocessingMap#apply(FeatureFrame)}.
+ * <br>
+ * Frames are not thread-safe, use one frame per thread.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class FeatureFrame {
+
+  /** the map this frame belongs to. */
+  protected final PreprocessingMap m_Map;
+
+  /** the input slots. */
+  protected final double[][] m_Inputs;
+
+  /** the outputs of the individual inputs (temporary). */
+  protected final double[][] m_Outputs;
+
+  /** the intermediate results shared between inputs (temporary). */
+  protected final double[][][] m_States;
+
+  /** the offsets of the outputs in the output vector (plus total length). */
+  protected final int[] m_OutputOffsets;
+
+  /** the concatenated output vector. */
+  protected double[] m_Output;
+
+  /**
+   * Initializes the frame for the map.
+   *
+   * @param map		the map to create the frame for
+   * @see PreprocessingMap#newFrame()
+   */
+  protected FeatureFrame(PreprocessingMap map) {
+    m_Map           = map;
+    m_Inputs        = new double[map.m_Ordering.length][];
+    m_Outputs       = new double[map.m_Ordering.length][];
+    m_States        = map.newStates();
+    m_OutputOffsets = new int[map.m_Ordering.length + 1];
+    m_Output        = new double[0];
+  }
+
+  /**
+   * Returns the map the frame belongs to.
+   *
+   * @return		the map
+   */
+  public PreprocessingMap getMap() {
+    return m_Map;
+  }
+
+  /**
+   * Returns the number of inputs.
+   *
+   * @return		the number of inputs
+   */
+  public int size() {
+    return m_Inputs.length;
+  }
+
+  /**
+   * Returns the name of the input at the position.
+   *
+   * @param index	the position of the input
+   * @return		the name
+   */
+  public String getName(int index) {
+    return m_Map.m_Ordering[index];
+  }
+
+  /**
+   * Returns the position of the named input. Resolve names once and
+   * use the positions afterwards.
+   *
+   * @param name	the name of the input
+   * @return		the position, -1 if not an input of the map
+   */
+  public int indexOf(String name) {
+    return m_Map.indexOf(name);
+  }
+
+  /**
+   * Returns the slot of the input for filling in place, making sure it
+   * has the specified width.
+   *
+   * @param index	the position of the input
+   * @param width	the width of the input
+   * @return		the slot
+   */
+  public double[] slot(int index, int width) {
+    if ((m_Inputs[index] == null) || (m_Inputs[index].length != width))
+      m_Inputs[index] = new double[width];
+
+    return m_Inputs[index];
+  }
+
+  /**
+   * Copies the values into the slot of the input.
+   *
+   * @param index	the position of the input
+   * @param values	the values to copy
+   */
+  public void set(int index, double[] values) {
+    System.arraycopy(values, 0, slot(index, values.length), 0, values.length);
+  }
+
+  /**
+   * Copies the values into the slot of the named input.
+   *
+   * @param name	the name of the input
+   * @param values	the values to copy
+   */
+  public void set(String name, double[] values) {
+    int index = indexOf(name);
+    if (index == -1)
+      throw new IllegalArgumentException("Unknown input: " + name);
+    set(index, values);
+  }
+
+  /**
+   * Returns the slot of the input.
+   *
+   * @param index	the position of the input
+   * @return		the slot, null if not filled yet
+   */
+  public double[] get(int index) {
+    return m_Inputs[index];
+  }
+
+  /**
+   * Returns the output vector with the specified length, re-using the
+   * current one if possible.
+   *
+   * @param length	the length of the vector
+   * @return		the vector
+   */
+  protected double[] outputBuffer(int length) {
+    if (m_Output.length != length)
+      m_Output = new double[length];
+
+    return m_Output;
+  }
+
+  /**
+   * Returns the concatenated output vector of the last application.
+   *
+   * @return		the output
+   */
+  public double[] getOutput() {
+    return m_Output;
+  }
+
+  /**
+   * Returns the offset of the input's output in the output vector.
+   *
+   * @param index	the position of the input
+   * @return		the offset
+   */
+  public int getOutputOffset(int index) {
+    return m_OutputOffsets[index];
+  }
+
+  /**
+   * Returns the length of the input's output in the output vector.
+   *
+   * @param index	the position of the input
+   * @return		the length
+   */
+  public int getOutputLength(int index) {
+    return m_OutputOffsets[index + 1] - m_OutputOffsets[index];
+  }
+}
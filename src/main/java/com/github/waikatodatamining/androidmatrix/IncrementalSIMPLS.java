@@ -0,0 +1,246 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * IncrementalSIMPLS.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.waikatodatamining.androidmatrix;
+
+/**
+ * Stateful scorer for streams of inputs in which consecutive inputs differ
+ * in only a few values. Keeps the previous input and scores and updates the
+ * scores using only the rows of the loadings that correspond to changed
+ * values. The scores get fully recomputed periodically to limit the
+ * floating-point drift, and whenever too many values changed.
+ * <br>
+ * Not thread-safe, use one instance per stream.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class IncrementalSIMPLS
+  implements Algorithm {
+
+  /** the default number of incremental updates between full recomputes. */
+  public static final int DEFAULT_RECOMPUTE_INTERVAL = 1000;
+
+  /** the default fraction of changed values above which to recompute. */
+  public static final double DEFAULT_MAX_CHANGED_FRACTION = 0.25;
+
+  /** the underlying algorithm. */
+  protected final SIMPLS m_SIMPLS;
+
+  /** the number of incremental updates between full recomputes. */
+  protected int m_RecomputeInterval;
+
+  /** the fraction of changed values above which to recompute. */
+  protected double m_MaxChangedFraction;
+
+  /** the previous input, null if none yet. */
+  protected double[] m_Previous;
+
+  /** the current scores. */
+  protected double[] m_Scores;
+
+  /** the buffer for the changed indices. */
+  protected int[] m_Changed;
+
+  /** the number of incremental updates since the last full recompute. */
+  protected int m_Updates;
+
+  /** the number of full recomputes. */
+  protected long m_NumRecomputes;
+
+  /**
+   * Initializes the scorer.
+   *
+   * @param simpls	the algorithm to compute the scores with
+   */
+  public IncrementalSIMPLS(SIMPLS simpls) {
+    m_SIMPLS             = simpls;
+    m_RecomputeInterval  = DEFAULT_RECOMPUTE_INTERVAL;
+    m_MaxChangedFraction = DEFAULT_MAX_CHANGED_FRACTION;
+    m_Changed            = new int[simpls.m_W.length];
+  }
+
+  /**
+   * Sets the number of incremental updates between full recomputes.
+   *
+   * @param value	the number of updates
+   */
+  public void setRecomputeInterval(int value) {
+    if (value < 1)
+      throw new IllegalArgumentException("Recompute interval must be at least 1, provided: " + value);
+    m_RecomputeInterval = value;
+  }
+
+  /**
+   * Returns the number of incremental updates between full recomputes.
+   *
+   * @return		the number of updates
+   */
+  public int getRecomputeInterval() {
+    return m_RecomputeInterval;
+  }
+
+  /**
+   * Sets the fraction of changed values above which the scores get
+   * fully recomputed.
+   *
+   * @param value	the fraction (0-1)
+   */
+  public void setMaxChangedFraction(double value) {
+    if (!(value >= 0) || (value > 1))
+      throw new IllegalArgumentException("Fraction must be between 0 and 1, provided: " + value);
+    m_MaxChangedFraction = value;
+  }
+
+  /**
+   * Returns the fraction of changed values above which the scores get
+   * fully recomputed.
+   *
+   * @return		the fraction (0-1)
+   */
+  public double getMaxChangedFraction() {
+    return m_MaxChangedFraction;
+  }
+
+  /**
+   * Returns the number of full recomputes so far.
+   *
+   * @return		the number of recomputes
+   */
+  public long getNumRecomputes() {
+    return m_NumRecomputes;
+  }
+
+  /**
+   * Forgets the previous input, the next input gets fully computed.
+   */
+  public void reset() {
+    m_Previous = null;
+    m_Scores = null;
+    m_Updates = 0;
+  }
+
+  /**
+   * Computes the scores of the input, determining the changed values by
+   * comparing with the previous input.
+   *
+   * @param data	the data to convert
+   * @return		the scores
+   * @throws Exception	if conversion fails
+   */
+  @Override
+  public double[] apply(double[] data) throws Exception {
+    if (!isIncremental(data))
+      return recompute(data);
+
+    // Collect the changed indices, bailing out if there are too many
+    int maxChanged = (int) (m_MaxChangedFraction * data.length);
+    int numChanged = 0;
+    for (int j = 0; j < data.length; j++) {
+      if (data[j] != m_Previous[j]) {
+        if (numChanged == maxChanged)
+          return recompute(data);
+        m_Changed[numChanged++] = j;
+      }
+    }
+
+    return update(data, m_Changed, numChanged);
+  }
+
+  /**
+   * Computes the scores of the input, with the indices of the values that
+   * changed compared to the previous input provided by the caller.
+   *
+   * @param data	the data to convert
+   * @param changed	the indices of the changed values
+   * @return		the scores
+   * @throws IllegalArgumentException	if an index is out of range, leaving the state unchanged
+   * @throws Exception	if conversion fails
+   */
+  public double[] apply(double[] data, int[] changed) throws Exception {
+    // Check the indices before touching the state
+    for (int j : changed) {
+      if ((j < 0) || (j >= data.length))
+        throw new IllegalArgumentException("Changed index out of range (0-" + (data.length - 1) + "): " + j);
+    }
+
+    if (!isIncremental(data) || (changed.length > m_MaxChangedFraction * data.length))
+      return recompute(data);
+
+    return update(data, changed, changed.length);
+  }
+
+  /**
+   * Returns whether the scores of the input can be updated incrementally.
+   *
+   * @param data	the data to check
+   * @return		true if incremental update possible
+   */
+  protected boolean isIncremental(double[] data) {
+    return (m_Previous != null)
+      && (data.length == m_Previous.length)
+      && (m_Updates < m_RecomputeInterval);
+  }
+
+  /**
+   * Fully computes the scores.
+   *
+   * @param data	the data to convert
+   * @return		the scores
+   * @throws Exception	if conversion fails
+   */
+  protected double[] recompute(double[] data) throws Exception {
+    m_Scores = m_SIMPLS.apply(data);
+    m_Previous = data.clone();
+    m_Updates = 0;
+    m_NumRecomputes++;
+
+    return m_Scores.clone();
+  }
+
+  /**
+   * Updates the scores with the changed values. Falls back to a full
+   * recompute if a previous or new value is NaN or infinite, as the
+   * difference would leave the scores NaN until the next recompute.
+   *
+   * @param data	the data to convert
+   * @param changed	the indices of the changed values
+   * @param numChanged	the number of indices to use
+   * @return		the scores
+   * @throws Exception	if conversion fails
+   */
+  protected double[] update(double[] data, int[] changed, int numChanged) throws Exception {
+    double[][] w = m_SIMPLS.m_W;
+    int numComponents = m_Scores.length;
+
+    for (int n = 0; n < numChanged; n++) {
+      int j = changed[n];
+      double delta = data[j] - m_Previous[j];
+      if (Double.isNaN(delta) || Double.isInfinite(delta))
+        return recompute(data);
+      double[] loadings = w[j];
+      for (int i = 0; i < numComponents; i++)
+        m_Scores[i] += delta * loadings[i];
+      m_Previous[j] = data[j];
+    }
+    m_Updates++;
+
+    return m_Scores.clone();
+  }
+}
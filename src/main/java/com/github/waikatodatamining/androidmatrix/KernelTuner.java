@@ -0,0 +1,299 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * KernelTuner.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.waikatodatamining.androidmatrix;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+import java.util.Random;
+
+/**
+ * Picks the fastest kernel of each {@link TunableAlgorithm} stage by
+ * micro-benchmarking the available kernels on the actual shape of the
+ * stage (input and output width). The decisions get cached per device and
+ * shape in a properties file, so that later startups can skip the
+ * calibration. As all kernels compute the same output, tuning never
+ * changes the results.
+ * <br>
+ * Example:
+ * <pre>
+ * KernelTuner tuner = new KernelTuner(new File(context.getCacheDir(), "kernels.props"));
+ * ModelLoader loader = new ModelLoader();
+ * loader.setKernelTuner(tuner);
+ * </pre>
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class KernelTuner {
+
+  /** the default number of warm-up calls per kernel. */
+  public static final int DEFAULT_WARMUP_ITERATIONS = 50;
+
+  /** the default number of measured calls per kernel. */
+  public static final int DEFAULT_ITERATIONS = 100;
+
+  /** the file to cache the decisions in, null for no caching. */
+  protected final File m_CacheFile;
+
+  /** the cached decisions. */
+  protected final Properties m_Decisions;
+
+  /** the identifier of the device. */
+  protected final String m_Device;
+
+  /** the number of warm-up calls per kernel. */
+  protected int m_WarmUpIterations;
+
+  /** the number of measured calls per kernel. */
+  protected int m_Iterations;
+
+  /** the number of stages that got calibrated. */
+  protected int m_NumCalibrated;
+
+  /**
+   * Initializes the tuner, loading the cached decisions if the file
+   * exists.
+   *
+   * @param cacheFile	the file to cache the decisions in, null for no caching
+   */
+  public KernelTuner(File cacheFile) {
+    m_CacheFile        = cacheFile;
+    m_Decisions        = new Properties();
+    m_Device           = deviceKey();
+    m_WarmUpIterations = DEFAULT_WARMUP_ITERATIONS;
+    m_Iterations       = DEFAULT_ITERATIONS;
+
+    if ((cacheFile != null) && cacheFile.exists()) {
+      try (InputStream stream = new FileInputStream(cacheFile)) {
+        m_Decisions.load(stream);
+      }
+      catch (IOException e) {
+        // Corrupt cache, calibrate again
+        m_Decisions.clear();
+      }
+    }
+  }
+
+  /**
+   * Returns the identifier of the device, from the architecture, number of
+   * processors and the virtual machine.
+   *
+   * @return		the identifier
+   */
+  protected static String deviceKey() {
+    String result = System.getProperty("os.arch") + "-"
+      + Runtime.getRuntime().availableProcessors() + "cpu-"
+      + System.getProperty("java.vm.name") + "-"
+      + System.getProperty("java.vm.version");
+
+    return result.replaceAll("[^A-Za-z0-9._-]", "_");
+  }
+
+  /**
+   * Sets the number of warm-up calls per kernel.
+   *
+   * @param value	the number of calls
+   */
+  public void setWarmUpIterations(int value) {
+    if (value < 0)
+      throw new IllegalArgumentException("Number of warm-up iterations cannot be negative, provided: " + value);
+    m_WarmUpIterations = value;
+  }
+
+  /**
+   * Returns the number of warm-up calls per kernel.
+   *
+   * @return		the number of calls
+   */
+  public int getWarmUpIterations() {
+    return m_WarmUpIterations;
+  }
+
+  /**
+   * Sets the number of measured calls per kernel.
+   *
+   * @param value	the number of calls
+   */
+  public void setIterations(int value) {
+    if (value < 1)
+      throw new IllegalArgumentException("Number of iterations must be at least 1, provided: " + value);
+    m_Iterations = value;
+  }
+
+  /**
+   * Returns the number of measured calls per kernel.
+   *
+   * @return		the number of calls
+   */
+  public int getIterations() {
+    return m_Iterations;
+  }
+
+  /**
+   * Returns the number of stages that got calibrated (i.e., were not
+   * cached) so far.
+   *
+   * @return		the number of stages
+   */
+  public int getNumCalibrated() {
+    return m_NumCalibrated;
+  }
+
+  /**
+   * Returns the cache key for the stage.
+   *
+   * @param stage	the stage
+   * @param inputWidth	the width of the stage's input
+   * @param outputWidth	the width of the stage's output
+   * @return		the key
+   */
+  protected String key(AbstractAlgorithm stage, int inputWidth, int outputWidth) {
+    return m_Device + "." + stage.getClass().getSimpleName() + "." + inputWidth + "x" + outputWidth;
+  }
+
+  /**
+   * Tunes the stages of all inputs of the map and saves new decisions.
+   *
+   * @param map		the map to tune
+   * @throws Exception	if benchmarking or saving fails
+   */
+  public synchronized void tune(PreprocessingMap map) throws Exception {
+    boolean modified = false;
+    for (PreprocessingStages stages : map.m_OrderedStages)
+      modified |= tuneStages(stages);
+    if (modified)
+      save();
+  }
+
+  /**
+   * Tunes the stages and saves new decisions.
+   *
+   * @param stages	the stages to tune
+   * @throws Exception	if benchmarking or saving fails
+   */
+  public synchronized void tune(PreprocessingStages stages) throws Exception {
+    if (tuneStages(stages))
+      save();
+  }
+
+  /**
+   * Tunes the tunable stages, using the cached decisions where available.
+   *
+   * @param stages	the stages to tune
+   * @return		whether new decisions were made
+   * @throws Exception	if benchmarking fails
+   */
+  protected boolean tuneStages(PreprocessingStages stages) throws Exception {
+    int inputWidth = stages.getInputWidth();
+    if (inputWidth == -1)
+      inputWidth = stages.getInputWidth(PreprocessingStages.DEFAULT_WIDTH);
+    int[] widths = stages.inferWidths(inputWidth);
+
+    boolean result = false;
+    for (int i = 0; i < stages.m_Stages.length; i++) {
+      AbstractAlgorithm stage = stages.m_Stages[i];
+      if (!(stage instanceof TunableAlgorithm))
+        continue;
+      TunableAlgorithm tunable = (TunableAlgorithm) stage;
+      String key = key(stage, widths[i], widths[i + 1]);
+
+      // Use the cached decision if still available
+      String kernel = m_Decisions.getProperty(key);
+      if (kernel != null) {
+        try {
+          tunable.setKernel(kernel);
+          continue;
+        }
+        catch (IllegalArgumentException e) {
+          // Kernel no longer available, calibrate again
+        }
+      }
+
+      m_Decisions.setProperty(key, calibrate(stage, widths[i]));
+      m_NumCalibrated++;
+      result = true;
+    }
+
+    return result;
+  }
+
+  /**
+   * Benchmarks the kernels of the stage and selects the fastest one.
+   *
+   * @param stage	the stage to calibrate, must be tunable
+   * @param inputWidth	the width of the input
+   * @return		the name of the fastest kernel
+   * @throws Exception	if applying fails
+   */
+  protected String calibrate(AbstractAlgorithm stage, int inputWidth) throws Exception {
+    TunableAlgorithm tunable = (TunableAlgorithm) stage;
+    double[] data = stage.sampleInput(inputWidth, new Random(1));
+    double[] result = new double[stage.getOutputWidth(inputWidth)];
+
+    String fastest = null;
+    long fastestNanos = Long.MAX_VALUE;
+    for (String kernel : tunable.getKernels()) {
+      tunable.setKernel(kernel);
+      for (int i = 0; i < m_WarmUpIterations; i++)
+        stage.applyInto(data, result);
+      long start = System.nanoTime();
+      for (int i = 0; i < m_Iterations; i++)
+        stage.applyInto(data, result);
+      long nanos = System.nanoTime() - start;
+      if (nanos < fastestNanos) {
+        fastest = kernel;
+        fastestNanos = nanos;
+      }
+    }
+    tunable.setKernel(fastest);
+
+    return fastest;
+  }
+
+  /**
+   * Returns the cached kernel for the shape of the stage.
+   *
+   * @param stage	the stage
+   * @param inputWidth	the width of the stage's input
+   * @param outputWidth	the width of the stage's output
+   * @return		the name of the kernel, null if not calibrated yet
+   */
+  public synchronized String getDecision(AbstractAlgorithm stage, int inputWidth, int outputWidth) {
+    return m_Decisions.getProperty(key(stage, inputWidth, outputWidth));
+  }
+
+  /**
+   * Saves the decisions to the cache file.
+   *
+   * @throws IOException	if writing fails
+   */
+  protected void save() throws IOException {
+    if (m_CacheFile == null)
+      return;
+    try (OutputStream stream = new FileOutputStream(m_CacheFile)) {
+      m_Decisions.store(stream, "Fastest kernels per device and shape");
+    }
+  }
+}
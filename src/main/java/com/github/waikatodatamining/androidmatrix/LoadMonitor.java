@@ -0,0 +1,73 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * LoadMonitor.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+
+package com.github.waikatodatamining.androidmatrix;
+
+/**
+ * Times the loading of matrices and stages, e.g., to emit profiling events.
+ * Install with {@link LoadMonitoring#setMonitor(LoadMonitor)}.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public interface LoadMonitor {
+
+  /**
+   * Times the loading of a matrix.
+   */
+  interface MatrixTimer {
+
+    /**
+     * Called once the matrix got loaded.
+     *
+     * @param numRows	the number of rows
+     * @param numColumns	the number of columns
+     */
+    void finished(int numRows, int numColumns);
+  }
+
+  /**
+   * Times the loading of a stage, including its matrices.
+   */
+  interface StageTimer {
+
+    /**
+     * Called once the stage got loaded.
+     *
+     * @param stageName	the name of the stage
+     * @param stage	the loaded stage
+     */
+    void finished(String stageName, AbstractAlgorithm stage);
+  }
+
+  /**
+   * Starts timing the loading of a matrix.
+   *
+   * @return		the timer, null if not monitoring
+   */
+  MatrixTimer beginMatrixLoad();
+
+  /**
+   * Starts timing the loading of a stage.
+   *
+   * @return		the timer, null if not monitoring
+   */
+  StageTimer beginStageLoad();
+}
@@ -0,0 +1,83 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * LoadMonitoring.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+
+package com.github.waikatodatamining.androidmatrix;
+
+/**
+ * Holds the monitor that times the loading of matrices and stages. Without
+ * a monitor, the hooks only check for null.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ * @see LoadMonitor
+ */
+public final class LoadMonitoring {
+
+  /** the monitor, null if not monitoring. */
+  protected static volatile LoadMonitor m_Monitor;
+
+  /**
+   * Not to be instantiated.
+   */
+  private LoadMonitoring() {
+  }
+
+  /**
+   * Sets the monitor for all subsequent loads.
+   *
+   * @param value	the monitor, null to stop monitoring
+   */
+  public static void setMonitor(LoadMonitor value) {
+    m_Monitor = value;
+  }
+
+  /**
+   * Returns the monitor.
+   *
+   * @return		the monitor, null if not monitoring
+   */
+  public static LoadMonitor getMonitor() {
+    return m_Monitor;
+  }
+
+  /**
+   * Starts timing the loading of a matrix.
+   *
+   * @return		the timer, null if not monitoring
+   */
+  public static LoadMonitor.MatrixTimer beginMatrixLoad() {
+    LoadMonitor monitor = m_Monitor;
+    if (monitor == null)
+      return null;
+    return monitor.beginMatrixLoad();
+  }
+
+  /**
+   * Starts timing the loading of a stage.
+   *
+   * @return		the timer, null if not monitoring
+   */
+  public static LoadMonitor.StageTimer beginStageLoad() {
+    LoadMonitor monitor = m_Monitor;
+    if (monitor == null)
+      return null;
+    return monitor.beginStageLoad();
+  }
+}
@@ -22,6 +22,9 @@ package com.github.waikatodatamining.androidmatrix;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.DoubleBuffer;
+import java.util.Random;
+import java.util.Set;
 
 /**
  * Returns the logarithm (of a given base) to the offset data.
@@ -30,7 +33,7 @@ import java.io.InputStream;
  */
 public class Log
   extends AbstractAlgorithm
-  implements InvertibleAlgorithm {
+  implements InvertibleAlgorithm, ColumnarAlgorithm {
 
   // The base of the logarithm
   protected double m_Base;
@@ -65,17 +68,69 @@ public class Log
     // Create the result buffer
     double[] result = new double[data.length];
 
+    // Apply the algorithm to each element
+    applyInto(data, result);
+
+    return result;
+  }
+
+  @Override
+  protected void applyInto(double[] data, double[] result) throws Exception {
     // Apply the algorithm to each element
     for (int i = 0; i < data.length; i++) {
       // Apply the offset
-      result[i] = data[i] + m_Offset;
+      double value = data[i] + m_Offset;
+
+      // Log is undefined if the value is zero/negative
+      if (value <= 0)
+        throw new RuntimeException("Logarithm is undefined for zero/negative values");
+
+      // Apply the logarithm
+      result[i] = StrictMath.log(value) * m_BaseConversionFactor;
+    }
+  }
+
+  @Override
+  protected void applyInto(DoubleBuffer data, DoubleBuffer result) throws Exception {
+    int dataOffset = data.position();
+    int resultOffset = result.position();
+    int length = data.remaining();
+
+    // Apply the algorithm to each element
+    for (int i = 0; i < length; i++) {
+      // Apply the offset
+      double value = data.get(dataOffset + i) + m_Offset;
 
       // Log is undefined if the value is zero/negative
-      if (result[i] <= 0)
+      if (value <= 0)
         throw new RuntimeException("Logarithm is undefined for zero/negative values");
 
       // Apply the logarithm
-      result[i] = StrictMath.log(result[i]) * m_BaseConversionFactor;
+      result.put(resultOffset + i, StrictMath.log(value) * m_BaseConversionFactor);
+    }
+  }
+
+  @Override
+  public ColumnarBatch applyColumnar(ColumnarBatch batch) throws Exception {
+    // Create the result buffer
+    int numRows = batch.getNumRows();
+    ColumnarBatch result = new ColumnarBatch(numRows, batch.getNumColumns());
+
+    // Apply the algorithm to each column
+    for (int j = 0; j < batch.getNumColumns(); j++) {
+      double[] column = batch.getColumn(j);
+      double[] resultColumn = result.getColumn(j);
+      for (int i = 0; i < numRows; i++) {
+        // Apply the offset
+        double value = column[i] + m_Offset;
+
+        // Log is undefined if the value is zero/negative
+        if (value <= 0)
+          throw new RuntimeException("Logarithm is undefined for zero/negative values");
+
+        // Apply the logarithm
+        resultColumn[i] = StrictMath.log(value) * m_BaseConversionFactor;
+      }
     }
 
     return result;
@@ -97,4 +152,97 @@ public class Log
 
     return result;
   }
+
+  /**
+   * Returns the bytes retained by the state, skipping objects that were
+   * counted already.
+   *
+   * @param seen	the objects counted already
+   * @return		the bytes
+   */
+  @Override
+  protected long retainedBytes(Set<Object> seen) {
+    long result = super.retainedBytes(seen);
+    if (result == 0)
+      return 0;
+
+    return result + 3 * Double.BYTES;
+  }
+
+  /**
+   * Returns whether the other algorithm has the same state as this one,
+   * i.e., always produces the same output for the same input.
+   *
+   * @param other	the algorithm to compare with
+   * @return		true if the same state
+   */
+  @Override
+  public boolean hasSameState(AbstractAlgorithm other) {
+    if (this == other)
+      return true;
+    if (!(other instanceof Log))
+      return false;
+    Log log = (Log) other;
+    return (Double.compare(m_Base, log.m_Base) == 0)
+      && (Double.compare(m_BaseConversionFactor, log.m_BaseConversionFactor) == 0)
+      && (Double.compare(m_Offset, log.m_Offset) == 0);
+  }
+
+  @Override
+  public boolean isApplicable(double[] data) {
+    if (data == null)
+      return false;
+
+    // Log is undefined if the offset value is zero/negative
+    for (int i = 0; i < data.length; i++) {
+      if (data[i] + m_Offset <= 0)
+        return false;
+    }
+
+    return true;
+  }
+
+  @Override
+  protected double[] applyIfApplicable(double[] data) throws Exception {
+    if (data == null)
+      return null;
+
+    // Check and apply in a single pass
+    double[] result = new double[data.length];
+    for (int i = 0; i < data.length; i++) {
+      // Apply the offset
+      double value = data[i] + m_Offset;
+
+      // Log is undefined if the value is zero/negative
+      if (value <= 0)
+        return null;
+
+      // Apply the logarithm
+      result[i] = StrictMath.log(value) * m_BaseConversionFactor;
+    }
+
+    return result;
+  }
+
+  @Override
+  protected double[] clamp(double[] data) {
+    // The smallest value that is still positive after applying the offset
+    double lowest = Math.nextUp(-m_Offset);
+
+    double[] result = new double[data.length];
+    for (int i = 0; i < data.length; i++)
+      result[i] = (data[i] + m_Offset <= 0) ? lowest : data[i];
+
+    return result;
+  }
+
+  @Override
+  protected double[] sampleInput(int width, Random random) {
+    // Values between 1 and 2 after applying the offset
+    double[] result = new double[width];
+    for (int i = 0; i < width; i++)
+      result[i] = 1.0 + random.nextDouble() - m_Offset;
+
+    return result;
+  }
 }
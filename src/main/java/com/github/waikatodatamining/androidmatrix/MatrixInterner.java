@@ -0,0 +1,353 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * MatrixInterner.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.waikatodatamining.androidmatrix;
+
+import java.io.FilterInputStream;
+import java.io.InputStream;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Shares a single instance of vectors and matrices with identical content.
+ * Matrices are interned row by row first, so that models sharing only some
+ * rows still share those. Interned arrays must be treated as immutable,
+ * which holds for the state of all the algorithms in this library.
+ * <br>
+ * Only the matrices of models that get deserialised from a stream wrapped
+ * with {@link #wrap(InputStream)} get interned, e.g., via
+ * {@link ModelLoader#setInterner(MatrixInterner)}. The interner only holds
+ * weak references, so that the arrays of discarded models (e.g., retired
+ * versions of a {@link ModelHandle}) can still get garbage collected.
+ * <br>
+ * Example:
+ * <pre>
+ * MatrixInterner interner = new MatrixInterner();
+ * PreprocessingMap map1 = new PreprocessingMap(interner.wrap(stream1));
+ * PreprocessingMap map2 = new PreprocessingMap(interner.wrap(stream2));
+ * </pre>
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class MatrixInterner {
+
+  /**
+   * Stream whose deserialised matrices get interned.
+   */
+  protected static class InterningInputStream
+    extends FilterInputStream {
+
+    /** the interner to use. */
+    protected final MatrixInterner m_Interner;
+
+    /**
+     * Initializes the stream.
+     *
+     * @param in		the stream to read from
+     * @param interner	the interner to use
+     */
+    protected InterningInputStream(InputStream in, MatrixInterner interner) {
+      super(in);
+      m_Interner = interner;
+    }
+
+    /**
+     * Returns the wrapped stream.
+     *
+     * @return		the stream
+     */
+    protected InputStream getWrapped() {
+      return in;
+    }
+  }
+
+  /**
+   * Weak reference to an interned array, which also serves as its own key.
+   */
+  protected static class Entry
+    extends WeakReference<Object> {
+
+    /** the hash code of the content. */
+    protected final int m_Hash;
+
+    /**
+     * Initializes the entry.
+     *
+     * @param array	the interned array
+     * @param hash	the hash code of the content
+     * @param queue	the queue to register with
+     */
+    protected Entry(Object array, int hash, ReferenceQueue<Object> queue) {
+      super(array, queue);
+      m_Hash = hash;
+    }
+
+    @Override
+    public int hashCode() {
+      return m_Hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      return (obj == this);
+    }
+  }
+
+  /** the interned vectors. */
+  protected final Map<Object, Entry> m_Vectors = new HashMap<>();
+
+  /** the interned matrices. */
+  protected final Map<Object, Entry> m_Matrices = new HashMap<>();
+
+  /** the queue of the entries whose arrays got garbage collected. */
+  protected final ReferenceQueue<Object> m_Queue = new ReferenceQueue<>();
+
+  /** the number of arrays that were replaced by an interned one. */
+  protected long m_Hits;
+
+  /** the number of bytes saved. */
+  protected long m_BytesSaved;
+
+  /**
+   * Wraps the stream, so that the matrices of the models deserialised from
+   * it get interned.
+   *
+   * @param stream	the stream to wrap
+   * @return		the wrapped stream
+   */
+  public InputStream wrap(InputStream stream) {
+    if ((stream instanceof InterningInputStream) && (((InterningInputStream) stream).m_Interner == this))
+      return stream;
+    return new InterningInputStream(stream, this);
+  }
+
+  /**
+   * Returns the interner the stream got wrapped with.
+   *
+   * @param stream	the stream to check
+   * @return		the interner, null if not interning
+   */
+  public static MatrixInterner of(InputStream stream) {
+    if (stream instanceof InterningInputStream)
+      return ((InterningInputStream) stream).m_Interner;
+    return null;
+  }
+
+  /**
+   * Removes the entries whose arrays got garbage collected. Must be called
+   * while holding the lock.
+   */
+  protected void expunge() {
+    Reference<?> ref;
+    while ((ref = m_Queue.poll()) != null) {
+      m_Vectors.remove(ref);
+      m_Matrices.remove(ref);
+    }
+  }
+
+  /**
+   * Returns the interned instance of the vector.
+   *
+   * @param vector	the vector to intern
+   * @return		the interned instance
+   */
+  public double[] intern(double[] vector) {
+    // Hash outside the lock
+    VectorKey key = new VectorKey(vector);
+
+    synchronized (this) {
+      expunge();
+
+      Entry entry = m_Vectors.get(key);
+      double[] result = (entry == null) ? null : (double[]) entry.get();
+      if (result == null) {
+        entry = new Entry(vector, key.m_Hash, m_Queue);
+        m_Vectors.put(entry, entry);
+        return vector;
+      }
+
+      if (result != vector) {
+        m_Hits++;
+        m_BytesSaved += MemoryFootprint.vectorBytes(vector.length);
+      }
+
+      return result;
+    }
+  }
+
+  /**
+   * Returns the interned instance of the matrix, interning its rows as well.
+   *
+   * @param matrix	the matrix to intern
+   * @return		the interned instance
+   */
+  public double[][] intern(double[][] matrix) {
+    // Intern the rows
+    double[][] rows = new double[matrix.length][];
+    for (int i = 0; i < matrix.length; i++)
+      rows[i] = intern(matrix[i]);
+
+    // Rows are interned, so the matrix can be compared by row identity
+    MatrixKey key = new MatrixKey(rows);
+
+    synchronized (this) {
+      Entry entry = m_Matrices.get(key);
+      double[][] result = (entry == null) ? null : (double[][]) entry.get();
+      if (result == null) {
+        System.arraycopy(rows, 0, matrix, 0, rows.length);
+        entry = new Entry(matrix, key.m_Hash, m_Queue);
+        m_Matrices.put(entry, entry);
+        return matrix;
+      }
+
+      if (result != matrix) {
+        m_Hits++;
+        m_BytesSaved += MemoryFootprint.referencesBytes(matrix.length);
+      }
+
+      return result;
+    }
+  }
+
+  /**
+   * Returns the number of arrays that were replaced by an interned one.
+   *
+   * @return		the number of arrays
+   */
+  public synchronized long getHits() {
+    return m_Hits;
+  }
+
+  /**
+   * Returns the approximate number of bytes saved by sharing arrays.
+   *
+   * @return		the number of bytes
+   */
+  public synchronized long getBytesSaved() {
+    return m_BytesSaved;
+  }
+
+  /**
+   * Returns the number of distinct vectors that are interned and still in
+   * use.
+   *
+   * @return		the number of vectors
+   */
+  public synchronized int getNumVectors() {
+    expunge();
+    return m_Vectors.size();
+  }
+
+  /**
+   * Forgets all interned arrays (models keep sharing the ones they have).
+   */
+  public synchronized void clear() {
+    expunge();
+    m_Vectors.clear();
+    m_Matrices.clear();
+    m_Hits = 0;
+    m_BytesSaved = 0;
+  }
+
+  /**
+   * Key for looking up vectors by content.
+   */
+  protected static class VectorKey {
+
+    /** the vector. */
+    protected final double[] m_Vector;
+
+    /** the hash code. */
+    protected final int m_Hash;
+
+    /**
+     * Initializes the key.
+     *
+     * @param vector	the vector
+     */
+    protected VectorKey(double[] vector) {
+      m_Vector = vector;
+      m_Hash   = Arrays.hashCode(vector);
+    }
+
+    @Override
+    public int hashCode() {
+      return m_Hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof Entry))
+        return false;
+      Entry other = (Entry) obj;
+      return (m_Hash == other.m_Hash) && Arrays.equals(m_Vector, (double[]) other.get());
+    }
+  }
+
+  /**
+   * Key for looking up matrices by the identity of their (interned) rows.
+   */
+  protected static class MatrixKey {
+
+    /** the matrix. */
+    protected final double[][] m_Matrix;
+
+    /** the hash code. */
+    protected final int m_Hash;
+
+    /**
+     * Initializes the key.
+     *
+     * @param matrix	the matrix with interned rows
+     */
+    protected MatrixKey(double[][] matrix) {
+      int hash = 1;
+      for (double[] row : matrix)
+        hash = 31 * hash + System.identityHashCode(row);
+
+      m_Matrix = matrix;
+      m_Hash   = hash;
+    }
+
+    @Override
+    public int hashCode() {
+      return m_Hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof Entry))
+        return false;
+      Entry other = (Entry) obj;
+      double[][] matrix = (double[][]) other.get();
+      if ((m_Hash != other.m_Hash) || (matrix == null) || (m_Matrix.length != matrix.length))
+        return false;
+      for (int i = 0; i < m_Matrix.length; i++) {
+        if (m_Matrix[i] != matrix[i])
+          return false;
+      }
+      return true;
+    }
+  }
+}
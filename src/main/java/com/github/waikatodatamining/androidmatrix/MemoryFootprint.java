@@ -0,0 +1,140 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * MemoryFootprint.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.waikatodatamining.androidmatrix;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * Estimates the heap retained by models, assuming 16 byte object and array
+ * headers and 4 byte (compressed) references, rounded to multiples of 8
+ * bytes. Arrays get counted only once per estimate, so matrices shared
+ * between stages (e.g., truncated views or interned matrices) do not get
+ * counted twice.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ * @see AbstractAlgorithm#getRetainedBytes()
+ * @see PreprocessingMap#getRetainedBytes()
+ * @see ModelLoader#setMemoryBudget(long)
+ */
+public final class MemoryFootprint {
+
+  /** the size of an object header. */
+  public static final int OBJECT_HEADER = 16;
+
+  /** the size of an array header. */
+  public static final int ARRAY_HEADER = 16;
+
+  /** the size of a reference. */
+  public static final int REFERENCE = 4;
+
+  /** the size of an algorithm without its state. */
+  public static final int ALGORITHM_OVERHEAD = OBJECT_HEADER + REFERENCE;
+
+  /**
+   * Not to be instantiated.
+   */
+  private MemoryFootprint() {
+  }
+
+  /**
+   * Creates a new set for the objects that have been counted already.
+   *
+   * @return		the set, using identity comparison
+   */
+  public static Set<Object> newSeen() {
+    return Collections.newSetFromMap(new IdentityHashMap<>());
+  }
+
+  /**
+   * Rounds the size up to a multiple of 8 bytes.
+   *
+   * @param bytes	the size
+   * @return		the aligned size
+   */
+  public static long align(long bytes) {
+    return (bytes + 7) & ~7L;
+  }
+
+  /**
+   * Returns the size of an array of references.
+   *
+   * @param length	the length of the array
+   * @return		the bytes
+   */
+  public static long referencesBytes(long length) {
+    return align(ARRAY_HEADER + length * REFERENCE);
+  }
+
+  /**
+   * Returns the size of an array of doubles.
+   *
+   * @param length	the length of the array
+   * @return		the bytes
+   */
+  public static long vectorBytes(long length) {
+    return align(ARRAY_HEADER + length * Double.BYTES);
+  }
+
+  /**
+   * Returns the size of a matrix of doubles, stored as array of rows.
+   *
+   * @param numRows	the number of rows
+   * @param numColumns	the number of columns
+   * @return		the bytes
+   */
+  public static long matrixBytes(long numRows, long numColumns) {
+    return referencesBytes(numRows) + numRows * vectorBytes(numColumns);
+  }
+
+  /**
+   * Returns the size of the array, unless counted already.
+   *
+   * @param array	the array, can be null
+   * @param seen	the objects counted already
+   * @return		the bytes, 0 if already counted
+   */
+  public static long retained(double[] array, Set<Object> seen) {
+    if ((array == null) || !seen.add(array))
+      return 0;
+    return vectorBytes(array.length);
+  }
+
+  /**
+   * Returns the size of the matrix, skipping the rows (or the matrix)
+   * counted already.
+   *
+   * @param matrix	the matrix, can be null
+   * @param seen	the objects counted already
+   * @return		the bytes, 0 if already counted
+   */
+  public static long retained(double[][] matrix, Set<Object> seen) {
+    if ((matrix == null) || !seen.add(matrix))
+      return 0;
+
+    long result = referencesBytes(matrix.length);
+    for (double[] row : matrix)
+      result += retained(row, seen);
+
+    return result;
+  }
+}
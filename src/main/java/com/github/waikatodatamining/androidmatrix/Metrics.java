@@ -0,0 +1,82 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Metrics.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.waikatodatamining.androidmatrix;
+
+/**
+ * Hook for collecting execution metrics from {@link PreprocessingStages}
+ * and {@link PreprocessingMap}. Probes get requested once, when the metrics
+ * are attached, so that the hot path only has to perform a null check
+ * when no metrics are being collected.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ * @see NullMetrics
+ * @see MetricsRecorder
+ */
+public interface Metrics {
+
+  /** the stage index used for the probe that covers the whole pipeline. */
+  int PIPELINE = -1;
+
+  /** the stage index used for the probe that covers the evaluation of a map. */
+  int MAP = -2;
+
+  /**
+   * Returns the probe for the specified stage of the named input.
+   *
+   * @param input	the name of the input, null if not part of a map
+   * @param stage	the index of the stage, {@link #PIPELINE} for the whole pipeline, {@link #MAP} for a map
+   * @param algorithm	the algorithm that gets measured, null for a map
+   * @return		the probe, null if not recording
+   */
+  Probe probe(String input, int stage, Algorithm algorithm);
+
+  /**
+   * Records the measurements of a single stage or pipeline.
+   */
+  interface Probe {
+
+    /**
+     * Records a successful call.
+     *
+     * @param inputWidth	the width of the input vector
+     * @param outputWidth	the width of the output vector
+     * @param nanos	the duration of the call in nanoseconds
+     */
+    void record(int inputWidth, int outputWidth, long nanos);
+
+    /**
+     * Records a failed call.
+     *
+     * @param t		the exception that was thrown
+     */
+    void failed(Throwable t);
+
+    /**
+     * Returns whether the probe currently records anything. If not, the
+     * caller skips the timing of the call altogether.
+     *
+     * @return		true if recording
+     */
+    default boolean isRecording() {
+      return true;
+    }
+  }
+}
@@ -0,0 +1,234 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * MetricsRecorder.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.waikatodatamining.androidmatrix;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread-safe metrics that records call counts, cumulative durations,
+ * a latency histogram, the input/output widths and the exceptions for
+ * each probe. The histogram uses power-of-two buckets of nanoseconds.
+ * Use {@link #snapshot()} to obtain the data.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class MetricsRecorder
+  implements Metrics {
+
+  /** the number of histogram buckets. */
+  public static final int NUM_BUCKETS = 64;
+
+  /** the probes, with the key generated from input/stage/algorithm. */
+  protected final Map<String, RecordingProbe> m_Probes = new LinkedHashMap<>();
+
+  /**
+   * Returns the probe for the specified stage of the named input. Requesting
+   * the same input/stage/algorithm combination again returns the same probe.
+   *
+   * @param input	the name of the input, null if not part of a map
+   * @param stage	the index of the stage, {@link #PIPELINE} for the whole pipeline
+   * @param algorithm	the algorithm that gets measured
+   * @return		the probe
+   */
+  @Override
+  public synchronized Probe probe(String input, int stage, Algorithm algorithm) {
+    // Generate a key for the combination
+    String algName = (algorithm == null) ? PreprocessingMap.class.getSimpleName() : algorithm.getClass().getSimpleName();
+    String key = input + "\t" + stage + "\t" + algName;
+
+    // Re-use existing probe if possible
+    RecordingProbe result = m_Probes.get(key);
+    if (result == null) {
+      result = new RecordingProbe(input, stage, algName);
+      m_Probes.put(key, result);
+    }
+
+    return result;
+  }
+
+  /**
+   * Resets the measurements of all probes.
+   */
+  public synchronized void reset() {
+    for (RecordingProbe probe : m_Probes.values())
+      probe.reset();
+  }
+
+  /**
+   * Returns a snapshot of the current measurements.
+   *
+   * @return		the snapshot
+   */
+  public synchronized MetricsSnapshot snapshot() {
+    List<MetricsSnapshot.Entry> entries = new ArrayList<>();
+    for (RecordingProbe probe : m_Probes.values())
+      entries.add(probe.snapshot());
+
+    return new MetricsSnapshot(entries);
+  }
+
+  /**
+   * Returns the histogram bucket for the duration.
+   *
+   * @param nanos	the duration in nanoseconds
+   * @return		the bucket index
+   */
+  public static int bucket(long nanos) {
+    if (nanos <= 0)
+      return 0;
+    return 63 - Long.numberOfLeadingZeros(nanos);
+  }
+
+  /**
+   * Probe that records into counters.
+   */
+  protected static class RecordingProbe
+    implements Probe {
+
+    /** the input name. */
+    protected final String m_Input;
+
+    /** the stage index. */
+    protected final int m_Stage;
+
+    /** the algorithm name. */
+    protected final String m_Algorithm;
+
+    /** the number of successful calls. */
+    protected final LongAdder m_Count = new LongAdder();
+
+    /** the number of failed calls. */
+    protected final LongAdder m_Failures = new LongAdder();
+
+    /** the cumulative nanoseconds. */
+    protected final LongAdder m_TotalNanos = new LongAdder();
+
+    /** the latency histogram. */
+    protected final AtomicLongArray m_Histogram = new AtomicLongArray(NUM_BUCKETS);
+
+    /** the exception counts per class. */
+    protected final Map<String, LongAdder> m_Exceptions = new ConcurrentHashMap<>();
+
+    /** the smallest input width (updated racily, widths rarely change). */
+    protected volatile int m_MinInputWidth = Integer.MAX_VALUE;
+
+    /** the largest input width. */
+    protected volatile int m_MaxInputWidth = -1;
+
+    /** the smallest output width. */
+    protected volatile int m_MinOutputWidth = Integer.MAX_VALUE;
+
+    /** the largest output width. */
+    protected volatile int m_MaxOutputWidth = -1;
+
+    /**
+     * Initializes the probe.
+     *
+     * @param input	the input name
+     * @param stage	the stage index
+     * @param algorithm	the algorithm name
+     */
+    protected RecordingProbe(String input, int stage, String algorithm) {
+      m_Input     = input;
+      m_Stage     = stage;
+      m_Algorithm = algorithm;
+    }
+
+    /**
+     * Records a successful call.
+     *
+     * @param inputWidth	the width of the input vector
+     * @param outputWidth	the width of the output vector
+     * @param nanos	the duration of the call in nanoseconds
+     */
+    @Override
+    public void record(int inputWidth, int outputWidth, long nanos) {
+      m_Count.increment();
+      m_TotalNanos.add(nanos);
+      m_Histogram.incrementAndGet(bucket(nanos));
+      if (inputWidth < m_MinInputWidth)
+        m_MinInputWidth = inputWidth;
+      if (inputWidth > m_MaxInputWidth)
+        m_MaxInputWidth = inputWidth;
+      if (outputWidth < m_MinOutputWidth)
+        m_MinOutputWidth = outputWidth;
+      if (outputWidth > m_MaxOutputWidth)
+        m_MaxOutputWidth = outputWidth;
+    }
+
+    /**
+     * Records a failed call.
+     *
+     * @param t		the exception that was thrown
+     */
+    @Override
+    public void failed(Throwable t) {
+      m_Failures.increment();
+      m_Exceptions.computeIfAbsent(t.getClass().getName(), k -> new LongAdder()).increment();
+    }
+
+    /**
+     * Resets the measurements.
+     */
+    protected void reset() {
+      m_Count.reset();
+      m_Failures.reset();
+      m_TotalNanos.reset();
+      for (int i = 0; i < NUM_BUCKETS; i++)
+        m_Histogram.set(i, 0);
+      m_Exceptions.clear();
+      m_MinInputWidth  = Integer.MAX_VALUE;
+      m_MaxInputWidth  = -1;
+      m_MinOutputWidth = Integer.MAX_VALUE;
+      m_MaxOutputWidth = -1;
+    }
+
+    /**
+     * Returns a snapshot of the current measurements.
+     *
+     * @return		the snapshot
+     */
+    protected MetricsSnapshot.Entry snapshot() {
+      // Copy the histogram
+      long[] histogram = new long[NUM_BUCKETS];
+      for (int i = 0; i < NUM_BUCKETS; i++)
+        histogram[i] = m_Histogram.get(i);
+
+      // Copy the exception counts
+      Map<String, Long> exceptions = new LinkedHashMap<>();
+      for (Map.Entry<String, LongAdder> entry : m_Exceptions.entrySet())
+        exceptions.put(entry.getKey(), entry.getValue().sum());
+
+      return new MetricsSnapshot.Entry(
+        m_Input, m_Stage, m_Algorithm,
+        m_Count.sum(), m_Failures.sum(), m_TotalNanos.sum(),
+        (m_MaxInputWidth == -1) ? -1 : m_MinInputWidth, m_MaxInputWidth,
+        (m_MaxOutputWidth == -1) ? -1 : m_MinOutputWidth, m_MaxOutputWidth,
+        histogram, exceptions);
+    }
+  }
+}
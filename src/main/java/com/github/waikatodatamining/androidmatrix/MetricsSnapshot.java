@@ -0,0 +1,315 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * MetricsSnapshot.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.waikatodatamining.androidmatrix;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable snapshot of the measurements collected by a {@link MetricsRecorder}.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class MetricsSnapshot {
+
+  /** the entries. */
+  protected final List<Entry> m_Entries;
+
+  /**
+   * Initializes the snapshot.
+   *
+   * @param entries	the entries
+   */
+  public MetricsSnapshot(List<Entry> entries) {
+    m_Entries = Collections.unmodifiableList(entries);
+  }
+
+  /**
+   * Returns all the entries.
+   *
+   * @return		the entries
+   */
+  public List<Entry> getEntries() {
+    return m_Entries;
+  }
+
+  /**
+   * Returns the entry for the specified input and stage.
+   *
+   * @param input	the input name, null if not part of a map
+   * @param stage	the stage index, {@link Metrics#PIPELINE} for the whole pipeline
+   * @return		the entry, null if not found
+   */
+  public Entry getEntry(String input, int stage) {
+    for (Entry entry : m_Entries) {
+      if ((entry.getStage() == stage) && ((input == null) ? (entry.getInput() == null) : input.equals(entry.getInput())))
+        return entry;
+    }
+
+    return null;
+  }
+
+  /**
+   * Dumps the entries as tab-separated table.
+   *
+   * @return		the table
+   */
+  @Override
+  public String toString() {
+    StringBuilder result = new StringBuilder();
+    result.append("input\tstage\talgorithm\tcount\tfailures\ttotal_ns\tmean_ns\tp50_ns\tp99_ns\tinput_width\toutput_width\texceptions\n");
+    for (Entry entry : m_Entries) {
+      result.append(entry.getInput()).append("\t");
+      result.append((entry.getStage() == Metrics.PIPELINE) ? "*" : "" + entry.getStage()).append("\t");
+      result.append(entry.getAlgorithm()).append("\t");
+      result.append(entry.getCount()).append("\t");
+      result.append(entry.getFailures()).append("\t");
+      result.append(entry.getTotalNanos()).append("\t");
+      result.append(entry.getMeanNanos()).append("\t");
+      result.append(entry.getPercentileNanos(0.5)).append("\t");
+      result.append(entry.getPercentileNanos(0.99)).append("\t");
+      result.append(entry.getMinInputWidth()).append("-").append(entry.getMaxInputWidth()).append("\t");
+      result.append(entry.getMinOutputWidth()).append("-").append(entry.getMaxOutputWidth()).append("\t");
+      result.append(entry.getExceptions()).append("\n");
+    }
+
+    return result.toString();
+  }
+
+  /**
+   * The measurements of a single probe.
+   */
+  public static class Entry {
+
+    /** the input name. */
+    protected final String m_Input;
+
+    /** the stage index. */
+    protected final int m_Stage;
+
+    /** the algorithm name. */
+    protected final String m_Algorithm;
+
+    /** the number of successful calls. */
+    protected final long m_Count;
+
+    /** the number of failed calls. */
+    protected final long m_Failures;
+
+    /** the cumulative nanoseconds. */
+    protected final long m_TotalNanos;
+
+    /** the smallest input width. */
+    protected final int m_MinInputWidth;
+
+    /** the largest input width. */
+    protected final int m_MaxInputWidth;
+
+    /** the smallest output width. */
+    protected final int m_MinOutputWidth;
+
+    /** the largest output width. */
+    protected final int m_MaxOutputWidth;
+
+    /** the latency histogram (power-of-two buckets). */
+    protected final long[] m_Histogram;
+
+    /** the exception counts per class. */
+    protected final Map<String, Long> m_Exceptions;
+
+    /**
+     * Initializes the entry.
+     *
+     * @param input		the input name
+     * @param stage		the stage index
+     * @param algorithm		the algorithm name
+     * @param count		the number of successful calls
+     * @param failures		the number of failed calls
+     * @param totalNanos	the cumulative nanoseconds
+     * @param minInputWidth	the smallest input width, -1 if none recorded
+     * @param maxInputWidth	the largest input width, -1 if none recorded
+     * @param minOutputWidth	the smallest output width, -1 if none recorded
+     * @param maxOutputWidth	the largest output width, -1 if none recorded
+     * @param histogram		the latency histogram
+     * @param exceptions	the exception counts per class
+     */
+    public Entry(String input, int stage, String algorithm, long count, long failures, long totalNanos,
+                 int minInputWidth, int maxInputWidth, int minOutputWidth, int maxOutputWidth,
+                 long[] histogram, Map<String, Long> exceptions) {
+      m_Input          = input;
+      m_Stage          = stage;
+      m_Algorithm      = algorithm;
+      m_Count          = count;
+      m_Failures       = failures;
+      m_TotalNanos     = totalNanos;
+      m_MinInputWidth  = minInputWidth;
+      m_MaxInputWidth  = maxInputWidth;
+      m_MinOutputWidth = minOutputWidth;
+      m_MaxOutputWidth = maxOutputWidth;
+      m_Histogram      = histogram;
+      m_Exceptions     = Collections.unmodifiableMap(exceptions);
+    }
+
+    /**
+     * Returns the input name.
+     *
+     * @return		the name, null if not part of a map
+     */
+    public String getInput() {
+      return m_Input;
+    }
+
+    /**
+     * Returns the stage index.
+     *
+     * @return		the index, {@link Metrics#PIPELINE} for the whole pipeline
+     */
+    public int getStage() {
+      return m_Stage;
+    }
+
+    /**
+     * Returns the name of the algorithm.
+     *
+     * @return		the name
+     */
+    public String getAlgorithm() {
+      return m_Algorithm;
+    }
+
+    /**
+     * Returns the number of successful calls.
+     *
+     * @return		the count
+     */
+    public long getCount() {
+      return m_Count;
+    }
+
+    /**
+     * Returns the number of failed calls.
+     *
+     * @return		the count
+     */
+    public long getFailures() {
+      return m_Failures;
+    }
+
+    /**
+     * Returns the cumulative duration of the successful calls.
+     *
+     * @return		the duration in nanoseconds
+     */
+    public long getTotalNanos() {
+      return m_TotalNanos;
+    }
+
+    /**
+     * Returns the mean duration of the successful calls.
+     *
+     * @return		the mean in nanoseconds, 0 if no calls
+     */
+    public long getMeanNanos() {
+      if (m_Count == 0)
+        return 0;
+      return m_TotalNanos / m_Count;
+    }
+
+    /**
+     * Returns the smallest input width.
+     *
+     * @return		the width, -1 if none recorded
+     */
+    public int getMinInputWidth() {
+      return m_MinInputWidth;
+    }
+
+    /**
+     * Returns the largest input width.
+     *
+     * @return		the width, -1 if none recorded
+     */
+    public int getMaxInputWidth() {
+      return m_MaxInputWidth;
+    }
+
+    /**
+     * Returns the smallest output width.
+     *
+     * @return		the width, -1 if none recorded
+     */
+    public int getMinOutputWidth() {
+      return m_MinOutputWidth;
+    }
+
+    /**
+     * Returns the largest output width.
+     *
+     * @return		the width, -1 if none recorded
+     */
+    public int getMaxOutputWidth() {
+      return m_MaxOutputWidth;
+    }
+
+    /**
+     * Returns the latency histogram. Bucket i counts the calls that took
+     * from 2^i up to (excluding) 2^(i+1) nanoseconds.
+     *
+     * @return		the histogram
+     */
+    public long[] getHistogram() {
+      return m_Histogram.clone();
+    }
+
+    /**
+     * Returns the upper bound of the histogram bucket that contains the
+     * specified percentile.
+     *
+     * @param percentile	the percentile (0-1)
+     * @return		the upper bound in nanoseconds, 0 if no calls
+     */
+    public long getPercentileNanos(double percentile) {
+      if (m_Count == 0)
+        return 0;
+
+      // Find the bucket in which the cumulative count reaches the percentile
+      long threshold = (long) Math.ceil(percentile * m_Count);
+      long cumulative = 0;
+      for (int i = 0; i < m_Histogram.length; i++) {
+        cumulative += m_Histogram[i];
+        if ((cumulative >= threshold) && (cumulative > 0))
+          return (i >= 62) ? Long.MAX_VALUE : (1L << (i + 1));
+      }
+
+      return Long.MAX_VALUE;
+    }
+
+    /**
+     * Returns the exception counts per exception class.
+     *
+     * @return		the counts
+     */
+    public Map<String, Long> getExceptions() {
+      return m_Exceptions;
+    }
+  }
+}
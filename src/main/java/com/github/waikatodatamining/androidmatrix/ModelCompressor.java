@@ -0,0 +1,157 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * ModelCompressor.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.waikatodatamining.androidmatrix;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Compresses model files with gzip or zlib (deflate). gzip gets detected
+ * automatically when loading (see {@link PyMADeserialisation#open(InputStream)}),
+ * zlib models have to be wrapped in an {@link InflaterInputStream}.
+ * From the command-line, it also compares file size and load time of the
+ * raw and the compressed model.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class ModelCompressor {
+
+  /** the number of loads for timing. */
+  public static final int NUM_LOADS = 10;
+
+  /**
+   * Compresses the stream. The output stream gets flushed, but not closed.
+   *
+   * @param input	the raw model
+   * @param output	the stream to write the compressed model to
+   * @param zlib	whether to use zlib rather than gzip
+   * @throws IOException	if compressing fails
+   */
+  public static void compress(InputStream input, OutputStream output, boolean zlib) throws IOException {
+    // Closing the deflater stream releases the native memory of its deflater,
+    // so keep it from closing the caller's stream
+    OutputStream shield = new FilterOutputStream(output) {
+      @Override
+      public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+      }
+      @Override
+      public void close() throws IOException {
+        flush();
+      }
+    };
+
+    try (DeflaterOutputStream deflater = zlib
+      ? new DeflaterOutputStream(shield)
+      : new GZIPOutputStream(shield, PyMADeserialisation.BUFFER_SIZE)) {
+      byte[] buffer = new byte[PyMADeserialisation.BUFFER_SIZE];
+      int read;
+      while ((read = input.read(buffer)) != -1)
+        deflater.write(buffer, 0, read);
+    }
+  }
+
+  /**
+   * Loads the model from the file the specified number of times.
+   *
+   * @param file	the model file
+   * @param map		whether the file contains a map rather than stages
+   * @param zlib	whether the file is compressed with zlib
+   * @param count	the number of loads
+   * @return		the mean duration per load in nanoseconds
+   * @throws IOException	if loading fails
+   */
+  public static long timeLoad(File file, boolean map, boolean zlib, int count) throws IOException {
+    long start = System.nanoTime();
+    for (int i = 0; i < count; i++) {
+      try (InputStream stream = zlib
+        ? new InflaterInputStream(new BufferedInputStream(new FileInputStream(file)))
+        : new BufferedInputStream(new FileInputStream(file))) {
+        if (map)
+          new PreprocessingMap(stream);
+        else
+          new PreprocessingStages(stream);
+      }
+    }
+
+    return (System.nanoTime() - start) / count;
+  }
+
+  /**
+   * Compresses a model file from the command-line and reports the file
+   * sizes and load times.
+   * <br>
+   * Usage: ModelCompressor [-zlib] [-map] input output
+   *
+   * @param args	the command-line arguments
+   * @throws Exception	if compressing fails
+   */
+  public static void main(String[] args) throws Exception {
+    boolean zlib = false;
+    boolean map = false;
+    int index = 0;
+
+    // Parse the options
+    while ((index < args.length) && args[index].startsWith("-")) {
+      if (args[index].equals("-zlib")) {
+        zlib = true;
+      }
+      else if (args[index].equals("-map")) {
+        map = true;
+      }
+      else {
+        System.err.println("Unknown option: " + args[index]);
+        System.exit(1);
+      }
+      index++;
+    }
+    if (args.length - index != 2) {
+      System.err.println("Usage: " + ModelCompressor.class.getName() + " [-zlib] [-map] input output");
+      System.exit(1);
+    }
+
+    // Compress
+    File input = new File(args[index]);
+    File output = new File(args[index + 1]);
+    try (InputStream in = new FileInputStream(input);
+         OutputStream out = new FileOutputStream(output)) {
+      compress(in, out, zlib);
+    }
+
+    // Compare
+    timeLoad(input, map, false, NUM_LOADS);
+    timeLoad(output, map, zlib, NUM_LOADS);
+    long raw = timeLoad(input, map, false, NUM_LOADS);
+    long compressed = timeLoad(output, map, zlib, NUM_LOADS);
+    System.out.println(String.format("raw:        %d bytes, %.3f ms per load", input.length(), raw / 1e6));
+    System.out.println(String.format("compressed: %d bytes (%.1f%%), %.3f ms per load",
+      output.length(), 100.0 * output.length() / input.length(), compressed / 1e6));
+  }
+}
@@ -0,0 +1,572 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * ModelHandle.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.waikatodatamining.androidmatrix;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Managed handle for a model loaded from a file, which can be reloaded
+ * while serving requests. New versions (including the first one) get
+ * loaded, validated and optionally warmed up before being published
+ * atomically. Readers acquire the current version without taking locks and
+ * close their reader when done; a replaced version gets retired once its
+ * last reader got closed.
+ * <br>
+ * Example:
+ * <pre>
+ * ModelHandle&lt;PreprocessingMap&gt; handle = new ModelHandle&lt;&gt;(file, PreprocessingMap::new, null, map -&gt; map.warmUp(10000));
+ * handle.start();
+ * ...
+ * try (ModelHandle.Reader&lt;PreprocessingMap&gt; reader = handle.acquire()) {
+ *   result = reader.get().apply(data);
+ * }
+ * </pre>
+ *
+ * @param <T>	the type of model
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class ModelHandle<T>
+  implements Closeable {
+
+  /** the default delay in msec after a file change before reloading. */
+  public static final int DEFAULT_DELAY = 200;
+
+  /**
+   * Instantiates a model from a stream.
+   *
+   * @param <T>	the type of model
+   */
+  public interface Loader<T> {
+
+    /**
+     * Loads the model.
+     *
+     * @param stream	the stream to read from
+     * @return		the model
+     * @throws Exception	if loading fails
+     */
+    T load(InputStream stream) throws Exception;
+  }
+
+  /**
+   * A step performed on a newly loaded model before publishing it.
+   *
+   * @param <T>	the type of model
+   */
+  public interface Task<T> {
+
+    /**
+     * Performs the step.
+     *
+     * @param model	the model
+     * @throws Exception	if the step fails, prevents publishing
+     */
+    void run(T model) throws Exception;
+  }
+
+  /**
+   * Gets notified about reloads.
+   *
+   * @param <T>	the type of model
+   */
+  public interface Listener<T> {
+
+    /**
+     * Called when a new version got published.
+     *
+     * @param version	the new version
+     */
+    void published(Version<T> version);
+
+    /**
+     * Called when loading a new version failed, the old version remains
+     * in use.
+     *
+     * @param e		the exception
+     */
+    void failed(Exception e);
+
+    /**
+     * Called when a replaced version got released by its last reader.
+     *
+     * @param version	the retired version
+     */
+    void retired(Version<T> version);
+  }
+
+  /**
+   * A version of the model. Readers hold a reference until they get closed,
+   * the handle holds one while the version is current.
+   *
+   * @param <T>	the type of model
+   */
+  public static class Version<T> {
+
+    /** the handle this version belongs to. */
+    protected final ModelHandle<T> m_Owner;
+
+    /** the model. */
+    protected final T m_Model;
+
+    /** the version number. */
+    protected final int m_Number;
+
+    /** the number of references (the handle holds one while current). */
+    protected final AtomicInteger m_References = new AtomicInteger(1);
+
+    /**
+     * Initializes the version.
+     *
+     * @param owner	the handle this version belongs to
+     * @param model	the model
+     * @param number	the version number
+     */
+    protected Version(ModelHandle<T> owner, T model, int number) {
+      m_Owner  = owner;
+      m_Model  = model;
+      m_Number = number;
+    }
+
+    /**
+     * Returns the model.
+     *
+     * @return		the model
+     */
+    public T get() {
+      return m_Model;
+    }
+
+    /**
+     * Returns the version number, starting with 1.
+     *
+     * @return		the number
+     */
+    public int getNumber() {
+      return m_Number;
+    }
+
+    /**
+     * Adds a reference, unless the version has been retired already.
+     *
+     * @return		true if successful
+     */
+    protected boolean retain() {
+      while (true) {
+        int references = m_References.get();
+        if (references == 0)
+          return false;
+        if (m_References.compareAndSet(references, references + 1))
+          return true;
+      }
+    }
+
+    /**
+     * Removes a reference, retiring the version with the last one. The
+     * reference of the handle cannot be removed while the version is
+     * current.
+     *
+     * @throws IllegalStateException	if the version is current and only referenced by the handle, or retired already
+     */
+    protected void release() {
+      while (true) {
+        int references = m_References.get();
+        if (references == 0)
+          throw new IllegalStateException("Version " + m_Number + " has been retired already");
+        if ((references == 1) && (m_Owner.m_Current.get() == this))
+          throw new IllegalStateException("Version " + m_Number + " is current and not acquired by any reader");
+        if (m_References.compareAndSet(references, references - 1)) {
+          if (references == 1)
+            m_Owner.retired(this);
+          return;
+        }
+      }
+    }
+  }
+
+  /**
+   * A reference to a version acquired by a reader. Closing it more than
+   * once has no effect.
+   *
+   * @param <T>	the type of model
+   */
+  public static class Reader<T>
+    implements AutoCloseable {
+
+    /** the acquired version. */
+    protected final Version<T> m_Version;
+
+    /** whether the reader has been closed. */
+    protected final AtomicBoolean m_Closed = new AtomicBoolean();
+
+    /**
+     * Initializes the reader.
+     *
+     * @param version	the acquired version
+     */
+    protected Reader(Version<T> version) {
+      m_Version = version;
+    }
+
+    /**
+     * Returns the model.
+     *
+     * @return		the model
+     * @throws IllegalStateException	if the reader has been closed already
+     */
+    public T get() {
+      if (m_Closed.get())
+        throw new IllegalStateException("Reader has been closed already");
+      return m_Version.get();
+    }
+
+    /**
+     * Returns the acquired version.
+     *
+     * @return		the version
+     */
+    public Version<T> getVersion() {
+      return m_Version;
+    }
+
+    /**
+     * Returns the number of the acquired version.
+     *
+     * @return		the number
+     */
+    public int getNumber() {
+      return m_Version.getNumber();
+    }
+
+    /**
+     * Returns whether the reader has been closed.
+     *
+     * @return		true if closed
+     */
+    public boolean isClosed() {
+      return m_Closed.get();
+    }
+
+    /**
+     * Releases the version, only the first call has an effect.
+     */
+    @Override
+    public void close() {
+      if (m_Closed.compareAndSet(false, true))
+        m_Version.release();
+    }
+  }
+
+  /** the model file. */
+  protected final File m_File;
+
+  /** the loader to use. */
+  protected final Loader<T> m_Loader;
+
+  /** the current version. */
+  protected final AtomicReference<Version<T>> m_Current = new AtomicReference<>();
+
+  /** the listeners. */
+  protected final List<Listener<T>> m_Listeners = new CopyOnWriteArrayList<>();
+
+  /** the validation to perform before publishing, can be null (read by the watcher). */
+  protected volatile Task<T> m_Validator;
+
+  /** the warm-up to perform before publishing, can be null (read by the watcher). */
+  protected volatile Task<T> m_WarmUp;
+
+  /** the delay in msec after a file change before reloading (read by the watcher). */
+  protected volatile int m_Delay;
+
+  /** the version counter. */
+  protected int m_Counter;
+
+  /** the watch service, null if not watching. */
+  protected WatchService m_WatchService;
+
+  /** the watcher thread. */
+  protected Thread m_Watcher;
+
+  /**
+   * Initializes the handle and loads the model synchronously, without
+   * validation or warm-up.
+   *
+   * @param file	the model file
+   * @param loader	the loader for instantiating the model
+   * @throws Exception	if loading fails
+   */
+  public ModelHandle(File file, Loader<T> loader) throws Exception {
+    this(file, loader, null, null);
+  }
+
+  /**
+   * Initializes the handle and loads, validates and warms up the model
+   * synchronously.
+   *
+   * @param file	the model file
+   * @param loader	the loader for instantiating the model
+   * @param validator	the validation to perform on every version, null for none
+   * @param warmUp	the warm-up to perform on every version, null for none
+   * @throws Exception	if loading, validation or warm-up fail
+   */
+  public ModelHandle(File file, Loader<T> loader, Task<T> validator, Task<T> warmUp) throws Exception {
+    m_File      = file.getAbsoluteFile();
+    m_Loader    = loader;
+    m_Validator = validator;
+    m_WarmUp    = warmUp;
+    m_Delay     = DEFAULT_DELAY;
+    m_Current.set(new Version<>(this, load(), ++m_Counter));
+  }
+
+  /**
+   * Sets the validation to perform on subsequent versions before publishing
+   * them.
+   *
+   * @param value	the validation, null for none
+   */
+  public void setValidator(Task<T> value) {
+    m_Validator = value;
+  }
+
+  /**
+   * Sets the warm-up to perform on subsequent versions before publishing
+   * them.
+   *
+   * @param value	the warm-up, null for none
+   */
+  public void setWarmUp(Task<T> value) {
+    m_WarmUp = value;
+  }
+
+  /**
+   * Sets the delay after a file change before reloading, to let writers
+   * finish.
+   *
+   * @param value	the delay in msec
+   */
+  public void setDelay(int value) {
+    m_Delay = value;
+  }
+
+  /**
+   * Adds the listener.
+   *
+   * @param listener	the listener to add
+   */
+  public void addListener(Listener<T> listener) {
+    m_Listeners.add(listener);
+  }
+
+  /**
+   * Removes the listener.
+   *
+   * @param listener	the listener to remove
+   */
+  public void removeListener(Listener<T> listener) {
+    m_Listeners.remove(listener);
+  }
+
+  /**
+   * Returns the model file.
+   *
+   * @return		the file
+   */
+  public File getFile() {
+    return m_File;
+  }
+
+  /**
+   * Acquires the current version. The reader must be closed after use. Does
+   * not take any locks.
+   *
+   * @return		the reader
+   */
+  public Reader<T> acquire() {
+    while (true) {
+      Version<T> version = m_Current.get();
+      if (version.retain()) {
+        // Make sure the version was not replaced in the meantime
+        if (m_Current.get() == version)
+          return new Reader<>(version);
+        version.release();
+      }
+    }
+  }
+
+  /**
+   * Returns the current model, without holding a reference to the version.
+   *
+   * @return		the model
+   */
+  public T get() {
+    return m_Current.get().get();
+  }
+
+  /**
+   * Loads and prepares the model from the file.
+   *
+   * @return		the model
+   * @throws Exception	if loading, validation or warm-up fail
+   */
+  protected T load() throws Exception {
+    T result;
+    try (InputStream stream = new FileInputStream(m_File)) {
+      result = m_Loader.load(stream);
+    }
+    if (m_Validator != null)
+      m_Validator.run(result);
+    if (m_WarmUp != null)
+      m_WarmUp.run(result);
+
+    return result;
+  }
+
+  /**
+   * Loads, validates and warms up the model from the file and publishes
+   * it as the new version. The old version gets retired once its readers
+   * released it.
+   *
+   * @return		the new version
+   * @throws Exception	if loading fails, the old version remains in use
+   */
+  public synchronized Version<T> reload() throws Exception {
+    T model;
+    try {
+      model = load();
+    }
+    catch (Exception e) {
+      for (Listener<T> listener : m_Listeners)
+        listener.failed(e);
+      throw e;
+    }
+
+    // Publish
+    Version<T> version = new Version<>(this, model, ++m_Counter);
+    Version<T> old = m_Current.getAndSet(version);
+    for (Listener<T> listener : m_Listeners)
+      listener.published(version);
+    old.release();
+
+    return version;
+  }
+
+  /**
+   * Notifies the listeners that the version got retired.
+   *
+   * @param version	the retired version
+   */
+  protected void retired(Version<T> version) {
+    for (Listener<T> listener : m_Listeners)
+      listener.retired(version);
+  }
+
+  /**
+   * Starts watching the model file for changes in a background thread.
+   *
+   * @throws IOException	if watching cannot be set up
+   */
+  public synchronized void start() throws IOException {
+    if (m_Watcher != null)
+      return;
+
+    Path dir = m_File.getParentFile().toPath();
+    Path name = m_File.toPath().getFileName();
+    WatchService service = FileSystems.getDefault().newWatchService();
+    dir.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+
+    m_WatchService = service;
+    m_Watcher = new Thread(() -> watch(service, name), getClass().getSimpleName() + "-" + name);
+    m_Watcher.setDaemon(true);
+    m_Watcher.start();
+  }
+
+  /**
+   * Waits for changes of the model file and reloads it.
+   *
+   * @param service	the service to take the events from
+   * @param name	the name of the model file
+   */
+  protected void watch(WatchService service, Path name) {
+    try {
+      while (true) {
+        WatchKey key = service.take();
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+          if (name.equals(event.context()))
+            changed = true;
+        }
+        key.reset();
+        if (!changed)
+          continue;
+
+        // Wait for the writer to finish and drop the events in the meantime
+        Thread.sleep(m_Delay);
+        key = service.poll();
+        while (key != null) {
+          key.pollEvents();
+          key.reset();
+          key = service.poll();
+        }
+
+        try {
+          reload();
+        }
+        catch (Exception e) {
+          // already reported to the listeners
+        }
+      }
+    }
+    catch (InterruptedException | ClosedWatchServiceException e) {
+      // stopped
+    }
+  }
+
+  /**
+   * Stops watching the model file.
+   *
+   * @throws IOException	if closing the watch service fails
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    if (m_Watcher == null)
+      return;
+
+    m_Watcher.interrupt();
+    m_WatchService.close();
+    m_Watcher = null;
+    m_WatchService = null;
+  }
+}
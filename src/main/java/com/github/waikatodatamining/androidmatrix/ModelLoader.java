@@ -0,0 +1,838 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * ModelLoader.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.waikatodatamining.androidmatrix;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Loads models in the background, returning futures that complete once the
+ * model is ready. The serialised model gets read into memory and scanned
+ * for the boundaries of the stages, which then get deserialised in parallel
+ * on the executor.
+ * <br>
+ * The PyMA format does not store the sizes of the sections, so the scan
+ * needs to know the layout of each stage (see {@link #skipStage(String,
+ * ByteBuffer)}). Models with stages of unknown layout get deserialised
+ * sequentially, but still in the background.
+ * <br>
+ * Unlike loading directly from a stream (see {@link
+ * PyMADeserialisation#open(InputStream)}), the parallel loader does not
+ * decompress on the fly: the whole decompressed model is held in memory
+ * during the load, and loading from a compressed byte array holds the
+ * compressed and the decompressed array at the same time.
+ * <br>
+ * Example:
+ * <pre>
+ * ModelLoader loader = new ModelLoader(executor);
+ * loader.setListener((loaded, total) -&gt; progressBar.setProgress(loaded * 100 / total));
+ * loader.loadMap(stream).thenAccept(map -&gt; ...);
+ * </pre>
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class ModelLoader {
+
+  /**
+   * Gets notified about the loading progress.
+   */
+  public interface Listener {
+
+    /**
+     * Called whenever a stage got loaded.
+     *
+     * @param numLoaded	the number of stages loaded so far
+     * @param numStages	the total number of stages
+     */
+    void progress(int numLoaded, int numStages);
+  }
+
+  /**
+   * The location of a serialised stage.
+   */
+  protected static class Section {
+
+    /** the name of the stage. */
+    protected final String m_Name;
+
+    /** the offset of the state. */
+    protected final int m_Offset;
+
+    /** the length of the state. */
+    protected final int m_Length;
+
+    /** the projected heap footprint of the loaded stage. */
+    protected final long m_Bytes;
+
+    /**
+     * Initializes the section.
+     *
+     * @param name	the name of the stage
+     * @param offset	the offset of the state
+     * @param length	the length of the state
+     * @param bytes	the projected heap footprint of the loaded stage
+     */
+    protected Section(String name, int offset, int length, long bytes) {
+      m_Name   = name;
+      m_Offset = offset;
+      m_Length = length;
+      m_Bytes  = bytes;
+    }
+  }
+
+  /** the executor to load on. */
+  protected final Executor m_Executor;
+
+  /** the listener, can be null. */
+  protected volatile Listener m_Listener;
+
+  /** the maximum heap footprint of a loaded model in bytes, 0 for no limit. */
+  protected volatile long m_MemoryBudget;
+
+  /** the tuner for the kernels of loaded models, null for none. */
+  protected volatile KernelTuner m_KernelTuner;
+
+  /** the interner for the matrices of loaded models, null for none. */
+  protected volatile MatrixInterner m_Interner;
+
+  /**
+   * Initializes the loader with the common fork-join pool.
+   */
+  public ModelLoader() {
+    this(ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Initializes the loader.
+   *
+   * @param executor	the executor to load on
+   */
+  public ModelLoader(Executor executor) {
+    m_Executor = executor;
+  }
+
+  /**
+   * Sets the listener for the loading progress.
+   *
+   * @param value	the listener, null for none
+   */
+  public void setListener(Listener value) {
+    m_Listener = value;
+  }
+
+  /**
+   * Sets the maximum heap footprint of loaded models. Models whose
+   * footprint, projected from the dimensions of their matrices, exceeds
+   * the budget get refused before any matrix gets allocated. Models with
+   * stages of unknown layout get checked after loading instead.
+   *
+   * @param value	the budget in bytes, 0 for no limit
+   * @see MemoryFootprint
+   */
+  public void setMemoryBudget(long value) {
+    m_MemoryBudget = value;
+  }
+
+  /**
+   * Returns the maximum heap footprint of loaded models.
+   *
+   * @return		the budget in bytes, 0 for no limit
+   */
+  public long getMemoryBudget() {
+    return m_MemoryBudget;
+  }
+
+  /**
+   * Sets the tuner that selects the kernels of loaded models, before the
+   * futures complete.
+   *
+   * @param value	the tuner, null for none
+   */
+  public void setKernelTuner(KernelTuner value) {
+    m_KernelTuner = value;
+  }
+
+  /**
+   * Returns the tuner that selects the kernels of loaded models.
+   *
+   * @return		the tuner, null for none
+   */
+  public KernelTuner getKernelTuner() {
+    return m_KernelTuner;
+  }
+
+  /**
+   * Sets the interner that shares identical matrices between the models
+   * loaded from now on.
+   *
+   * @param value	the interner, null for none
+   */
+  public void setInterner(MatrixInterner value) {
+    m_Interner = value;
+  }
+
+  /**
+   * Returns the interner that shares identical matrices between loaded
+   * models.
+   *
+   * @return		the interner, null for none
+   */
+  public MatrixInterner getInterner() {
+    return m_Interner;
+  }
+
+  /**
+   * Returns a stream for deserialising the data, interning the matrices if
+   * an interner is set.
+   *
+   * @param data	the serialised data
+   * @param offset	the offset of the section to read
+   * @param length	the length of the section to read
+   * @return		the stream
+   */
+  protected InputStream newStream(byte[] data, int offset, int length) {
+    InputStream result = new ByteArrayInputStream(data, offset, length);
+    MatrixInterner interner = m_Interner;
+    if (interner != null)
+      result = interner.wrap(result);
+
+    return result;
+  }
+
+  /**
+   * Loads a preprocessing map in the background. The stream gets read on
+   * the executor as well.
+   *
+   * @param stream	the stream to read the map from
+   * @return		the future of the map
+   */
+  public CompletableFuture<PreprocessingMap> loadMap(InputStream stream) {
+    return CompletableFuture.supplyAsync(() -> read(stream), m_Executor).thenCompose(this::loadMap);
+  }
+
+  /**
+   * Loads a preprocessing map in the background, selecting its kernels
+   * if a tuner is set. Compressed data gets decompressed into a second
+   * array first.
+   *
+   * @param compressed	the serialised map, compressed or not
+   * @return		the future of the map
+   * @see #setKernelTuner(KernelTuner)
+   */
+  public CompletableFuture<PreprocessingMap> loadMap(byte[] compressed) {
+    KernelTuner tuner = m_KernelTuner;
+    if (tuner == null)
+      return loadMapData(compressed);
+
+    return loadMapData(compressed).thenApplyAsync((map) -> {
+      try {
+        tuner.tune(map);
+      }
+      catch (Exception e) {
+        throw new CompletionException(e);
+      }
+      return map;
+    }, m_Executor);
+  }
+
+  /**
+   * Loads a preprocessing map in the background, without tuning it.
+   *
+   * @param compressed	the serialised map, compressed or not
+   * @return		the future of the map
+   */
+  protected CompletableFuture<PreprocessingMap> loadMapData(byte[] compressed) {
+    byte[] data;
+    try {
+      data = decompress(compressed);
+    }
+    catch (CompletionException e) {
+      return failed(e);
+    }
+
+    // Scan the inputs
+    ByteBuffer buffer = PyMADeserialisation.wrap(data);
+    String[] names;
+    List<List<Section>> inputs = new ArrayList<>();
+    try {
+      int numInputs = buffer.getInt();
+      names = new String[numInputs];
+      for (int i = 0; i < numInputs; i++) {
+        names[i] = readString(buffer);
+        List<Section> sections = scanStages(buffer);
+        if (sections == null)
+          return CompletableFuture.supplyAsync(() -> finished(checkBudget(new PreprocessingMap(newStream(data, 0, data.length)))), m_Executor);
+        inputs.add(sections);
+      }
+    }
+    catch (BufferUnderflowException | IllegalArgumentException e) {
+      return failed(new IOException("Truncated or corrupt map", e));
+    }
+
+    // Refuse models that would exceed the budget
+    long projected = 0;
+    for (List<Section> sections : inputs)
+      projected += projectedBytes(sections);
+    try {
+      checkBudget(projected);
+    }
+    catch (IllegalStateException e) {
+      return failed(e);
+    }
+
+    // Load all the stages in parallel
+    int numStages = 0;
+    for (List<Section> sections : inputs)
+      numStages += sections.size();
+    AtomicInteger numLoaded = new AtomicInteger();
+    List<CompletableFuture<PreprocessingStages>> futures = new ArrayList<>();
+    for (List<Section> sections : inputs)
+      futures.add(loadStages(data, sections, numLoaded, numStages));
+
+    // Assemble the map
+    return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).thenApply((v) -> {
+      PreprocessingStages[] stages = new PreprocessingStages[futures.size()];
+      for (int i = 0; i < stages.length; i++)
+        stages[i] = futures.get(i).join();
+      return new PreprocessingMap(names, stages);
+    });
+  }
+
+  /**
+   * Loads preprocessing stages in the background. The stream gets read on
+   * the executor as well.
+   *
+   * @param stream	the stream to read the stages from
+   * @return		the future of the stages
+   */
+  public CompletableFuture<PreprocessingStages> loadStages(InputStream stream) {
+    return CompletableFuture.supplyAsync(() -> read(stream), m_Executor).thenCompose(this::loadStages);
+  }
+
+  /**
+   * Loads preprocessing stages in the background, selecting their kernels
+   * if a tuner is set. Compressed data gets decompressed into a second
+   * array first.
+   *
+   * @param compressed	the serialised stages, compressed or not
+   * @return		the future of the stages
+   * @see #setKernelTuner(KernelTuner)
+   */
+  public CompletableFuture<PreprocessingStages> loadStages(byte[] compressed) {
+    KernelTuner tuner = m_KernelTuner;
+    if (tuner == null)
+      return loadStagesData(compressed);
+
+    return loadStagesData(compressed).thenApplyAsync((stages) -> {
+      try {
+        tuner.tune(stages);
+      }
+      catch (Exception e) {
+        throw new CompletionException(e);
+      }
+      return stages;
+    }, m_Executor);
+  }
+
+  /**
+   * Loads preprocessing stages in the background, without tuning them.
+   *
+   * @param compressed	the serialised stages, compressed or not
+   * @return		the future of the stages
+   */
+  protected CompletableFuture<PreprocessingStages> loadStagesData(byte[] compressed) {
+    byte[] data;
+    try {
+      data = decompress(compressed);
+    }
+    catch (CompletionException e) {
+      return failed(e);
+    }
+
+    // Scan the stages
+    List<Section> sections;
+    try {
+      sections = scanStages(PyMADeserialisation.wrap(data));
+    }
+    catch (BufferUnderflowException | IllegalArgumentException e) {
+      return failed(new IOException("Truncated or corrupt stages", e));
+    }
+    if (sections == null)
+      return CompletableFuture.supplyAsync(() -> finished(checkBudget(new PreprocessingStages(newStream(data, 0, data.length)))), m_Executor);
+
+    // Refuse models that would exceed the budget
+    try {
+      checkBudget(projectedBytes(sections));
+    }
+    catch (IllegalStateException e) {
+      return failed(e);
+    }
+
+    return loadStages(data, sections, new AtomicInteger(), sections.size());
+  }
+
+  /**
+   * Loads the stages of the sections in parallel.
+   *
+   * @param data	the serialised data
+   * @param sections	the sections of the stages
+   * @param numLoaded	the counter for the loaded stages
+   * @param numStages	the total number of stages to load
+   * @return		the future of the stages
+   */
+  protected CompletableFuture<PreprocessingStages> loadStages(byte[] data, List<Section> sections, AtomicInteger numLoaded, int numStages) {
+    List<CompletableFuture<AbstractAlgorithm>> futures = new ArrayList<>();
+    for (Section section : sections) {
+      futures.add(CompletableFuture.supplyAsync(() -> {
+        AbstractAlgorithm stage;
+        try {
+          stage = PreprocessingStages.newStage(section.m_Name, newStream(data, section.m_Offset, section.m_Length));
+        }
+        catch (Exception e) {
+          throw new CompletionException(new RuntimeException("Error initializing stage " + section.m_Name, e));
+        }
+        Listener listener = m_Listener;
+        int loaded = numLoaded.incrementAndGet();
+        if (listener != null)
+          listener.progress(loaded, numStages);
+        return stage;
+      }, m_Executor));
+    }
+
+    return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).thenApply((v) -> {
+      AbstractAlgorithm[] stages = new AbstractAlgorithm[futures.size()];
+      for (int i = 0; i < stages.length; i++)
+        stages[i] = futures.get(i).join();
+      return new PreprocessingStages(stages);
+    });
+  }
+
+  /**
+   * Scans the serialised stages for the sections of the individual stages.
+   * Leaves the buffer positioned after the stages.
+   *
+   * @param buffer	the buffer positioned at the start of the stages
+   * @return		the sections, null if a stage has an unknown layout
+   */
+  protected static List<Section> scanStages(ByteBuffer buffer) {
+    int numStages = buffer.getInt();
+    if (numStages < 0)
+      throw new IllegalArgumentException("Negative number of stages: " + numStages);
+
+    List<Section> result = new ArrayList<>();
+    for (int i = 0; i < numStages; i++) {
+      String name = readString(buffer);
+      int offset = buffer.position();
+      long bytes = skipStage(name, buffer);
+      if (bytes == -1)
+        return null;
+      result.add(new Section(name, offset, buffer.position() - offset, bytes));
+    }
+
+    return result;
+  }
+
+  /**
+   * Returns the projected heap footprint of the stages.
+   *
+   * @param sections	the sections of the stages
+   * @return		the bytes
+   */
+  protected static long projectedBytes(List<Section> sections) {
+    long result = MemoryFootprint.ALGORITHM_OVERHEAD + MemoryFootprint.referencesBytes(sections.size());
+    for (Section section : sections)
+      result += section.m_Bytes;
+
+    return result;
+  }
+
+  /**
+   * Projects the heap footprint of a serialised map from the dimensions of
+   * its matrices, without deserialising it.
+   *
+   * @param compressed	the serialised map, compressed or not
+   * @return		the bytes, -1 if a stage has an unknown layout
+   * @throws IOException	if decompressing fails or the map is corrupt
+   */
+  public static long projectMapBytes(byte[] compressed) throws IOException {
+    ByteBuffer buffer = PyMADeserialisation.wrap(decompressOrFail(compressed));
+    long result = 0;
+    try {
+      int numInputs = buffer.getInt();
+      for (int i = 0; i < numInputs; i++) {
+        readString(buffer);
+        List<Section> sections = scanStages(buffer);
+        if (sections == null)
+          return -1;
+        result += projectedBytes(sections);
+      }
+    }
+    catch (BufferUnderflowException | IllegalArgumentException e) {
+      throw new IOException("Truncated or corrupt map", e);
+    }
+
+    return result;
+  }
+
+  /**
+   * Projects the heap footprint of serialised stages from the dimensions
+   * of their matrices, without deserialising them.
+   *
+   * @param compressed	the serialised stages, compressed or not
+   * @return		the bytes, -1 if a stage has an unknown layout
+   * @throws IOException	if decompressing fails or the stages are corrupt
+   */
+  public static long projectStagesBytes(byte[] compressed) throws IOException {
+    ByteBuffer buffer = PyMADeserialisation.wrap(decompressOrFail(compressed));
+    try {
+      List<Section> sections = scanStages(buffer);
+      return (sections == null) ? -1 : projectedBytes(sections);
+    }
+    catch (BufferUnderflowException | IllegalArgumentException e) {
+      throw new IOException("Truncated or corrupt stages", e);
+    }
+  }
+
+  /**
+   * Projects the width of the concatenated outputs of a serialised map from
+   * the dimensions of its matrices, without deserialising it. All inputs
+   * receive data of the same width.
+   *
+   * @param compressed	the serialised map, compressed or not
+   * @param inputWidth	the width of the data for each input
+   * @return		the width, -1 if a stage has an unknown layout
+   * @throws IOException	if decompressing fails or the map is corrupt
+   * @see PreprocessingStages#getOutputWidth(int)
+   */
+  public static int projectMapOutputWidth(byte[] compressed, int inputWidth) throws IOException {
+    ByteBuffer buffer = PyMADeserialisation.wrap(decompressOrFail(compressed));
+    int result = 0;
+    try {
+      int numInputs = buffer.getInt();
+      for (int i = 0; i < numInputs; i++) {
+        readString(buffer);
+        int width = projectOutputWidth(buffer, inputWidth);
+        if (width == -1)
+          return -1;
+        result += width;
+      }
+    }
+    catch (BufferUnderflowException | IllegalArgumentException e) {
+      throw new IOException("Truncated or corrupt map", e);
+    }
+
+    return result;
+  }
+
+  /**
+   * Projects the output width of serialised stages from the dimensions of
+   * their matrices, without deserialising them.
+   *
+   * @param compressed	the serialised stages, compressed or not
+   * @param inputWidth	the width of the input
+   * @return		the width, -1 if a stage has an unknown layout
+   * @throws IOException	if decompressing fails or the stages are corrupt
+   * @see PreprocessingStages#getOutputWidth(int)
+   */
+  public static int projectStagesOutputWidth(byte[] compressed, int inputWidth) throws IOException {
+    ByteBuffer buffer = PyMADeserialisation.wrap(decompressOrFail(compressed));
+    try {
+      return projectOutputWidth(buffer, inputWidth);
+    }
+    catch (BufferUnderflowException | IllegalArgumentException e) {
+      throw new IOException("Truncated or corrupt stages", e);
+    }
+  }
+
+  /**
+   * Scans the serialised stages and projects their output width.
+   *
+   * @param buffer	the buffer positioned at the number of stages
+   * @param inputWidth	the width of the input
+   * @return		the width, -1 if a stage has an unknown layout
+   */
+  protected static int projectOutputWidth(ByteBuffer buffer, int inputWidth) {
+    int numStages = buffer.getInt();
+    if (numStages < 0)
+      throw new IllegalArgumentException("Negative number of stages: " + numStages);
+
+    int result = inputWidth;
+    for (int i = 0; i < numStages; i++) {
+      String name = readString(buffer);
+      result = projectOutputWidth(name, buffer, result);
+      if (result == -1)
+        return -1;
+    }
+
+    return result;
+  }
+
+  /**
+   * Projects the output width of the stage from the dimensions of its
+   * matrices and skips its state, mirroring the stage's
+   * getOutputWidth(int) method.
+   *
+   * @param stageName	the name of the stage
+   * @param buffer	the buffer positioned at the state
+   * @param inputWidth	the width of the input
+   * @return		the width, -1 if the layout of the stage is unknown
+   * @see AbstractAlgorithm#getOutputWidth(int)
+   */
+  protected static int projectOutputWidth(String stageName, ByteBuffer buffer, int inputWidth) {
+    int result;
+    switch (stageName) {
+      case "SavitzkyGolay":
+        int[] coefficients = peekDimensions(buffer);
+        result = (int) Math.max(0, inputWidth - (long) coefficients[0] * coefficients[1] + 1);
+        break;
+      case "SIMPLS":
+        result = peekDimensions(buffer)[1];
+        break;
+      default:
+        result = inputWidth;
+        break;
+    }
+    if (skipStage(stageName, buffer) == -1)
+      return -1;
+
+    return result;
+  }
+
+  /**
+   * Reads the dimensions of a serialised matrix, without advancing the
+   * position.
+   *
+   * @param buffer	the buffer positioned at the matrix
+   * @return		the number of rows and columns
+   */
+  protected static int[] peekDimensions(ByteBuffer buffer) {
+    if (buffer.remaining() < 2 * Integer.BYTES)
+      throw new BufferUnderflowException();
+    int position = buffer.position();
+
+    return new int[]{buffer.getInt(position), buffer.getInt(position + Integer.BYTES)};
+  }
+
+  /**
+   * Decompresses the data if required.
+   *
+   * @param data	the (compressed) data
+   * @return		the decompressed data
+   * @throws IOException	if decompressing fails
+   */
+  protected static byte[] decompressOrFail(byte[] data) throws IOException {
+    try {
+      return decompress(data);
+    }
+    catch (CompletionException e) {
+      if (e.getCause() instanceof IOException)
+        throw (IOException) e.getCause();
+      throw e;
+    }
+  }
+
+  /**
+   * Makes sure that the projected footprint fits into the budget.
+   *
+   * @param bytes	the projected footprint
+   * @throws IllegalStateException	if the budget gets exceeded
+   */
+  protected void checkBudget(long bytes) {
+    long budget = m_MemoryBudget;
+    if ((budget > 0) && (bytes > budget))
+      throw new IllegalStateException("Model requires " + bytes + " bytes, exceeding the memory budget of " + budget + " bytes");
+  }
+
+  /**
+   * Makes sure that the loaded stages fit into the budget.
+   *
+   * @param stages	the loaded stages
+   * @return		the stages
+   * @throws IllegalStateException	if the budget gets exceeded
+   */
+  protected PreprocessingStages checkBudget(PreprocessingStages stages) {
+    checkBudget(stages.getRetainedBytes());
+    return stages;
+  }
+
+  /**
+   * Makes sure that the loaded map fits into the budget.
+   *
+   * @param map		the loaded map
+   * @return		the map
+   * @throws IllegalStateException	if the budget gets exceeded
+   */
+  protected PreprocessingMap checkBudget(PreprocessingMap map) {
+    checkBudget(map.getRetainedBytes());
+    return map;
+  }
+
+  /**
+   * Skips the state of the stage, using the layout that its
+   * initialize(InputStream) method reads.
+   *
+   * @param stageName	the name of the stage
+   * @param buffer	the buffer positioned at the state
+   * @return		the projected heap footprint of the loaded stage, -1 if the layout of the stage is unknown
+   * @see AbstractAlgorithm#getRetainedBytes()
+   */
+  protected static long skipStage(String stageName, ByteBuffer buffer) {
+    switch (stageName) {
+      case "Log":
+        skip(buffer, 3 * Double.BYTES);
+        return MemoryFootprint.ALGORITHM_OVERHEAD + 3 * Double.BYTES;
+      case "SavitzkyGolay":
+        return MemoryFootprint.ALGORITHM_OVERHEAD + skipMatrix(buffer, true);
+      case "SIMPLS":
+        return MemoryFootprint.ALGORITHM_OVERHEAD + Integer.BYTES + skipMatrix(buffer, false);
+      case "Standardize":
+        return MemoryFootprint.ALGORITHM_OVERHEAD + skipMatrix(buffer, true) + skipMatrix(buffer, true);
+      default:
+        return -1;
+    }
+  }
+
+  /**
+   * Skips a serialised matrix.
+   *
+   * @param buffer	the buffer positioned at the matrix
+   * @param vector	whether the matrix gets loaded as a single vector
+   * @return		the heap footprint of the loaded matrix or vector
+   */
+  protected static long skipMatrix(ByteBuffer buffer, boolean vector) {
+    int numRows = buffer.getInt();
+    int numColumns = buffer.getInt();
+    if ((numRows < 0) || (numColumns < 0))
+      throw new IllegalArgumentException("Invalid matrix dimensions: " + numRows + "x" + numColumns);
+    skip(buffer, (long) numRows * numColumns * Double.BYTES);
+
+    if (vector)
+      return MemoryFootprint.vectorBytes((long) numRows * numColumns);
+    return MemoryFootprint.matrixBytes(numRows, numColumns);
+  }
+
+  /**
+   * Skips the number of bytes.
+   *
+   * @param buffer	the buffer to skip in
+   * @param count	the number of bytes
+   */
+  protected static void skip(ByteBuffer buffer, long count) {
+    if (count > buffer.remaining())
+      throw new BufferUnderflowException();
+    buffer.position(buffer.position() + (int) count);
+  }
+
+  /**
+   * Reads a serialised string.
+   *
+   * @param buffer	the buffer positioned at the string
+   * @return		the string
+   */
+  protected static String readString(ByteBuffer buffer) {
+    int length = buffer.getInt();
+    if ((length < 0) || (length > buffer.remaining()))
+      throw new BufferUnderflowException();
+    String result = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+    buffer.position(buffer.position() + length);
+
+    return result;
+  }
+
+  /**
+   * Reads the stream completely, decompressing it if required.
+   *
+   * @param stream	the stream to read
+   * @return		the data
+   */
+  protected static byte[] read(InputStream stream) {
+    try {
+      stream = PyMADeserialisation.open(stream);
+      ByteArrayOutputStream result = new ByteArrayOutputStream();
+      byte[] buffer = new byte[8192];
+      int read;
+      while ((read = stream.read(buffer)) != -1)
+        result.write(buffer, 0, read);
+      return result.toByteArray();
+    }
+    catch (IOException e) {
+      throw new CompletionException(e);
+    }
+  }
+
+  /**
+   * Decompresses the data if required.
+   *
+   * @param data	the (compressed) data
+   * @return		the decompressed data
+   */
+  protected static byte[] decompress(byte[] data) {
+    try {
+      InputStream stream = PyMADeserialisation.open(new ByteArrayInputStream(data));
+      if (stream instanceof InflaterInputStream)
+        return read(stream);
+      return data;
+    }
+    catch (IOException e) {
+      throw new CompletionException(e);
+    }
+  }
+
+  /**
+   * Reports a sequentially loaded model as a single loaded stage.
+   *
+   * @param model	the model
+   * @param <T>		the type of model
+   * @return		the model
+   */
+  protected <T> T finished(T model) {
+    Listener listener = m_Listener;
+    if (listener != null)
+      listener.progress(1, 1);
+    return model;
+  }
+
+  /**
+   * Returns a future that failed with the exception.
+   *
+   * @param e		the exception
+   * @param <T>		the type of model
+   * @return		the failed future
+   */
+  protected static <T> CompletableFuture<T> failed(Exception e) {
+    CompletableFuture<T> result = new CompletableFuture<>();
+    result.completeExceptionally(e);
+    return result;
+  }
+}
@@ -0,0 +1,46 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * NullMetrics.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.waikatodatamining.androidmatrix;
+
+/**
+ * Dummy metrics that records nothing. Used by default.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class NullMetrics
+  implements Metrics {
+
+  /** the singleton. */
+  public static final NullMetrics INSTANCE = new NullMetrics();
+
+  /**
+   * Returns no probe.
+   *
+   * @param input	the name of the input, null if not part of a map
+   * @param stage	the index of the stage, {@link #PIPELINE} for the whole pipeline
+   * @param algorithm	the algorithm that gets measured
+   * @return		always null
+   */
+  @Override
+  public Probe probe(String input, int stage, Algorithm algorithm) {
+    return null;
+  }
+}
@@ -0,0 +1,305 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * OutputCache.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.waikatodatamining.androidmatrix;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache of the outputs for inputs, for workloads that process the
+ * same inputs repeatedly (e.g., reference spectra). Inputs are looked up by
+ * a hash of their content and verified to be identical, so a hit always
+ * returns exactly the output the kernels would have computed. The least
+ * recently used entries get evicted once the number of entries or the
+ * approximate number of bytes exceeds the limits.
+ * <br>
+ * The cache copies inputs and outputs when storing them and returns copies
+ * of the outputs, so neither the caller nor the cache can alter the other's
+ * arrays.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ * @see PreprocessingStages#setCache(OutputCache)
+ * @see PreprocessingMap#setCache(int, long)
+ */
+public class OutputCache {
+
+  /** the approximate overhead of an entry in bytes. */
+  public static final int ENTRY_OVERHEAD = 96;
+
+  /** the maximum number of entries. */
+  protected final int m_MaxEntries;
+
+  /** the maximum number of bytes. */
+  protected final long m_MaxBytes;
+
+  /** the entries, in access order. */
+  protected final LinkedHashMap<Key, double[]> m_Entries = new LinkedHashMap<>(16, 0.75f, true);
+
+  /** the approximate number of bytes held. */
+  protected long m_Bytes;
+
+  /** the number of hits. */
+  protected long m_Hits;
+
+  /** the number of misses. */
+  protected long m_Misses;
+
+  /** the number of evictions. */
+  protected long m_Evictions;
+
+  /**
+   * Initializes the cache.
+   *
+   * @param maxEntries	the maximum number of entries
+   * @param maxBytes	the maximum (approximate) number of bytes
+   */
+  public OutputCache(int maxEntries, long maxBytes) {
+    if (maxEntries < 1)
+      throw new IllegalArgumentException("Cache must hold at least 1 entry, provided: " + maxEntries);
+    m_MaxEntries = maxEntries;
+    m_MaxBytes   = maxBytes;
+  }
+
+  /**
+   * Returns the output cached for the input.
+   *
+   * @param input	the input
+   * @return		a copy of the output, null if not cached
+   */
+  public double[] get(double[] input) {
+    return get(new Key(input));
+  }
+
+  /**
+   * Returns the output cached for the input of the key. The key should be
+   * created outside of any lock, as it hashes the input.
+   *
+   * @param key		the key for the input
+   * @return		a copy of the output, null if not cached
+   * @see #put(Key, double[])
+   */
+  protected synchronized double[] get(Key key) {
+    double[] result = m_Entries.get(key);
+    if (result == null) {
+      m_Misses++;
+      return null;
+    }
+    m_Hits++;
+
+    return result.clone();
+  }
+
+  /**
+   * Caches the output for the input, evicting the least recently used
+   * entries if the limits are exceeded.
+   *
+   * @param input	the input
+   * @param output	the output computed for the input
+   */
+  public void put(double[] input, double[] output) {
+    put(new Key(input), output);
+  }
+
+  /**
+   * Caches the output for the input of the key, evicting the least recently
+   * used entries if the limits are exceeded. Re-uses the hash of the key
+   * that was used for the lookup.
+   *
+   * @param key		the key for the input
+   * @param output	the output computed for the input
+   * @see #get(Key)
+   */
+  protected void put(Key key, double[] output) {
+    double[] input = key.m_Input;
+    long bytes = bytes(input, output);
+    if (bytes > m_MaxBytes)
+      return;
+
+    // Copy outside the lock
+    Key stored = new Key(input.clone(), key.m_Hash);
+    output = output.clone();
+
+    synchronized (this) {
+      store(stored, output, bytes);
+    }
+  }
+
+  /**
+   * Stores the entry and evicts the least recently used entries if the
+   * limits are exceeded. Must be called while holding the lock.
+   *
+   * @param key		the key with the copied input
+   * @param output	the copied output
+   * @param bytes	the approximate number of bytes of the entry
+   */
+  protected void store(Key key, double[] output, long bytes) {
+    double[] old = m_Entries.put(key, output);
+    if (old != null)
+      m_Bytes -= bytes(key.m_Input, old);
+    m_Bytes += bytes;
+
+    // Evict the least recently used entries
+    Iterator<Map.Entry<Key, double[]>> iter = m_Entries.entrySet().iterator();
+    while ((m_Entries.size() > m_MaxEntries) || (m_Bytes > m_MaxBytes)) {
+      Map.Entry<Key, double[]> eldest = iter.next();
+      m_Bytes -= bytes(eldest.getKey().m_Input, eldest.getValue());
+      iter.remove();
+      m_Evictions++;
+    }
+  }
+
+  /**
+   * Returns the approximate number of bytes of an entry.
+   *
+   * @param input	the input
+   * @param output	the output
+   * @return		the bytes
+   */
+  protected static long bytes(double[] input, double[] output) {
+    return ENTRY_OVERHEAD + (long) (input.length + output.length) * Double.BYTES;
+  }
+
+  /**
+   * Removes all entries and resets the statistics.
+   */
+  public synchronized void clear() {
+    m_Entries.clear();
+    m_Bytes = 0;
+    m_Hits = 0;
+    m_Misses = 0;
+    m_Evictions = 0;
+  }
+
+  /**
+   * Returns the number of entries.
+   *
+   * @return		the number of entries
+   */
+  public synchronized int size() {
+    return m_Entries.size();
+  }
+
+  /**
+   * Returns the approximate number of bytes held.
+   *
+   * @return		the bytes
+   */
+  public synchronized long getBytes() {
+    return m_Bytes;
+  }
+
+  /**
+   * Returns the number of lookups that found an output.
+   *
+   * @return		the number of hits
+   */
+  public synchronized long getHits() {
+    return m_Hits;
+  }
+
+  /**
+   * Returns the number of lookups that found no output.
+   *
+   * @return		the number of misses
+   */
+  public synchronized long getMisses() {
+    return m_Misses;
+  }
+
+  /**
+   * Returns the number of entries that got evicted.
+   *
+   * @return		the number of evictions
+   */
+  public synchronized long getEvictions() {
+    return m_Evictions;
+  }
+
+  /**
+   * Returns the fraction of lookups that found an output.
+   *
+   * @return		the hit rate (0-1), 0 if no lookups yet
+   */
+  public synchronized double getHitRate() {
+    long lookups = m_Hits + m_Misses;
+    if (lookups == 0)
+      return 0;
+    return (double) m_Hits / lookups;
+  }
+
+  /**
+   * Returns a short description of the statistics.
+   *
+   * @return		the description
+   */
+  @Override
+  public synchronized String toString() {
+    return String.format("entries=%d, bytes=%d, hits=%d, misses=%d, evictions=%d, hitRate=%.3f",
+      m_Entries.size(), m_Bytes, m_Hits, m_Misses, m_Evictions, getHitRate());
+  }
+
+  /**
+   * Key comparing inputs by content.
+   */
+  protected static class Key {
+
+    /** the input. */
+    protected final double[] m_Input;
+
+    /** the hash code. */
+    protected final int m_Hash;
+
+    /**
+     * Initializes the key.
+     *
+     * @param input	the input
+     */
+    protected Key(double[] input) {
+      this(input, Arrays.hashCode(input));
+    }
+
+    /**
+     * Initializes the key with a known hash code.
+     *
+     * @param input	the input
+     * @param hash	the hash code of the input
+     */
+    protected Key(double[] input, int hash) {
+      m_Input = input;
+      m_Hash  = hash;
+    }
+
+    @Override
+    public int hashCode() {
+      return m_Hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof Key))
+        return false;
+      Key other = (Key) obj;
+      return (m_Hash == other.m_Hash) && Arrays.equals(m_Input, other.m_Input);
+    }
+  }
+}
@@ -0,0 +1,224 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * ParallelExecution.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.waikatodatamining.androidmatrix;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Splits a single expensive call of an algorithm (e.g., the convolution of
+ * {@link SavitzkyGolay} or the projection of {@link SIMPLS} on very wide
+ * spectra) into ranges that get computed on the executor. The calling
+ * thread computes one of the ranges itself and waits for the others.
+ * <br>
+ * Whether a call gets split depends on its work, i.e., the number of
+ * multiply-adds, rather than the width alone: the width from which on a
+ * call gets split adapts to the cost per channel (window size, number of
+ * components), and each range has to amount to at least the minimum work
+ * so that the scheduling overhead stays small.
+ * <br>
+ * The executor must not be a bounded pool that the callers themselves run
+ * on: once all its threads are waiting in {@link #run(int, int, RangeTask)},
+ * the submitted ranges never start and the calls wait forever. Use a
+ * separate executor, or a {@link ForkJoinPool} (like the default common
+ * pool), which compensates for workers blocked waiting.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ * @see AbstractAlgorithm#setParallelExecution(ParallelExecution)
+ */
+public class ParallelExecution {
+
+  /** the default minimum number of multiply-adds per range. */
+  public static final long DEFAULT_MIN_WORK = 1L << 17;
+
+  /**
+   * Computes a range of the output.
+   */
+  public interface RangeTask {
+
+    /**
+     * Computes the range.
+     *
+     * @param index	the index of the range
+     * @param from	the start of the range (incl)
+     * @param to	the end of the range (excl)
+     */
+    void apply(int index, int from, int to);
+  }
+
+  /** the executor to compute the ranges on. */
+  protected final Executor m_Executor;
+
+  /** the maximum number of ranges per call. */
+  protected final int m_Parallelism;
+
+  /** the minimum number of multiply-adds per range. */
+  protected final long m_MinWork;
+
+  /**
+   * Initializes with the common fork-join pool, using all processors.
+   */
+  public ParallelExecution() {
+    this(ForkJoinPool.commonPool(), Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Initializes with the default minimum work per range.
+   *
+   * @param executor	the executor to compute the ranges on
+   * @param parallelism	the maximum number of ranges per call
+   */
+  public ParallelExecution(Executor executor, int parallelism) {
+    this(executor, parallelism, DEFAULT_MIN_WORK);
+  }
+
+  /**
+   * Initializes the execution.
+   *
+   * @param executor	the executor to compute the ranges on, not a bounded pool the callers run on
+   * @param parallelism	the maximum number of ranges per call
+   * @param minWork	the minimum number of multiply-adds per range
+   */
+  public ParallelExecution(Executor executor, int parallelism, long minWork) {
+    if (executor == null)
+      throw new IllegalArgumentException("No executor provided");
+    if (parallelism < 1)
+      throw new IllegalArgumentException("Parallelism must be at least 1, provided: " + parallelism);
+    if (minWork < 1)
+      throw new IllegalArgumentException("Minimum work must be at least 1, provided: " + minWork);
+    m_Executor    = executor;
+    m_Parallelism = parallelism;
+    m_MinWork     = minWork;
+  }
+
+  /**
+   * Returns the executor the ranges get computed on.
+   *
+   * @return		the executor
+   */
+  public Executor getExecutor() {
+    return m_Executor;
+  }
+
+  /**
+   * Returns the maximum number of ranges per call.
+   *
+   * @return		the parallelism
+   */
+  public int getParallelism() {
+    return m_Parallelism;
+  }
+
+  /**
+   * Returns the minimum number of multiply-adds per range.
+   *
+   * @return		the minimum work
+   */
+  public long getMinWork() {
+    return m_MinWork;
+  }
+
+  /**
+   * Returns the number of ranges to split a call into.
+   *
+   * @param work	the number of multiply-adds of the call
+   * @param maxRanges	the maximum number of ranges the call can be split into
+   * @return		the number of ranges, 1 if not worth splitting
+   */
+  public int numRanges(long work, int maxRanges) {
+    long result = Math.min(m_Parallelism, work / m_MinWork);
+    result = Math.min(result, maxRanges);
+
+    return (int) Math.max(1, result);
+  }
+
+  /**
+   * Splits [0, length) into the specified number of contiguous ranges and
+   * computes them, one on the calling thread and the others on the
+   * executor. Returns once all ranges have been computed, also if one of
+   * them failed, so that no range is still running when the call returns.
+   *
+   * @param length	the length to split
+   * @param numRanges	the number of ranges
+   * @param task	the task computing a range
+   */
+  public void run(int length, int numRanges, RangeTask task) {
+    if (numRanges <= 1) {
+      task.apply(0, 0, length);
+      return;
+    }
+
+    // Submit all but the first range
+    CompletableFuture<?>[] futures = new CompletableFuture<?>[numRanges - 1];
+    for (int i = 1; i < numRanges; i++) {
+      int index = i;
+      int from = rangeStart(length, numRanges, i);
+      int to = rangeStart(length, numRanges, i + 1);
+      futures[i - 1] = CompletableFuture.runAsync(() -> task.apply(index, from, to), m_Executor);
+    }
+
+    // Compute the first range ourselves, then wait for the others
+    try {
+      task.apply(0, 0, rangeStart(length, numRanges, 1));
+    }
+    catch (RuntimeException | Error e) {
+      RuntimeException other = await(futures);
+      if (other != null)
+        e.addSuppressed(other);
+      throw e;
+    }
+    RuntimeException failure = await(futures);
+    if (failure != null)
+      throw failure;
+  }
+
+  /**
+   * Waits for all the ranges to finish.
+   *
+   * @param futures	the submitted ranges
+   * @return		the failure of a range, null if all succeeded
+   */
+  protected static RuntimeException await(CompletableFuture<?>[] futures) {
+    try {
+      CompletableFuture.allOf(futures).join();
+      return null;
+    }
+    catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException)
+        return (RuntimeException) e.getCause();
+      return e;
+    }
+  }
+
+  /**
+   * Returns the start of the range.
+   *
+   * @param length	the length to split
+   * @param numRanges	the number of ranges
+   * @param index	the index of the range
+   * @return		the start (incl)
+   */
+  protected static int rangeStart(int length, int numRanges, int index) {
+    return (int) ((long) length * index / numRanges);
+  }
+}
@@ -22,8 +22,12 @@ package com.github.waikatodatamining.androidmatrix;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Class that applies preprocessing to a map of input features. Can
@@ -42,17 +46,60 @@ public class PreprocessingMap {
   /** The ordering of the inputs. */
   protected String[] m_Ordering;
 
+  /** The preprocessors in the order of the inputs. */
+  protected PreprocessingStages[] m_OrderedStages;
+
+  /** The position of each input in the ordering. */
+  protected Map<String, Integer> m_Positions = new HashMap<>();
+
+  /** The probe for the whole map, null if not recording. */
+  protected transient volatile Metrics.Probe m_Probe;
+
+  /** The earlier input each input shares its leading stages with, -1 if none. */
+  protected int[] m_PrefixSource;
+
+  /** The number of leading stages each input shares with its source. */
+  protected int[] m_PrefixLength;
+
+  /** The intermediate results (by depth) each input has to keep for later inputs, null if none. */
+  protected boolean[][] m_NeededStates;
+
+  /** Whether any input shares leading stages with an earlier one. */
+  protected boolean m_SharedPrefixes;
+
   /**
    * Initializes the preprocessing map.
    *
    * @param stream	the stream to read the setup (eg matrices) from
    */
   public PreprocessingMap(InputStream stream) {
-    initialize(stream);
+    initialize(PreprocessingStages.open(stream));
+  }
+
+  /**
+   * Initializes the preprocessing map with the given pipelines.
+   *
+   * @param ordering	the names of the inputs, in order
+   * @param stages	the preprocessing for each input
+   */
+  public PreprocessingMap(String[] ordering, PreprocessingStages[] stages) {
+    if (ordering.length != stages.length)
+      throw new IllegalArgumentException("Number of names and pipelines differ: " + ordering.length + " != " + stages.length);
+
+    m_Ordering = ordering.clone();
+    m_OrderedStages = stages.clone();
+    for (int i = 0; i < ordering.length; i++) {
+      if (m_Stages.put(ordering[i], stages[i]) != null)
+        throw new IllegalArgumentException("Duplicate input: " + ordering[i]);
+      m_Positions.put(ordering[i], i);
+    }
+
+    detectSharedPrefixes();
   }
 
   /**
    * Configures the algorithm with the data read from the stream.
+   * The stream has to be decompressed already.
    *
    * @param stream	the stream to read the setup (eg matrices) from
    */
@@ -61,8 +108,9 @@ public class PreprocessingMap {
       // Deserialise the number of inputs this map covers
       int numInputs = PyMADeserialisation.deserialiseInts(stream, 1)[0];
 
-      // Create the ordering array
+      // Create the ordering arrays
       m_Ordering = new String[numInputs];
+      m_OrderedStages = new PreprocessingStages[numInputs];
 
       // Deserialise each input's preprocessing
       for (int i = 0; i < numInputs; i++) {
@@ -73,14 +121,438 @@ public class PreprocessingMap {
         m_Ordering[i] = inputName;
 
         // Deserialise the preprocessing
-        PreprocessingStages stages = new PreprocessingStages(stream);
+        PreprocessingStages stages = new PreprocessingStages(stream, false);
 
         // Put the stages in the map
         m_Stages.put(inputName, stages);
+        m_OrderedStages[i] = stages;
+        m_Positions.put(inputName, i);
       }
     } catch (IOException e) {
       throw new RuntimeException("Error initializing from stream", e);
     }
+
+    detectSharedPrefixes();
+  }
+
+  /**
+   * Determines for each input the earlier input with the longest sequence
+   * of leading stages with identical state, and which intermediate results
+   * have to be kept so that later inputs can start from them.
+   */
+  protected void detectSharedPrefixes() {
+    int numInputs = m_OrderedStages.length;
+    m_PrefixSource = new int[numInputs];
+    m_PrefixLength = new int[numInputs];
+    m_NeededStates = new boolean[numInputs][];
+    m_SharedPrefixes = false;
+
+    // Find the longest shared prefix for each input
+    for (int i = 0; i < numInputs; i++) {
+      m_PrefixSource[i] = -1;
+      for (int j = 0; j < i; j++) {
+        int length = sharedPrefixLength(m_OrderedStages[j], m_OrderedStages[i]);
+        if (length > m_PrefixLength[i]) {
+          m_PrefixSource[i] = j;
+          m_PrefixLength[i] = length;
+        }
+      }
+      if (m_PrefixSource[i] != -1)
+        m_SharedPrefixes = true;
+    }
+
+    // Mark the intermediate results the sources have to keep, latest input first
+    // so that the needs of an input are complete before passing them on
+    for (int i = numInputs - 1; i >= 0; i--) {
+      int source = m_PrefixSource[i];
+      if (source == -1)
+        continue;
+      if (m_NeededStates[source] == null)
+        m_NeededStates[source] = new boolean[m_OrderedStages[source].m_Stages.length + 1];
+      m_NeededStates[source][m_PrefixLength[i]] = true;
+      if (m_NeededStates[i] != null) {
+        for (int d = 1; d <= m_PrefixLength[i]; d++) {
+          if (m_NeededStates[i][d])
+            m_NeededStates[source][d] = true;
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the number of leading stages of the two pipelines that have
+   * identical state.
+   *
+   * @param first	the first pipeline
+   * @param second	the second pipeline
+   * @return		the number of stages
+   */
+  protected static int sharedPrefixLength(PreprocessingStages first, PreprocessingStages second) {
+    int max = Math.min(first.m_Stages.length, second.m_Stages.length);
+    int result = 0;
+    while ((result < max) && first.m_Stages[result].hasSameState(second.m_Stages[result]))
+      result++;
+
+    return result;
+  }
+
+  /**
+   * Returns the number of leading stages the input shares with an earlier
+   * input. These stages only get computed once if both inputs receive the
+   * same data.
+   *
+   * @param name	the name of the input
+   * @return		the number of stages, 0 if none shared or unknown input
+   */
+  public int getSharedPrefixLength(String name) {
+    int index = indexOf(name);
+    if (index == -1)
+      return 0;
+    return m_PrefixLength[index];
+  }
+
+  /**
+   * Returns whether shared prefixes can be computed once. Not the case if
+   * none were found, or if pipelines have metrics or a cache attached.
+   *
+   * @return		true if sharing
+   */
+  protected boolean isSharing() {
+    if (!m_SharedPrefixes)
+      return false;
+    for (PreprocessingStages stages : m_OrderedStages) {
+      PreprocessingStages.Probes probes = stages.m_Probes;
+      if (((probes != null) && probes.isRecording()) || (stages.m_Cache != null))
+        return false;
+    }
+
+    return true;
+  }
+
+  /**
+   * Creates the storage for the intermediate results to share.
+   *
+   * @return		the storage, per input and depth
+   */
+  protected double[][][] newStates() {
+    double[][][] result = new double[m_OrderedStages.length][][];
+    for (int i = 0; i < result.length; i++) {
+      if (m_NeededStates[i] != null)
+        result[i] = new double[m_NeededStates[i].length][];
+    }
+
+    return result;
+  }
+
+  /**
+   * Applies the preprocessing of the input. If the input shares leading
+   * stages with an earlier input that received the same data, computation
+   * starts from the intermediate result of that input.
+   *
+   * @param index	the position of the input
+   * @param inputs	the data of the inputs processed so far
+   * @param states	the intermediate results per input and depth, null if not sharing
+   * @return		the converted data
+   * @throws Exception	if conversion fails
+   */
+  protected double[] applyInput(int index, double[][] inputs, double[][][] states) throws Exception {
+    PreprocessingStages stages = m_OrderedStages[index];
+    double[] data = inputs[index];
+    if (states == null)
+      return stages.apply(data);
+
+    AbstractAlgorithm[] algorithms = stages.m_Stages;
+    boolean[] needed = m_NeededStates[index];
+    double[][] own = states[index];
+
+    // Start from the shared prefix if the data is the same
+    int depth = 0;
+    int source = m_PrefixSource[index];
+    if ((source != -1) && ((inputs[source] == data) || Arrays.equals(inputs[source], data))) {
+      depth = m_PrefixLength[index];
+      data = states[source][depth];
+      if (own != null) {
+        for (int d = 1; d <= depth; d++)
+          own[d] = states[source][d];
+      }
+    }
+
+    // Apply the remaining stages
+    for (int d = depth; d < algorithms.length; d++) {
+      data = algorithms[d].apply(data);
+      if ((own != null) && needed[d + 1])
+        own[d + 1] = data;
+    }
+
+    // Never hand out the same array for two inputs
+    if ((depth > 0) && (depth == algorithms.length))
+      data = data.clone();
+
+    return data;
+  }
+
+  /**
+   * Returns a map with only the specified inputs, in the specified order.
+   * The pipelines are shared with this map, nothing gets copied. Compile
+   * the subset once for callers that only ever need some of the outputs.
+   *
+   * @param names	the names of the inputs to keep
+   * @return		the subset
+   */
+  public PreprocessingMap select(String... names) {
+    PreprocessingStages[] stages = new PreprocessingStages[names.length];
+    for (int i = 0; i < names.length; i++) {
+      stages[i] = m_Stages.get(names[i]);
+      if (stages[i] == null)
+        throw new IllegalArgumentException("Unknown input: " + names[i]);
+    }
+
+    return new PreprocessingMap(names, stages);
+  }
+
+  /**
+   * Returns the names of the inputs, in order.
+   *
+   * @return		the names
+   */
+  public String[] getOrdering() {
+    return m_Ordering.clone();
+  }
+
+  /**
+   * Returns the position of the input in the ordering.
+   *
+   * @param name	the name of the input
+   * @return		the position, -1 if not an input of this map
+   */
+  public int indexOf(String name) {
+    Integer result = m_Positions.get(name);
+    return (result == null) ? -1 : result;
+  }
+
+  /**
+   * Creates a new frame for holding the inputs of this map.
+   *
+   * @return		the frame
+   */
+  public FeatureFrame newFrame() {
+    return new FeatureFrame(this);
+  }
+
+  /**
+   * Applies the preprocessing to the inputs held by the frame and
+   * concatenates the outputs in the order of the inputs. The result is the
+   * frame's output vector, which gets re-used (and overwritten) by
+   * subsequent calls with the same frame.
+   *
+   * @param frame	the frame with the inputs, created by this map
+   * @return		the concatenated outputs
+   * @throws Exception	if conversion fails
+   */
+  public double[] apply(FeatureFrame frame) throws Exception {
+    if (frame.getMap() != this)
+      throw new IllegalArgumentException("Frame was not created by this map");
+
+    // Measure if metrics are attached
+    Metrics.Probe probe = recordingProbe();
+    long start = (probe == null) ? 0 : System.nanoTime();
+    int inputWidth = 0;
+
+    // Process each input in turn
+    int numInputs = m_OrderedStages.length;
+    double[][] outputs = frame.m_Outputs;
+    double[][][] states = isSharing() ? frame.m_States : null;
+    int totalLength = 0;
+    try {
+      for (int i = 0; i < numInputs; i++) {
+        double[] inputData = frame.get(i);
+        if (inputData == null)
+          throw new IllegalStateException("No data for input: " + m_Ordering[i]);
+        outputs[i] = applyInput(i, frame.m_Inputs, states);
+        totalLength += outputs[i].length;
+        inputWidth += inputData.length;
+      }
+    }
+    catch (Exception e) {
+      if (probe != null)
+        probe.failed(e);
+      throw e;
+    }
+    finally {
+      // Release the intermediate results
+      if (states != null) {
+        for (double[][] state : states) {
+          if (state != null)
+            Arrays.fill(state, null);
+        }
+      }
+    }
+
+    // Concatenate the outputs
+    double[] result = frame.outputBuffer(totalLength);
+    int[] offsets = frame.m_OutputOffsets;
+    int offset = 0;
+    for (int i = 0; i < numInputs; i++) {
+      offsets[i] = offset;
+      System.arraycopy(outputs[i], 0, result, offset, outputs[i].length);
+      offset += outputs[i].length;
+      outputs[i] = null;
+    }
+    offsets[numInputs] = offset;
+
+    if (probe != null)
+      probe.record(inputWidth, totalLength, System.nanoTime() - start);
+
+    return result;
+  }
+
+  /**
+   * Applies the preprocessing to the inputs held by the buffers (in the
+   * order of the inputs, see {@link #getOrdering()}) and writes the
+   * concatenated outputs at the position of the result buffer. Each input
+   * buffer gets read between its position and limit. Advances the
+   * positions of all the buffers.
+   *
+   * @param data	the buffers with the inputs
+   * @param result	the buffer for the concatenated outputs
+   * @throws Exception	if conversion fails
+   */
+  public void apply(DoubleBuffer[] data, DoubleBuffer result) throws Exception {
+    if (data.length != m_OrderedStages.length)
+      throw new IllegalArgumentException("Expected " + m_OrderedStages.length + " input buffers, provided: " + data.length);
+
+    for (int i = 0; i < m_OrderedStages.length; i++) {
+      if (data[i] == null)
+        throw new IllegalStateException("No data for input: " + m_Ordering[i]);
+      m_OrderedStages[i].apply(data[i], result);
+    }
+  }
+
+  /**
+   * Applies the preprocessing to the doubles held by the buffers (in the
+   * order of the inputs, see {@link #getOrdering()}) and writes the
+   * concatenated outputs at the position of the result buffer. The doubles
+   * get read and written in the byte order of the buffers. Advances the
+   * positions of all the buffers.
+   *
+   * @param data	the buffers with the inputs
+   * @param result	the buffer for the concatenated outputs
+   * @throws Exception	if conversion fails
+   */
+  public void apply(ByteBuffer[] data, ByteBuffer result) throws Exception {
+    if (data.length != m_OrderedStages.length)
+      throw new IllegalArgumentException("Expected " + m_OrderedStages.length + " input buffers, provided: " + data.length);
+
+    for (int i = 0; i < m_OrderedStages.length; i++) {
+      if (data[i] == null)
+        throw new IllegalStateException("No data for input: " + m_Ordering[i]);
+      m_OrderedStages[i].apply(data[i], result);
+    }
+  }
+
+  /**
+   * Warms up the map by applying the stages of all inputs to synthetic
+   * inputs (derived from the state of the stages), so that the JIT compiles
+   * the hot paths before serving traffic. Bypasses the caches and the
+   * metrics, so that the kernels run on every call and the synthetic inputs
+   * do not show up in the caches or the statistics.
+   *
+   * @param iterations	the number of calls to perform
+   * @return		the report, including the time to steady state
+   * @throws Exception	if applying fails
+   */
+  public WarmUpReport warmUp(int iterations) throws Exception {
+    // Generate the synthetic inputs
+    int numSamples = PreprocessingStages.NUM_WARMUP_SAMPLES;
+    double[][][] inputs = new double[m_Ordering.length][][];
+    for (int i = 0; i < m_Ordering.length; i++)
+      inputs[i] = m_OrderedStages[i].sampleInputs(numSamples);
+
+    double[][] outputs = new double[m_Ordering.length][];
+    int[] count = new int[1];
+
+    return WarmUpReport.warmUp(() -> {
+      int sample = count[0]++ % numSamples;
+      for (int i = 0; i < m_Ordering.length; i++)
+        outputs[i] = m_OrderedStages[i].applyStages(inputs[i][sample]);
+      return outputs;
+    }, iterations);
+  }
+
+  /**
+   * Attaches the metrics to record into, for all inputs.
+   *
+   * @param metrics	the metrics, null or {@link NullMetrics} to stop recording
+   */
+  public void setMetrics(Metrics metrics) {
+    for (String name : m_Ordering)
+      m_Stages.get(name).setMetrics(metrics, name);
+    m_Probe = (metrics == null) ? null : metrics.probe(null, Metrics.MAP, null);
+  }
+
+  /**
+   * Returns the probe for the map, if it is currently recording.
+   *
+   * @return		the probe, null if not recording
+   */
+  protected Metrics.Probe recordingProbe() {
+    Metrics.Probe probe = m_Probe;
+    if ((probe == null) || !probe.isRecording())
+      return null;
+    return probe;
+  }
+
+  /**
+   * Returns the (approximate) number of bytes of heap retained by the
+   * pipelines of all inputs. Matrices shared between pipelines only get
+   * counted once.
+   *
+   * @return		the bytes
+   * @see MemoryFootprint
+   */
+  public long getRetainedBytes() {
+    Set<Object> seen = MemoryFootprint.newSeen();
+    long result = 0;
+    for (PreprocessingStages stages : m_OrderedStages)
+      result += stages.retainedBytes(seen);
+
+    return result;
+  }
+
+  /**
+   * Sets how to split expensive calls of the stages across cores, for all
+   * inputs.
+   *
+   * @param value	the execution, null to compute sequentially
+   */
+  public void setParallelExecution(ParallelExecution value) {
+    for (PreprocessingStages stages : m_OrderedStages)
+      stages.setParallelExecution(value);
+  }
+
+  /**
+   * Caches the outputs for repeated inputs, using a separate cache for
+   * each input.
+   *
+   * @param maxEntries	the maximum number of entries per input, 0 to stop caching
+   * @param maxBytes	the maximum (approximate) number of bytes per input
+   */
+  public void setCache(int maxEntries, long maxBytes) {
+    for (PreprocessingStages stages : m_OrderedStages)
+      stages.setCache((maxEntries == 0) ? null : new OutputCache(maxEntries, maxBytes));
+  }
+
+  /**
+   * Returns the cache of the specified input.
+   *
+   * @param name	the name of the input
+   * @return		the cache, null if not caching or unknown input
+   */
+  public OutputCache getCache(String name) {
+    PreprocessingStages stages = m_Stages.get(name);
+    if (stages == null)
+      return null;
+    return stages.getCache();
   }
 
   /**
@@ -103,24 +575,92 @@ public class PreprocessingMap {
    * @throws Exception	if conversion fails
    */
   public Map<String, double[]> apply(Map<String, double[]> data, boolean inverse) throws Exception {
+    return apply(data, inverse, null);
+  }
+
+  /**
+   * Applies the preprocessing only for the requested outputs. The data only
+   * needs to contain the inputs of these outputs.
+   *
+   * @param data	the data to convert
+   * @param outputs	the names of the outputs to compute
+   * @return		the converted data, only containing the requested outputs
+   * @throws Exception	if conversion fails
+   * @see #select(String...)
+   */
+  public Map<String, double[]> apply(Map<String, double[]> data, Set<String> outputs) throws Exception {
+    return apply(data, false, outputs);
+  }
+
+  /**
+   * Applies the preprocessing to the data.
+   *
+   * @param data	the data to convert
+   * @param inverse whether to inverse-apply the preprocessing
+   * @param outputs	the names of the outputs to compute, null for all
+   * @return		the converted data
+   * @throws Exception	if conversion fails
+   */
+  protected Map<String, double[]> apply(Map<String, double[]> data, boolean inverse, Set<String> outputs) throws Exception {
+    // Determine the inputs to process
+    boolean[] selected = null;
+    if (outputs != null) {
+      selected = new boolean[m_Ordering.length];
+      for (String name : outputs) {
+        int index = indexOf(name);
+        if (index == -1)
+          throw new IllegalArgumentException("Unknown output: " + name);
+        selected[index] = true;
+      }
+    }
+
     // Create the results map
     Map<String, double[]> result = new HashMap<>();
 
-    // Process each input in turn
-    for (String name : m_Stages.keySet()) {
-      // Get the preprocessing stages for this input
-      PreprocessingStages stages = m_Stages.get(name);
+    // Measure if metrics are attached
+    Metrics.Probe probe = recordingProbe();
+    long start = (probe == null) ? 0 : System.nanoTime();
+    int inputWidth = 0;
+    int outputWidth = 0;
+
+    // Share the common prefixes of the inputs if possible
+    double[][] inputs = new double[m_Ordering.length][];
+    double[][][] states = (!inverse && isSharing()) ? newStates() : null;
 
-      // Get the data for this input
-      double[] inputData = data.get(name);
+    try {
+      // Process each input in turn
+      for (int i = 0; i < m_Ordering.length; i++) {
+        if ((selected != null) && !selected[i])
+          continue;
+
+        // Get the preprocessing stages for this input
+        String name = m_Ordering[i];
+        PreprocessingStages stages = m_OrderedStages[i];
+
+        // Get the data for this input
+        double[] inputData = data.get(name);
+        if (inputData == null)
+          throw new IllegalStateException("No data for input: " + name);
+        inputs[i] = inputData;
 
-      // Apply the preprocessing to the input data
-      double[] resultData = inverse ? stages.applyInverse(inputData) : stages.apply(inputData);
+        // Apply the preprocessing to the input data
+        double[] resultData = inverse ? stages.applyInverse(inputData) : applyInput(i, inputs, states);
 
-      // Add the result to the results map
-      result.put(name, resultData);
+        // Add the result to the results map
+        result.put(name, resultData);
+        inputWidth += inputData.length;
+        outputWidth += resultData.length;
+      }
+    }
+    catch (Exception e) {
+      if (probe != null)
+        probe.failed(e);
+      throw e;
     }
 
+    if (probe != null)
+      probe.record(inputWidth, outputWidth, System.nanoTime() - start);
+
     return result;
   }
 
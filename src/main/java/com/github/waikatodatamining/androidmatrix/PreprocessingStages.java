@@ -23,6 +23,9 @@ package com.github.waikatodatamining.androidmatrix;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.InvocationTargetException;
+import java.nio.DoubleBuffer;
+import java.util.Random;
+import java.util.Set;
 
 /**
  * Class representing an ordered series of preprocessing stages that
@@ -32,22 +35,113 @@ import java.lang.reflect.InvocationTargetException;
  */
 public class PreprocessingStages
   extends AbstractAlgorithm
-  implements InvertibleAlgorithm{
+  implements InvertibleAlgorithm, ColumnarAlgorithm {
+
+    /** The output width to assume when the stages accept any input width. */
+    public static final int DEFAULT_WIDTH = 64;
+
+    /** The number of different synthetic inputs to use for warming up. */
+    public static final int NUM_WARMUP_SAMPLES = 16;
 
     /** The stages of preprocessing to apply. */
     protected AbstractAlgorithm[] m_Stages;
 
+    /**
+     * The probes of the attached metrics. Immutable, so that a call sees
+     * the pipeline probe and the stage probes of the same metrics.
+     */
+    protected static class Probes {
+
+      /** The metrics the probes belong to. */
+      protected final Metrics m_Metrics;
+
+      /** The probe for the whole pipeline, null if not recording. */
+      protected final Metrics.Probe m_Pipeline;
+
+      /** The probes for the individual stages. */
+      protected final Metrics.Probe[] m_Stages;
+
+      /**
+       * Initializes the probes.
+       *
+       * @param metrics	the metrics the probes belong to
+       * @param pipeline	the probe for the whole pipeline, null if not recording
+       * @param stages	the probes for the individual stages
+       */
+      protected Probes(Metrics metrics, Metrics.Probe pipeline, Metrics.Probe[] stages) {
+        m_Metrics  = metrics;
+        m_Pipeline = pipeline;
+        m_Stages   = stages;
+      }
+
+      /**
+       * Returns whether calls currently get measured.
+       *
+       * @return		true if recording
+       */
+      protected boolean isRecording() {
+        return (m_Pipeline != null) && m_Pipeline.isRecording();
+      }
+    }
+
+    /** The probes of the attached metrics, null if none attached. */
+    protected transient volatile Probes m_Probes;
+
+    /** The cache for the outputs, null if not caching. */
+    protected transient OutputCache m_Cache;
+
+    /** The plans used by applyInto, per thread, created on first use. */
+    protected transient ThreadLocal<ExecutionPlan> m_Plans;
+
     /**
      * Initializes the algorithm.
      *
      * @param stream the stream to read the setup (eg matrices) from
      */
     public PreprocessingStages(InputStream stream) {
-        super(stream);
+        this(stream, true);
+    }
+
+    /**
+     * Initializes the algorithm.
+     *
+     * @param stream the stream to read the setup (eg matrices) from
+     * @param decompress whether to decompress the stream if required, false if already opened (eg part of a map)
+     */
+    protected PreprocessingStages(InputStream stream, boolean decompress) {
+        super(decompress ? open(stream) : stream);
+    }
+
+    /**
+     * Initializes the algorithm with the given stages.
+     *
+     * @param stages the stages of preprocessing to apply
+     */
+    public PreprocessingStages(AbstractAlgorithm... stages) {
+        super();
+        m_Stages = stages.clone();
+        validate();
+    }
+
+    /**
+     * Returns the stream for reading a model, decompressing it if required.
+     *
+     * @param stream	the stream to read the model from
+     * @return		the (decompressing) stream
+     * @see PyMADeserialisation#open(InputStream)
+     */
+    protected static InputStream open(InputStream stream) {
+      try {
+        return PyMADeserialisation.open(stream);
+      }
+      catch (IOException e) {
+        throw new RuntimeException("Error initializing from stream", e);
+      }
     }
 
     /**
      * Configures the algorithm with the data read from the stream.
+     * The stream has to be decompressed already.
      *
      * @param stream	the stream to read the setup (eg matrices) from
      */
@@ -65,20 +159,116 @@ public class PreprocessingStages
           // Read the stage name
           String stageName = PyMADeserialisation.deserialiseString(stream);
 
-          // Reflect the class for the stage
-          Class<AbstractAlgorithm> klass = (Class<AbstractAlgorithm>)
-                this.getClass().getClassLoader().loadClass(
-                      this.getClass().getPackage().getName() + "." + stageName
-                );
-
           // Instantiate the stage
-          m_Stages[i] = klass.getConstructor(InputStream.class).newInstance(stream);
+          m_Stages[i] = newStage(stageName, stream);
         }
       } catch (IOException | ClassNotFoundException | NoSuchMethodException |
             InstantiationException | IllegalAccessException | InvocationTargetException e) {
         throw new RuntimeException("Error initializing from stream", e);
       }
 
+      // Check the shapes of the stages at load time
+      validate();
+    }
+
+    /**
+     * Instantiates the stage with the given name, reading its state from
+     * the stream.
+     *
+     * @param stageName	the name of the stage class (in this package)
+     * @param stream	the stream to read the state from
+     * @return		the stage
+     * @throws ClassNotFoundException	if the stage class is unknown
+     * @throws NoSuchMethodException	if the stage has no stream constructor
+     * @throws InstantiationException	if the stage cannot be instantiated
+     * @throws IllegalAccessException	if the constructor cannot be accessed
+     * @throws InvocationTargetException	if reading the state fails
+     */
+    protected static AbstractAlgorithm newStage(String stageName, InputStream stream)
+      throws ClassNotFoundException, NoSuchMethodException, InstantiationException,
+      IllegalAccessException, InvocationTargetException {
+
+      // Reflect the class for the stage
+      Class<AbstractAlgorithm> klass = (Class<AbstractAlgorithm>)
+            PreprocessingStages.class.getClassLoader().loadClass(
+                  PreprocessingStages.class.getPackage().getName() + "." + stageName
+            );
+
+      // Instantiate the stage, timing it if monitoring
+      LoadMonitor.StageTimer timer = LoadMonitoring.beginStageLoad();
+      AbstractAlgorithm result = klass.getConstructor(InputStream.class).newInstance(stream);
+      if (timer != null)
+        timer.finished(stageName, result);
+
+      return result;
+    }
+
+    /**
+     * Checks that the stages fit together, if the input width can be
+     * inferred from the state of the stages.
+     *
+     * @throws IllegalArgumentException	if the stages are incompatible
+     */
+    protected void validate() {
+      int width = getInputWidth();
+      if (width != -1)
+        inferWidths(width);
+    }
+
+    /**
+     * Infers the widths of all intermediate results for the given input
+     * width, checking that each stage accepts its input.
+     *
+     * @param inputWidth	the width of the input
+     * @return		the input width followed by the output width of each stage
+     * @throws IllegalArgumentException	if a stage does not accept its input
+     */
+    protected int[] inferWidths(int inputWidth) {
+      int[] result = new int[m_Stages.length + 1];
+      result[0] = inputWidth;
+
+      for (int i = 0; i < m_Stages.length; i++) {
+        AbstractAlgorithm stage = m_Stages[i];
+        String name = "Stage " + i + " (" + stage.getClass().getSimpleName() + ")";
+
+        // Check fixed widths
+        int required = stage.getInputWidth();
+        if ((required != -1) && (required != result[i]))
+          throw new IllegalArgumentException(name + " requires input width " + required + ", but receives " + result[i]);
+
+        // Check the output width
+        result[i + 1] = stage.getOutputWidth(result[i]);
+        if (result[i + 1] < 1)
+          throw new IllegalArgumentException(name + " generates no output for input width " + result[i]);
+      }
+
+      return result;
+    }
+
+    /**
+     * Compiles the stages into a plan for the input width that the stages
+     * require.
+     *
+     * @return		the plan
+     * @throws IllegalArgumentException	if the input width cannot be inferred or the stages are incompatible
+     */
+    public ExecutionPlan compile() {
+      int width = getInputWidth();
+      if (width == -1)
+        throw new IllegalArgumentException("Stages accept any input width, the width must be specified");
+
+      return compile(width);
+    }
+
+    /**
+     * Compiles the stages into a plan for the given input width.
+     *
+     * @param inputWidth	the width of the input
+     * @return		the plan
+     * @throws IllegalArgumentException	if the stages are incompatible with the width
+     */
+    public ExecutionPlan compile(int inputWidth) {
+      return new ExecutionPlan(m_Stages, inferWidths(inputWidth));
     }
 
     /**
@@ -90,13 +280,409 @@ public class PreprocessingStages
      */
     @Override
     public double[] apply(double[] data) throws Exception {
-      // Apply the data to each stage in turn
+      Probes probes = m_Probes;
+
+      // Look up repeated inputs if caching
+      if (m_Cache != null)
+        return applyCached(data, probes);
+
+      // Measure if metrics are attached
+      if ((probes != null) && probes.isRecording())
+        return applyMeasured(data, probes);
+
+      return applyStages(data);
+    }
+
+    /**
+     * Applies the data to each stage in turn, bypassing the cache and the
+     * metrics.
+     *
+     * @param data	the data to convert
+     * @return		the converted data
+     * @throws Exception	if conversion fails
+     */
+    protected double[] applyStages(double[] data) throws Exception {
       for (AbstractAlgorithm stage : m_Stages)
         data = stage.apply(data);
 
       return data;
     }
 
+    /**
+     * Applies the algorithm to the data, returning the cached output for
+     * repeated inputs.
+     *
+     * @param data	the data to convert
+     * @param probes	the probes to record into, null if none attached
+     * @return		the converted data
+     * @throws Exception	if conversion fails
+     */
+    protected double[] applyCached(double[] data, Probes probes) throws Exception {
+      OutputCache cache = m_Cache;
+      OutputCache.Key key = new OutputCache.Key(data);
+      double[] result = cache.get(key);
+      if (result != null)
+        return result;
+
+      // Apply the data to each stage in turn
+      if ((probes != null) && probes.isRecording())
+        result = applyMeasured(data, probes);
+      else
+        result = applyStages(data);
+      cache.put(key, result);
+
+      return result;
+    }
+
+    /**
+     * Returns the bytes retained by the stages and the cache, skipping
+     * objects that were counted already.
+     *
+     * @param seen	the objects counted already
+     * @return		the bytes
+     */
+    @Override
+    protected long retainedBytes(Set<Object> seen) {
+      long result = super.retainedBytes(seen);
+      if (result == 0)
+        return 0;
+
+      result += MemoryFootprint.referencesBytes(m_Stages.length);
+      for (AbstractAlgorithm stage : m_Stages)
+        result += stage.retainedBytes(seen);
+      OutputCache cache = m_Cache;
+      if ((cache != null) && seen.add(cache))
+        result += cache.getBytes();
+
+      return result;
+    }
+
+    /**
+     * Sets how to split expensive calls of the stages across cores.
+     *
+     * @param value	the execution, null to compute sequentially
+     */
+    @Override
+    public void setParallelExecution(ParallelExecution value) {
+      super.setParallelExecution(value);
+      for (AbstractAlgorithm stage : m_Stages)
+        stage.setParallelExecution(value);
+    }
+
+    /**
+     * Sets the cache for the outputs of repeated inputs.
+     *
+     * @param value	the cache, null to stop caching
+     */
+    public void setCache(OutputCache value) {
+      m_Cache = value;
+    }
+
+    /**
+     * Returns the cache for the outputs of repeated inputs.
+     *
+     * @return		the cache, null if not caching
+     */
+    public OutputCache getCache() {
+      return m_Cache;
+    }
+
+    /**
+     * Applies the algorithm to the data, recording the metrics.
+     *
+     * @param data	the data to convert
+     * @param probes	the probes to record into, must be recording
+     * @return		the converted data
+     * @throws Exception	if conversion fails
+     */
+    protected double[] applyMeasured(double[] data, Probes probes) throws Exception {
+      Metrics.Probe probe = probes.m_Pipeline;
+      Metrics.Probe[] stageProbes = probes.m_Stages;
+      int inputWidth = data.length;
+      long start = System.nanoTime();
+
+      try {
+        // Apply the data to each stage in turn, timing each one
+        for (int i = 0; i < m_Stages.length; i++) {
+          long stageStart = System.nanoTime();
+          double[] result;
+          try {
+            result = m_Stages[i].apply(data);
+          }
+          catch (Exception e) {
+            if (stageProbes[i] != null)
+              stageProbes[i].failed(e);
+            throw e;
+          }
+          if (stageProbes[i] != null)
+            stageProbes[i].record(data.length, result.length, System.nanoTime() - stageStart);
+          data = result;
+        }
+      }
+      catch (Exception e) {
+        probe.failed(e);
+        throw e;
+      }
+
+      probe.record(inputWidth, data.length, System.nanoTime() - start);
+
+      return data;
+    }
+
+    /**
+     * Applies the stages to the data buffer, writing the output into the
+     * result buffer. The first stage reads from the data buffer and the last
+     * stage writes into the result buffer, the buffers of a per-thread
+     * {@link ExecutionPlan} get used for the results between stages; the
+     * plan only gets compiled again if the input width changes. Metrics only
+     * get recorded for the pipeline as a whole and the cache only gets
+     * consulted, via copies.
+     *
+     * @param data	the data to convert
+     * @param result	the buffer for the converted data
+     * @throws Exception	if conversion fails
+     */
+    @Override
+    protected void applyInto(DoubleBuffer data, DoubleBuffer result) throws Exception {
+      // Measure if metrics are attached
+      Probes probes = m_Probes;
+      if (((probes != null) && probes.isRecording()) || (m_Cache != null) || (m_Stages.length == 0)) {
+        super.applyInto(data, result);
+        return;
+      }
+
+      if (m_Stages.length == 1) {
+        m_Stages[0].applyInto(data, result);
+        return;
+      }
+
+      // Re-use the plan of this thread, unless the width changed
+      ThreadLocal<ExecutionPlan> plans = m_Plans;
+      if (plans == null) {
+        plans = new ThreadLocal<>();
+        m_Plans = plans;
+      }
+      ExecutionPlan plan = plans.get();
+      if ((plan == null) || (plan.getInputWidth() != data.remaining())) {
+        plan = compile(data.remaining());
+        plans.set(plan);
+      }
+
+      // The plan advances the positions, the contract leaves them unchanged
+      int dataPosition = data.position();
+      int resultPosition = result.position();
+      try {
+        plan.apply(data, result);
+      }
+      finally {
+        data.position(dataPosition);
+        result.position(resultPosition);
+      }
+    }
+
+    /**
+     * Applies the stages to the batch. Consecutive columnar stages process
+     * the batch in columnar layout, the batch only gets converted to and
+     * from row-major layout around the other stages.
+     *
+     * @param batch	the batch to convert
+     * @return		the converted batch
+     * @throws Exception	if conversion fails
+     */
+    @Override
+    public ColumnarBatch applyColumnar(ColumnarBatch batch) throws Exception {
+      double[][] rows = null;
+
+      for (AbstractAlgorithm stage : m_Stages) {
+        if (stage instanceof ColumnarAlgorithm) {
+          // Convert back to columnar layout if required
+          if (rows != null) {
+            batch = ColumnarBatch.fromRows(rows);
+            rows = null;
+          }
+          batch = ((ColumnarAlgorithm) stage).applyColumnar(batch);
+        }
+        else {
+          // Convert to row-major layout if required
+          if (rows == null)
+            rows = batch.toRows();
+          for (int i = 0; i < rows.length; i++)
+            rows[i] = stage.apply(rows[i]);
+        }
+      }
+
+      if (rows != null)
+        batch = ColumnarBatch.fromRows(rows);
+
+      return batch;
+    }
+
+    /**
+     * Returns the input width the stages require, working backwards from
+     * the last stage.
+     *
+     * @return		the width, -1 if any width is accepted
+     */
+    @Override
+    public int getInputWidth() {
+      int width = -1;
+      for (int i = m_Stages.length - 1; i >= 0; i--)
+        width = (width == -1) ? m_Stages[i].getInputWidth() : m_Stages[i].getInputWidth(width);
+
+      return width;
+    }
+
+    /**
+     * Returns the input width that generates the given output width.
+     *
+     * @param outputWidth	the width of the output
+     * @return		the width of the input
+     */
+    @Override
+    public int getInputWidth(int outputWidth) {
+      for (int i = m_Stages.length - 1; i >= 0; i--)
+        outputWidth = m_Stages[i].getInputWidth(outputWidth);
+
+      return outputWidth;
+    }
+
+    /**
+     * Generates synthetic input data that the first stage can be applied to.
+     *
+     * @param width	the width of the data
+     * @param random	the random number generator to use
+     * @return		the data
+     */
+    @Override
+    protected double[] sampleInput(int width, Random random) {
+      if (m_Stages.length == 0)
+        return super.sampleInput(width, random);
+
+      return m_Stages[0].sampleInput(width, random);
+    }
+
+    /**
+     * Generates synthetic inputs of the width the stages require (derived
+     * from the state of the stages).
+     *
+     * @param count	the number of inputs to generate
+     * @return		the inputs
+     */
+    public double[][] sampleInputs(int count) {
+      int width = getInputWidth();
+      if (width == -1)
+        width = getInputWidth(DEFAULT_WIDTH);
+
+      Random random = new Random(1);
+      double[][] result = new double[count][];
+      for (int i = 0; i < count; i++)
+        result[i] = sampleInput(width, random);
+
+      return result;
+    }
+
+    /**
+     * Warms up the stages by applying them to synthetic inputs, so that the
+     * JIT compiles the hot paths before serving traffic. Bypasses the cache
+     * and the metrics, so that the kernels run on every call and the
+     * synthetic inputs do not show up in the cache or the statistics.
+     *
+     * @param iterations	the number of calls to perform
+     * @return		the report, including the time to steady state
+     * @throws Exception	if applying fails
+     */
+    public WarmUpReport warmUp(int iterations) throws Exception {
+      double[][] inputs = sampleInputs(NUM_WARMUP_SAMPLES);
+      int[] index = new int[1];
+
+      return WarmUpReport.warmUp(() -> applyStages(inputs[index[0]++ % inputs.length]), iterations);
+    }
+
+    /**
+     * Returns the width of the output for the given input width.
+     *
+     * @param inputWidth	the width of the input
+     * @return		the width of the output
+     */
+    @Override
+    public int getOutputWidth(int inputWidth) {
+      for (AbstractAlgorithm stage : m_Stages)
+        inputWidth = stage.getOutputWidth(inputWidth);
+
+      return inputWidth;
+    }
+
+    /**
+     * Applies the stages to the data, if each stage is applicable to
+     * its input.
+     *
+     * @param data	the data to convert
+     * @return		the converted data, null if not applicable
+     * @throws Exception	if conversion fails
+     */
+    @Override
+    protected double[] applyIfApplicable(double[] data) throws Exception {
+      for (AbstractAlgorithm stage : m_Stages) {
+        data = stage.applyIfApplicable(data);
+        if (data == null)
+          return null;
+      }
+
+      return data;
+    }
+
+    /**
+     * Applies the stages to the data, clamping the input of each stage
+     * that is not applicable.
+     *
+     * @param data	the data to clamp and convert
+     * @return		the converted data, null if the data cannot be clamped
+     * @throws Exception	if conversion fails
+     */
+    @Override
+    protected double[] applyClamped(double[] data) throws Exception {
+      for (AbstractAlgorithm stage : m_Stages) {
+        double[] result = stage.applyIfApplicable(data);
+        if (result == null)
+          result = stage.applyClamped(data);
+        if (result == null)
+          return null;
+        data = result;
+      }
+
+      return data;
+    }
+
+    /**
+     * Attaches the metrics to record into.
+     *
+     * @param metrics	the metrics, null or {@link NullMetrics} to stop recording
+     * @param input	the name of the input this pipeline processes, null if not part of a map
+     */
+    public void setMetrics(Metrics metrics, String input) {
+      if (metrics == null)
+        metrics = NullMetrics.INSTANCE;
+
+      // Request the probes up front, so the hot path only has to check for null
+      Metrics.Probe[] stageProbes = new Metrics.Probe[m_Stages.length];
+      for (int i = 0; i < m_Stages.length; i++)
+        stageProbes[i] = metrics.probe(input, i, m_Stages[i]);
+
+      m_Probes = new Probes(metrics, metrics.probe(input, Metrics.PIPELINE, this), stageProbes);
+    }
+
+    /**
+     * Returns the metrics that are being recorded into.
+     *
+     * @return		the metrics
+     */
+    public Metrics getMetrics() {
+      Probes probes = m_Probes;
+      if (probes == null)
+        return NullMetrics.INSTANCE;
+      return probes.m_Metrics;
+    }
+
   @Override
   public double[] applyInverse(double[] data) throws Exception {
     // Inverse-apply the data to each stage in reverse order
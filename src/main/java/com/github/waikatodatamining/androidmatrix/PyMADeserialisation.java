@@ -22,9 +22,12 @@ package com.github.waikatodatamining.androidmatrix;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.PushbackInputStream;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.charset.Charset;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
 
 /**
  * Static class which provides utilities for deserialising
@@ -34,6 +37,82 @@ import java.nio.charset.Charset;
  */
 public class PyMADeserialisation {
 
+  /** The size of the buffer for streaming matrices (a multiple of 8). */
+  public static final int BUFFER_SIZE = 8192;
+
+  /** The first byte of the gzip magic number. */
+  public static final int GZIP_MAGIC1 = 0x1f;
+
+  /** The second byte of the gzip magic number. */
+  public static final int GZIP_MAGIC2 = 0x8b;
+
+  /** The compression method byte of gzip streams (deflate). */
+  public static final int GZIP_DEFLATE = 0x08;
+
+  /**
+   * Returns a stream for reading the model, decompressing it if it was
+   * compressed with gzip. The format gets detected from the first three
+   * bytes; raw models start with a count in little-endian order, which
+   * would have to exceed 500,000 inputs or stages to clash with the gzip
+   * header. zlib (deflate) streams have no such distinctive header, so they
+   * do not get detected: wrap them in an {@link InflaterInputStream} instead.
+   * Streams that already decompress get returned as is. Streams wrapped by
+   * a {@link MatrixInterner} stay wrapped.
+   *
+   * @param stream		The stream to read from.
+   * @return			The (decompressing) stream.
+   * @throws IOException	If there is an error reading from the stream.
+   */
+  public static InputStream open(InputStream stream) throws IOException {
+    if (stream instanceof InflaterInputStream)
+      return stream;
+
+    // Keep interning the matrices read from the decompressed stream
+    MatrixInterner interner = MatrixInterner.of(stream);
+    if (interner != null) {
+      InputStream wrapped = ((MatrixInterner.InterningInputStream) stream).getWrapped();
+      InputStream opened = open(wrapped);
+      return (opened == wrapped) ? stream : interner.wrap(opened);
+    }
+
+    // Peek at the header, without reading ahead any further
+    PushbackInputStream pushback = new PushbackInputStream(stream, 3);
+    byte[] header = new byte[3];
+    int count = 0;
+    int read;
+    while ((count < header.length) && ((read = pushback.read(header, count, header.length - count)) != -1))
+      count += read;
+    pushback.unread(header, 0, count);
+
+    if ((count == header.length)
+      && ((header[0] & 0xff) == GZIP_MAGIC1)
+      && ((header[1] & 0xff) == GZIP_MAGIC2)
+      && ((header[2] & 0xff) == GZIP_DEFLATE))
+      return new GZIPInputStream(pushback, BUFFER_SIZE);
+
+    return pushback;
+  }
+
+  /**
+   * Reads the number of bytes from the stream into the buffer, blocking
+   * until all are available.
+   *
+   * @param stream		The stream to read from.
+   * @param buffer		The buffer to fill.
+   * @param count		The number of bytes to read.
+   * @throws IOException	If there is an error reading from the stream.
+   * @throws RuntimeException	If there isn't enough data in the stream to fill the request.
+   */
+  public static void readFully(InputStream stream, byte[] buffer, int count) throws IOException, RuntimeException {
+    int offset = 0;
+    while (offset < count) {
+      int read = stream.read(buffer, offset, count - offset);
+      if (read == -1)
+        throw new RuntimeException("Failed to read enough data from the stream");
+      offset += read;
+    }
+  }
+
   /**
    * Reads a number of bytes from the stream.
    *
@@ -47,12 +126,8 @@ public class PyMADeserialisation {
     // Create a buffer to store the raw data in
     byte[] buffer = new byte[count];
 
-    // Read the data from the stream
-    int bytesRead = stream.read(buffer);
-
-    // Throw if not enough data was read
-    if (bytesRead != count)
-      throw new RuntimeException("Failed to read enough data from the stream");
+    // Read the data from the stream, which may deliver it in parts
+    readFully(stream, buffer, count);
 
     return buffer;
   }
@@ -141,6 +216,9 @@ public class PyMADeserialisation {
    * @return		The matrix.
    */
   public static double[][] deserialiseMatrix(InputStream stream) throws IOException, RuntimeException {
+    // Time the loading if monitoring
+    LoadMonitor.MatrixTimer timer = LoadMonitoring.beginMatrixLoad();
+
     // Get the size of the matrix
     int[] dimensions = deserialiseInts(stream, 2);
     int numRows = dimensions[0];
@@ -149,14 +227,32 @@ public class PyMADeserialisation {
     // Create an array to hold the matrix data
     double[][] matrix = new double[numRows][numColumns];
 
-    // Deserialise the matrix data
-    double[] matrixData = deserialiseDoubles(stream, numRows * numColumns);
-
-    // Format the data into a matrix
-    for (int rowIndex = 0; rowIndex < numRows; rowIndex++) {
-      System.arraycopy(matrixData, rowIndex * numColumns, matrix[rowIndex], 0, numColumns);
+    // Stream the matrix data through a small buffer into the rows
+    long remaining = (long) numRows * numColumns * Double.BYTES;
+    byte[] buffer = new byte[(int) Math.min(BUFFER_SIZE, remaining)];
+    ByteBuffer converter = wrap(buffer);
+    converter.limit(0);
+    for (double[] row : matrix) {
+      for (int columnIndex = 0; columnIndex < numColumns; columnIndex++) {
+        if (!converter.hasRemaining()) {
+          int count = (int) Math.min(buffer.length, remaining);
+          readFully(stream, buffer, count);
+          remaining -= count;
+          converter.clear();
+          converter.limit(count);
+        }
+        row[columnIndex] = converter.getDouble();
+      }
     }
 
+    // Share identical matrices if loading through an interner
+    MatrixInterner interner = MatrixInterner.of(stream);
+    if (interner != null)
+      matrix = interner.intern(matrix);
+
+    if (timer != null)
+      timer.finished(numRows, numColumns);
+
     return matrix;
   }
 
@@ -0,0 +1,111 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * PyMASerialisation.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.waikatodatamining.androidmatrix;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Static class which provides utilities for serialising state in the
+ * format of py-matrix-algorithms, the counterpart of
+ * {@link PyMADeserialisation}.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class PyMASerialisation {
+
+  /**
+   * Serialises ints to the stream.
+   *
+   * @param stream		The stream to write to.
+   * @param ints		The ints to write.
+   * @throws IOException	If there is an error writing to the stream.
+   */
+  public static void serialiseInts(OutputStream stream, int... ints) throws IOException {
+    ByteBuffer converter = PyMADeserialisation.wrap(new byte[Integer.BYTES * ints.length]);
+    for (int i : ints)
+      converter.putInt(i);
+    stream.write(converter.array());
+  }
+
+  /**
+   * Serialises doubles to the stream.
+   *
+   * @param stream		The stream to write to.
+   * @param doubles		The doubles to write.
+   * @throws IOException	If there is an error writing to the stream.
+   */
+  public static void serialiseDoubles(OutputStream stream, double... doubles) throws IOException {
+    byte[] buffer = new byte[(int) Math.min(PyMADeserialisation.BUFFER_SIZE, (long) Double.BYTES * doubles.length)];
+    ByteBuffer converter = PyMADeserialisation.wrap(buffer);
+    for (double d : doubles) {
+      if (!converter.hasRemaining()) {
+        stream.write(buffer);
+        converter.clear();
+      }
+      converter.putDouble(d);
+    }
+    stream.write(buffer, 0, converter.position());
+  }
+
+  /**
+   * Serialises a string to the stream.
+   *
+   * @param stream		The stream to write to.
+   * @param string		The string to write.
+   * @throws IOException	If there is an error writing to the stream.
+   */
+  public static void serialiseString(OutputStream stream, String string) throws IOException {
+    byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+    serialiseInts(stream, bytes.length);
+    stream.write(bytes);
+  }
+
+  /**
+   * Serialises a matrix to the stream.
+   *
+   * @param stream		The stream to write to.
+   * @param matrix		The matrix to write.
+   * @throws IOException	If there is an error writing to the stream.
+   */
+  public static void serialiseMatrix(OutputStream stream, double[][] matrix) throws IOException {
+    int numColumns = (matrix.length == 0) ? 0 : matrix[0].length;
+    serialiseInts(stream, matrix.length, numColumns);
+    for (double[] row : matrix) {
+      if (row.length != numColumns)
+        throw new IllegalArgumentException("Rows differ in length: " + row.length + " != " + numColumns);
+      serialiseDoubles(stream, row);
+    }
+  }
+
+  /**
+   * Serialises a vector as a matrix with only one row to the stream.
+   *
+   * @param stream		The stream to write to.
+   * @param vector		The vector to write.
+   * @throws IOException	If there is an error writing to the stream.
+   */
+  public static void serialiseOneDimensionalMatrix(OutputStream stream, double[] vector) throws IOException {
+    serialiseMatrix(stream, new double[][]{vector});
+  }
+}
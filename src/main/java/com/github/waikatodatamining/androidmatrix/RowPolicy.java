@@ -0,0 +1,45 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * RowPolicy.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.waikatodatamining.androidmatrix;
+
+/**
+ * Determines how {@link AbstractAlgorithm#applyBatch(double[][], RowPolicy)}
+ * handles rows that the algorithm cannot process.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public enum RowPolicy {
+
+  /** throws the exception of the first invalid row (like apply). */
+  FAIL,
+
+  /** outputs a row of NaNs for invalid rows. */
+  NAN,
+
+  /**
+   * clamps values into the valid domain, if the algorithm supports it
+   * (e.g. Log), otherwise outputs a row of NaNs.
+   */
+  CLAMP,
+
+  /** omits invalid rows from the output. */
+  SKIP,
+}
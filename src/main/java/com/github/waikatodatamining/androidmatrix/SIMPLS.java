@@ -22,6 +22,9 @@ package com.github.waikatodatamining.androidmatrix;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+import java.util.Set;
 
 /**
  * Implementation of the SIMPLS algorithm.
@@ -29,11 +32,30 @@ import java.io.InputStream;
  * @author Corey Sterling (csterlin at waikato dot ac dot nz)
  */
 public class SIMPLS
-  extends AbstractAlgorithm {
+  extends AbstractAlgorithm
+  implements TunableAlgorithm {
+
+  /** kernel iterating over the rows of the loadings (default). */
+  public static final String KERNEL_ROWS = "rows";
+
+  /** kernel computing one dot product per component. */
+  public static final String KERNEL_COLUMNS = "columns";
+
+  /** kernel iterating over the rows of the loadings, four components at a time. */
+  public static final String KERNEL_UNROLLED = "unrolled";
+
+  /** the available kernels. */
+  protected static final String[] KERNELS = {KERNEL_ROWS, KERNEL_COLUMNS, KERNEL_UNROLLED};
 
   // The loadings.
   protected double[][] m_W;
 
+  // The number of (leading) components to compute.
+  protected int m_NumComponents;
+
+  // The kernel to use.
+  protected String m_Kernel = KERNEL_ROWS;
+
   /**
    * Initializes the algorithm.
    *
@@ -43,6 +65,33 @@ public class SIMPLS
     super(stream);
   }
 
+  /**
+   * Initializes a view of the algorithm that only computes the leading
+   * components. Shares the loadings with the source.
+   *
+   * @param source		the algorithm to create the view for
+   * @param numComponents	the number of leading components
+   */
+  protected SIMPLS(SIMPLS source, int numComponents) {
+    super();
+    m_W = source.m_W;
+    m_ParallelExecution = source.m_ParallelExecution;
+    m_Kernel = source.m_Kernel;
+    m_NumComponents = checkNumComponents(numComponents);
+  }
+
+  /**
+   * Initializes the algorithm with the given loadings, computing all
+   * components.
+   *
+   * @param loadings	the loadings (rows: input width, columns: components)
+   */
+  protected SIMPLS(double[][] loadings) {
+    super();
+    m_W = loadings;
+    m_NumComponents = loadings[0].length;
+  }
+
   /**
    * Configures the algorithm with the data read from the stream.
    *
@@ -52,6 +101,7 @@ public class SIMPLS
   protected void initialize(InputStream stream) {
     try {
       m_W = PyMADeserialisation.deserialiseMatrix(stream);
+      m_NumComponents = m_W[0].length;
     } catch (IOException ioe) {
       throw new RuntimeException("Error initializing from stream", ioe);
     }
@@ -66,22 +116,354 @@ public class SIMPLS
    */
   @Override
   public double[] apply(double[] data) throws Exception {
+    return apply(data, m_NumComponents);
+  }
+
+  /**
+   * Applies the algorithm to the data, only computing the leading
+   * components.
+   *
+   * @param data		the data to convert
+   * @param numComponents	the number of leading components to compute
+   * @return			the converted data
+   * @throws Exception		if conversion fails
+   */
+  public double[] apply(double[] data, int numComponents) throws Exception {
     // Must have compatible size with matrix
     if (data.length != m_W.length)
       throw new RuntimeException("Data size does not match loadings size");
+    checkNumComponents(numComponents);
 
     // Create the result buffer
-    int resultLength = m_W[0].length;
-    double[] result = new double[resultLength];
+    double[] result = new double[numComponents];
 
     // Perform the matrix multiplication
-    for (int i = 0; i < resultLength; i++) {
+    multiply(data, result, numComponents);
+
+    return result;
+  }
+
+  /**
+   * Applies the algorithm to the data, writing the output into the provided
+   * buffer. Performs no size checks.
+   *
+   * @param data	the data to convert
+   * @param result	the buffer for the converted data
+   */
+  @Override
+  protected void applyInto(double[] data, double[] result) {
+    multiply(data, result, m_NumComponents);
+  }
+
+  /**
+   * Applies the algorithm to the data buffer, writing the output into the
+   * result buffer. Performs no size checks. Sums in the same order as the
+   * array version, so the results are identical.
+   *
+   * @param data	the data to convert
+   * @param result	the buffer for the converted data
+   */
+  @Override
+  protected void applyInto(DoubleBuffer data, DoubleBuffer result) {
+    int dataOffset = data.position();
+    int resultOffset = result.position();
+    for (int i = 0; i < m_NumComponents; i++) {
+      double sum = 0.0;
+      for (int j = 0; j < m_W.length; j++)
+        sum += data.get(dataOffset + j) * m_W[j][i];
+      result.put(resultOffset + i, sum);
+    }
+  }
+
+  /**
+   * Multiplies the data with the leading columns of the loadings. Works
+   * row by row of the loadings, so that only the leading numComponents
+   * columns get touched.
+   *
+   * @param data		the data to multiply
+   * @param result		the buffer for the leading components
+   * @param numComponents	the number of leading components
+   */
+  protected void multiply(double[] data, double[] result, int numComponents) {
+    // Split wide spectra across cores if worth it
+    ParallelExecution parallel = m_ParallelExecution;
+    if (parallel != null) {
+      int numRanges = parallel.numRanges((long) data.length * numComponents, Math.max(numComponents, data.length));
+      if (numRanges > 1) {
+        if (numComponents >= numRanges) {
+          // Components are independent, each range computes its own
+          parallel.run(numComponents, numRanges, (index, from, to) -> multiply(data, result, 0, data.length, from, to));
+        }
+        else {
+          // Too few components, reduce the partial sums of blocks of the input
+          double[][] partial = new double[numRanges][numComponents];
+          parallel.run(data.length, numRanges, (index, from, to) -> multiply(data, partial[index], from, to, 0, numComponents));
+          for (int i = 0; i < numComponents; i++) {
+            double sum = 0.0;
+            for (double[] sums : partial)
+              sum += sums[i];
+            result[i] = sum;
+          }
+        }
+        return;
+      }
+    }
+
+    multiply(data, result, 0, data.length, 0, numComponents);
+  }
+
+  /**
+   * Multiplies a block of the data with a range of columns of the loadings.
+   *
+   * @param data	the data to multiply
+   * @param result	the buffer for the components
+   * @param fromRow	the first value of the data (incl)
+   * @param toRow	the last value of the data (excl)
+   * @param fromComponent	the first component (incl)
+   * @param toComponent	the last component (excl)
+   */
+  protected void multiply(double[] data, double[] result, int fromRow, int toRow, int fromComponent, int toComponent) {
+    switch (m_Kernel) {
+      case KERNEL_COLUMNS:
+        multiplyColumns(data, result, fromRow, toRow, fromComponent, toComponent);
+        break;
+      case KERNEL_UNROLLED:
+        multiplyUnrolled(data, result, fromRow, toRow, fromComponent, toComponent);
+        break;
+      default:
+        multiplyRows(data, result, fromRow, toRow, fromComponent, toComponent);
+    }
+  }
+
+  /**
+   * Multiplies a block of the data with a range of columns of the loadings,
+   * iterating over the rows of the loadings.
+   *
+   * @param data	the data to multiply
+   * @param result	the buffer for the components
+   * @param fromRow	the first value of the data (incl)
+   * @param toRow	the last value of the data (excl)
+   * @param fromComponent	the first component (incl)
+   * @param toComponent	the last component (excl)
+   */
+  protected void multiplyRows(double[] data, double[] result, int fromRow, int toRow, int fromComponent, int toComponent) {
+    for (int i = fromComponent; i < toComponent; i++)
       result[i] = 0.0;
-      for (int j = 0; j < data.length; j++) {
-        result[i] += data[j] * m_W[j][i];
+
+    for (int j = fromRow; j < toRow; j++) {
+      double value = data[j];
+      double[] loadings = m_W[j];
+      for (int i = fromComponent; i < toComponent; i++) {
+        result[i] += value * loadings[i];
       }
     }
+  }
 
-    return result;
+  /**
+   * Multiplies a block of the data with a range of columns of the loadings,
+   * computing one dot product per component. Sums in the same order as
+   * {@link #multiplyRows}, so the results are identical.
+   *
+   * @param data	the data to multiply
+   * @param result	the buffer for the components
+   * @param fromRow	the first value of the data (incl)
+   * @param toRow	the last value of the data (excl)
+   * @param fromComponent	the first component (incl)
+   * @param toComponent	the last component (excl)
+   */
+  protected void multiplyColumns(double[] data, double[] result, int fromRow, int toRow, int fromComponent, int toComponent) {
+    for (int i = fromComponent; i < toComponent; i++) {
+      double sum = 0.0;
+      for (int j = fromRow; j < toRow; j++)
+        sum += data[j] * m_W[j][i];
+      result[i] = sum;
+    }
+  }
+
+  /**
+   * Multiplies a block of the data with a range of columns of the loadings,
+   * iterating over the rows of the loadings and updating four components
+   * at a time. Sums in the same order as {@link #multiplyRows}, so the
+   * results are identical.
+   *
+   * @param data	the data to multiply
+   * @param result	the buffer for the components
+   * @param fromRow	the first value of the data (incl)
+   * @param toRow	the last value of the data (excl)
+   * @param fromComponent	the first component (incl)
+   * @param toComponent	the last component (excl)
+   */
+  protected void multiplyUnrolled(double[] data, double[] result, int fromRow, int toRow, int fromComponent, int toComponent) {
+    int i = fromComponent;
+    for (; i + 3 < toComponent; i += 4) {
+      double sum0 = 0.0;
+      double sum1 = 0.0;
+      double sum2 = 0.0;
+      double sum3 = 0.0;
+      for (int j = fromRow; j < toRow; j++) {
+        double value = data[j];
+        double[] loadings = m_W[j];
+        sum0 += value * loadings[i];
+        sum1 += value * loadings[i + 1];
+        sum2 += value * loadings[i + 2];
+        sum3 += value * loadings[i + 3];
+      }
+      result[i] = sum0;
+      result[i + 1] = sum1;
+      result[i + 2] = sum2;
+      result[i + 3] = sum3;
+    }
+    if (i < toComponent)
+      multiplyRows(data, result, fromRow, toRow, i, toComponent);
+  }
+
+  /**
+   * Returns the names of the available kernels, the first being the
+   * default.
+   *
+   * @return		the names
+   */
+  @Override
+  public String[] getKernels() {
+    return KERNELS.clone();
+  }
+
+  /**
+   * Sets the kernel to use for the array paths.
+   *
+   * @param name	the name of the kernel
+   * @throws IllegalArgumentException	if the kernel is not available
+   */
+  @Override
+  public void setKernel(String name) {
+    for (String kernel : KERNELS) {
+      if (kernel.equals(name)) {
+        m_Kernel = kernel;
+        return;
+      }
+    }
+    throw new IllegalArgumentException("Unknown kernel: " + name);
+  }
+
+  /**
+   * Returns the kernel in use.
+   *
+   * @return		the name of the kernel
+   */
+  @Override
+  public String getKernel() {
+    return m_Kernel;
+  }
+
+  /**
+   * Returns a view of the algorithm that only computes the leading
+   * components. The view shares the loadings, nothing gets copied.
+   *
+   * @param numComponents	the number of leading components
+   * @return			the view
+   */
+  public SIMPLS truncate(int numComponents) {
+    return new SIMPLS(this, numComponents);
+  }
+
+  /**
+   * Returns the number of components that get computed.
+   *
+   * @return		the number of components
+   */
+  public int getNumComponents() {
+    return m_NumComponents;
+  }
+
+  /**
+   * Makes sure that the number of components is valid for the loadings.
+   *
+   * @param numComponents	the number of components to check
+   * @return			the number of components
+   * @throws IllegalArgumentException	if invalid
+   */
+  protected int checkNumComponents(int numComponents) {
+    if ((numComponents < 1) || (numComponents > m_W[0].length))
+      throw new IllegalArgumentException("Number of components must be between 1 and " + m_W[0].length + ", provided: " + numComponents);
+
+    return numComponents;
+  }
+
+  /**
+   * Returns the bytes retained by the state, skipping objects that were
+   * counted already.
+   *
+   * @param seen	the objects counted already
+   * @return		the bytes
+   */
+  @Override
+  protected long retainedBytes(Set<Object> seen) {
+    long result = super.retainedBytes(seen);
+    if (result == 0)
+      return 0;
+
+    return result + Integer.BYTES + MemoryFootprint.retained(m_W, seen);
+  }
+
+  /**
+   * Returns whether the other algorithm has the same state as this one,
+   * i.e., always produces the same output for the same input.
+   *
+   * @param other	the algorithm to compare with
+   * @return		true if the same state
+   */
+  @Override
+  public boolean hasSameState(AbstractAlgorithm other) {
+    if (this == other)
+      return true;
+    if (!(other instanceof SIMPLS))
+      return false;
+    SIMPLS simpls = (SIMPLS) other;
+    return (m_NumComponents == simpls.m_NumComponents)
+      && ((m_W == simpls.m_W) || Arrays.deepEquals(m_W, simpls.m_W));
+  }
+
+  /**
+   * Returns whether the algorithm can be applied to the data, without
+   * throwing an exception.
+   *
+   * @param data	the data to check
+   * @return		true if applicable
+   */
+  @Override
+  public boolean isApplicable(double[] data) {
+    return (data != null) && (data.length == m_W.length);
+  }
+
+  /**
+   * Returns the input width the algorithm requires.
+   *
+   * @return		the number of rows of the loadings
+   */
+  @Override
+  public int getInputWidth() {
+    return m_W.length;
+  }
+
+  /**
+   * Returns the input width that generates the given output width.
+   *
+   * @param outputWidth	the width of the output
+   * @return		the number of rows of the loadings
+   */
+  @Override
+  public int getInputWidth(int outputWidth) {
+    return m_W.length;
+  }
+
+  /**
+   * Returns the width of the output for the given input width.
+   *
+   * @param inputWidth	the width of the input
+   * @return		the width of the output
+   */
+  @Override
+  public int getOutputWidth(int inputWidth) {
+    return m_NumComponents;
   }
-}
\ No newline at end of file
+}
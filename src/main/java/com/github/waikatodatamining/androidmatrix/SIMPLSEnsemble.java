@@ -0,0 +1,274 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * SIMPLSEnsemble.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.waikatodatamining.androidmatrix;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Applies several models to the same input. Models that end in
+ * {@link SIMPLS} and whose preceding stages have identical state (see
+ * {@link AbstractAlgorithm#hasSameState(AbstractAlgorithm)}) get stacked:
+ * the shared preprocessing runs once and their loadings get concatenated
+ * column-wise into one wider matrix, so that a single pass over the
+ * preprocessed input computes the scores of all of them. Other models,
+ * including SIMPLS models that have nothing to stack with, get applied
+ * individually.
+ * <br>
+ * The stacked loadings are a copy, the ensemble does not keep the SIMPLS
+ * stages of stacked models. The scores are identical to applying the models
+ * one by one.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class SIMPLSEnsemble
+  implements Algorithm {
+
+  /**
+   * Models that get computed in a single pass.
+   */
+  protected static class Group {
+
+    /** the stages to apply before the stacked SIMPLS (or the whole model). */
+    protected final PreprocessingStages m_Upstream;
+
+    /** the stacked SIMPLS, null if the model gets applied individually. */
+    protected final SIMPLS m_Stacked;
+
+    /** the indices of the models. */
+    protected final int[] m_Models;
+
+    /** the offsets of the models' scores in the stacked output (plus total). */
+    protected final int[] m_Offsets;
+
+    /**
+     * Initializes the group.
+     *
+     * @param upstream	the stages to apply before the stacked SIMPLS
+     * @param stacked	the stacked SIMPLS, null if applied individually
+     * @param models	the indices of the models
+     * @param offsets	the offsets of the models' scores
+     */
+    protected Group(PreprocessingStages upstream, SIMPLS stacked, int[] models, int[] offsets) {
+      m_Upstream = upstream;
+      m_Stacked  = stacked;
+      m_Models   = models;
+      m_Offsets  = offsets;
+    }
+  }
+
+  /** the number of models. */
+  protected final int m_NumModels;
+
+  /** the groups of models. */
+  protected final Group[] m_Groups;
+
+  /**
+   * Initializes the ensemble.
+   *
+   * @param models	the models to apply
+   */
+  public SIMPLSEnsemble(PreprocessingStages... models) {
+    if (models.length == 0)
+      throw new IllegalArgumentException("No models provided");
+
+    m_NumModels = models.length;
+    m_Groups    = group(models);
+  }
+
+  /**
+   * Groups the models that can be stacked.
+   *
+   * @param models	the models
+   * @return		the groups
+   */
+  protected static Group[] group(PreprocessingStages[] models) {
+    List<Group> result = new ArrayList<>();
+    boolean[] grouped = new boolean[models.length];
+
+    for (int i = 0; i < models.length; i++) {
+      if (grouped[i])
+        continue;
+
+      // Models not ending in SIMPLS get applied individually
+      if (!endsInSIMPLS(models[i])) {
+        result.add(new Group(models[i], null, new int[]{i}, null));
+        continue;
+      }
+
+      // Collect the later models with the same upstream stages
+      List<Integer> members = new ArrayList<>();
+      members.add(i);
+      for (int j = i + 1; j < models.length; j++) {
+        if (!grouped[j] && endsInSIMPLS(models[j]) && haveSameUpstream(models[i], models[j])) {
+          members.add(j);
+          grouped[j] = true;
+        }
+      }
+
+      // Nothing to stack with, avoid copying the loadings
+      if (members.size() == 1) {
+        result.add(new Group(models[i], null, new int[]{i}, null));
+        continue;
+      }
+
+      // Stack the loadings
+      int[] indices = new int[members.size()];
+      int[] offsets = new int[indices.length + 1];
+      SIMPLS[] simpls = new SIMPLS[indices.length];
+      for (int n = 0; n < indices.length; n++) {
+        indices[n] = members.get(n);
+        AbstractAlgorithm[] stages = models[indices[n]].m_Stages;
+        simpls[n] = (SIMPLS) stages[stages.length - 1];
+        offsets[n + 1] = offsets[n] + simpls[n].getNumComponents();
+      }
+      double[][] loadings = new double[simpls[0].m_W.length][offsets[indices.length]];
+      for (int r = 0; r < loadings.length; r++) {
+        for (int n = 0; n < indices.length; n++)
+          System.arraycopy(simpls[n].m_W[r], 0, loadings[r], offsets[n], simpls[n].getNumComponents());
+      }
+
+      AbstractAlgorithm[] stages = models[i].m_Stages;
+      PreprocessingStages upstream = new PreprocessingStages(Arrays.copyOf(stages, stages.length - 1));
+      result.add(new Group(upstream, new SIMPLS(loadings), indices, offsets));
+    }
+
+    return result.toArray(new Group[0]);
+  }
+
+  /**
+   * Returns whether the last stage of the model is SIMPLS.
+   *
+   * @param model	the model to check
+   * @return		true if ending in SIMPLS
+   */
+  protected static boolean endsInSIMPLS(PreprocessingStages model) {
+    AbstractAlgorithm[] stages = model.m_Stages;
+    return (stages.length > 0) && (stages[stages.length - 1] instanceof SIMPLS);
+  }
+
+  /**
+   * Returns whether the stages before the final SIMPLS have identical
+   * state and the SIMPLS stages have the same input width.
+   *
+   * @param first	the first model
+   * @param second	the second model
+   * @return		true if they can be stacked
+   */
+  protected static boolean haveSameUpstream(PreprocessingStages first, PreprocessingStages second) {
+    AbstractAlgorithm[] firstStages = first.m_Stages;
+    AbstractAlgorithm[] secondStages = second.m_Stages;
+    if (firstStages.length != secondStages.length)
+      return false;
+
+    int last = firstStages.length - 1;
+    for (int i = 0; i < last; i++) {
+      if (!firstStages[i].hasSameState(secondStages[i]))
+        return false;
+    }
+
+    return (((SIMPLS) firstStages[last]).m_W.length == ((SIMPLS) secondStages[last]).m_W.length);
+  }
+
+  /**
+   * Returns the number of models.
+   *
+   * @return		the number of models
+   */
+  public int getNumModels() {
+    return m_NumModels;
+  }
+
+  /**
+   * Returns the number of passes over the input, i.e., the number of
+   * stacked groups plus the number of individually applied models.
+   *
+   * @return		the number of passes
+   */
+  public int getNumPasses() {
+    return m_Groups.length;
+  }
+
+  /**
+   * Sets how to split expensive calls of the stages across cores.
+   *
+   * @param value	the execution, null to compute sequentially
+   */
+  public void setParallelExecution(ParallelExecution value) {
+    for (Group group : m_Groups) {
+      group.m_Upstream.setParallelExecution(value);
+      if (group.m_Stacked != null)
+        group.m_Stacked.setParallelExecution(value);
+    }
+  }
+
+  /**
+   * Applies all models to the data.
+   *
+   * @param data	the data to convert
+   * @return		the outputs, in the order of the models
+   * @throws Exception	if conversion fails
+   */
+  public double[][] applyModels(double[] data) throws Exception {
+    double[][] result = new double[m_NumModels][];
+
+    for (Group group : m_Groups) {
+      double[] output = group.m_Upstream.apply(data);
+      if (group.m_Stacked == null) {
+        result[group.m_Models[0]] = output;
+        continue;
+      }
+
+      // Split the stacked scores per model
+      double[] scores = group.m_Stacked.apply(output);
+      for (int n = 0; n < group.m_Models.length; n++)
+        result[group.m_Models[n]] = Arrays.copyOfRange(scores, group.m_Offsets[n], group.m_Offsets[n + 1]);
+    }
+
+    return result;
+  }
+
+  /**
+   * Applies all models to the data and concatenates the outputs in the
+   * order of the models.
+   *
+   * @param data	the data to convert
+   * @return		the concatenated outputs
+   * @throws Exception	if conversion fails
+   */
+  @Override
+  public double[] apply(double[] data) throws Exception {
+    double[][] outputs = applyModels(data);
+    int length = 0;
+    for (double[] output : outputs)
+      length += output.length;
+
+    double[] result = new double[length];
+    int offset = 0;
+    for (double[] output : outputs) {
+      System.arraycopy(output, 0, result, offset, output.length);
+      offset += output.length;
+    }
+
+    return result;
+  }
+}
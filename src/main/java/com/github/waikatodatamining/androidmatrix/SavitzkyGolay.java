@@ -22,6 +22,9 @@ package com.github.waikatodatamining.androidmatrix;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+import java.util.Set;
 
 /**
  * Implementation of the Savitzky-Golay algorithm.
@@ -29,11 +32,24 @@ import java.io.InputStream;
  * @author Corey Sterling (csterlin at waikato dot ac dot nz)
  */
 public class SavitzkyGolay
-  extends AbstractAlgorithm {
+  extends AbstractAlgorithm
+  implements TunableAlgorithm {
+
+  /** kernel computing one output at a time (default). */
+  public static final String KERNEL_DIRECT = "direct";
+
+  /** kernel computing four outputs at a time, sharing the loaded inputs. */
+  public static final String KERNEL_UNROLLED = "unrolled";
+
+  /** the available kernels. */
+  protected static final String[] KERNELS = {KERNEL_DIRECT, KERNEL_UNROLLED};
 
   // The coefficients.
   protected double[] m_Coefficients;
 
+  // The kernel to use.
+  protected String m_Kernel = KERNEL_DIRECT;
+
   /**
    * Initializes the algorithm.
    *
@@ -76,14 +92,232 @@ public class SavitzkyGolay
     // Create a buffer for the results
     double[] result = new double[numOutputColumns];
 
+    // Perform the sliding-window convolution
+    applyInto(data, result);
+
+    return result;
+  }
+
+  /**
+   * Applies the algorithm to the data, writing the output into the provided
+   * buffer. Performs no size checks.
+   *
+   * @param data	the data to convert
+   * @param result	the buffer for the converted data
+   */
+  @Override
+  protected void applyInto(double[] data, double[] result) {
+    // Split wide spectra into output ranges, each reading its window halo
+    ParallelExecution parallel = m_ParallelExecution;
+    if (parallel != null) {
+      int numRanges = parallel.numRanges((long) result.length * m_Coefficients.length, result.length);
+      if (numRanges > 1) {
+        parallel.run(result.length, numRanges, (index, from, to) -> convolve(data, result, from, to));
+        return;
+      }
+    }
+
+    convolve(data, result, 0, result.length);
+  }
+
+  /**
+   * Performs the sliding-window convolution for a range of the output.
+   * Output i reads the inputs i to i + window - 1.
+   *
+   * @param data	the data to convert
+   * @param result	the buffer for the converted data
+   * @param from	the first output column (incl)
+   * @param to		the last output column (excl)
+   */
+  protected void convolve(double[] data, double[] result, int from, int to) {
+    if (m_Kernel.equals(KERNEL_UNROLLED))
+      convolveUnrolled(data, result, from, to);
+    else
+      convolveDirect(data, result, from, to);
+  }
+
+  /**
+   * Performs the sliding-window convolution for a range of the output, one
+   * output at a time.
+   *
+   * @param data	the data to convert
+   * @param result	the buffer for the converted data
+   * @param from	the first output column (incl)
+   * @param to		the last output column (excl)
+   */
+  protected void convolveDirect(double[] data, double[] result, int from, int to) {
+    // Calculate the size of the sliding window
+    int windowWidth = m_Coefficients.length;
+
+    // Perform the sliding-window convolution
+    for (int i = from; i < to; i++) {
+      double sum = 0.0;
+      for (int c = 0; c < windowWidth; c++) {
+        sum += m_Coefficients[c] * data[i + c];
+      }
+      result[i] = sum;
+    }
+  }
+
+  /**
+   * Performs the sliding-window convolution for a range of the output, four
+   * outputs at a time, so that each loaded input gets used for several
+   * outputs. Sums in the same order as {@link #convolveDirect}, so the
+   * results are identical.
+   *
+   * @param data	the data to convert
+   * @param result	the buffer for the converted data
+   * @param from	the first output column (incl)
+   * @param to		the last output column (excl)
+   */
+  protected void convolveUnrolled(double[] data, double[] result, int from, int to) {
+    int windowWidth = m_Coefficients.length;
+    int i = from;
+    for (; i + 3 < to; i += 4) {
+      double sum0 = 0.0;
+      double sum1 = 0.0;
+      double sum2 = 0.0;
+      double sum3 = 0.0;
+      for (int c = 0; c < windowWidth; c++) {
+        double coefficient = m_Coefficients[c];
+        sum0 += coefficient * data[i + c];
+        sum1 += coefficient * data[i + c + 1];
+        sum2 += coefficient * data[i + c + 2];
+        sum3 += coefficient * data[i + c + 3];
+      }
+      result[i] = sum0;
+      result[i + 1] = sum1;
+      result[i + 2] = sum2;
+      result[i + 3] = sum3;
+    }
+    convolveDirect(data, result, i, to);
+  }
+
+  /**
+   * Returns the names of the available kernels, the first being the
+   * default.
+   *
+   * @return		the names
+   */
+  @Override
+  public String[] getKernels() {
+    return KERNELS.clone();
+  }
+
+  /**
+   * Sets the kernel to use for the array paths.
+   *
+   * @param name	the name of the kernel
+   * @throws IllegalArgumentException	if the kernel is not available
+   */
+  @Override
+  public void setKernel(String name) {
+    for (String kernel : KERNELS) {
+      if (kernel.equals(name)) {
+        m_Kernel = kernel;
+        return;
+      }
+    }
+    throw new IllegalArgumentException("Unknown kernel: " + name);
+  }
+
+  /**
+   * Returns the kernel in use.
+   *
+   * @return		the name of the kernel
+   */
+  @Override
+  public String getKernel() {
+    return m_Kernel;
+  }
+
+  /**
+   * Applies the algorithm to the data buffer, writing the output into the
+   * result buffer. Performs no size checks.
+   *
+   * @param data	the data to convert
+   * @param result	the buffer for the converted data
+   */
+  @Override
+  protected void applyInto(DoubleBuffer data, DoubleBuffer result) {
+    int dataOffset = data.position();
+    int resultOffset = result.position();
+    int windowWidth = m_Coefficients.length;
+    int numOutputColumns = data.remaining() - windowWidth + 1;
+
     // Perform the sliding-window convolution
     for (int i = 0; i < numOutputColumns; i++) {
-      result[i] = 0.0;
+      double sum = 0.0;
       for (int c = 0; c < windowWidth; c++) {
-        result[i] += m_Coefficients[c] * data[i + c];
+        sum += m_Coefficients[c] * data.get(dataOffset + i + c);
       }
+      result.put(resultOffset + i, sum);
     }
+  }
 
-    return result;
+  /**
+   * Returns the bytes retained by the state, skipping objects that were
+   * counted already.
+   *
+   * @param seen	the objects counted already
+   * @return		the bytes
+   */
+  @Override
+  protected long retainedBytes(Set<Object> seen) {
+    long result = super.retainedBytes(seen);
+    if (result == 0)
+      return 0;
+
+    return result + MemoryFootprint.retained(m_Coefficients, seen);
+  }
+
+  /**
+   * Returns whether the other algorithm has the same state as this one,
+   * i.e., always produces the same output for the same input.
+   *
+   * @param other	the algorithm to compare with
+   * @return		true if the same state
+   */
+  @Override
+  public boolean hasSameState(AbstractAlgorithm other) {
+    if (this == other)
+      return true;
+    if (!(other instanceof SavitzkyGolay))
+      return false;
+    return Arrays.equals(m_Coefficients, ((SavitzkyGolay) other).m_Coefficients);
+  }
+
+  /**
+   * Returns whether the algorithm can be applied to the data, without
+   * throwing an exception.
+   *
+   * @param data	the data to check
+   * @return		true if applicable
+   */
+  @Override
+  public boolean isApplicable(double[] data) {
+    return (data != null) && (data.length >= m_Coefficients.length);
+  }
+
+  /**
+   * Returns the input width that generates the given output width.
+   *
+   * @param outputWidth	the width of the output
+   * @return		the width of the input
+   */
+  @Override
+  public int getInputWidth(int outputWidth) {
+    return outputWidth + m_Coefficients.length - 1;
+  }
+
+  /**
+   * Returns the width of the output for the given input width.
+   *
+   * @param inputWidth	the width of the input
+   * @return		the width of the output
+   */
+  @Override
+  public int getOutputWidth(int inputWidth) {
+    return Math.max(0, inputWidth - m_Coefficients.length + 1);
   }
 }
@@ -0,0 +1,452 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * ShardedBatchRunner.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.waikatodatamining.androidmatrix;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Scores a matrix file with several local worker processes, for offline
+ * jobs that are limited by the heap or garbage collection of a single JVM.
+ * The coordinator creates the output file (see
+ * {@link BulkScorer#prepare(File, int, int)}), projecting the output width
+ * from the dimensions of the serialised matrices rather than deserialising
+ * the model, and splits the rows into contiguous shards. Each shard gets
+ * scored by a separate JVM running {@link BulkScorer} on its range of rows,
+ * memory-mapping the input read-only and its slice of the shared output
+ * file read-write. Shards whose process fails get restarted, up to the
+ * maximum number of attempts.
+ * <br>
+ * The output of the workers and the failed attempts get written to a log
+ * file per shard next to the output file (see {@link #logFile(Shard,
+ * File)}), which gets removed once the shard succeeded.
+ * <br>
+ * The serialised model gets read through the shared OS page cache, but
+ * every worker deserialises its own copy onto its heap, as the algorithms
+ * keep their state in Java arrays.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class ShardedBatchRunner {
+
+  /** the default maximum number of attempts per shard. */
+  public static final int DEFAULT_MAX_ATTEMPTS = 3;
+
+  /**
+   * A range of rows scored by one worker process.
+   */
+  public static class Shard {
+
+    /** the index of the shard. */
+    protected final int m_Index;
+
+    /** the first row (incl). */
+    protected final long m_StartRow;
+
+    /** the last row (excl). */
+    protected final long m_EndRow;
+
+    /**
+     * Initializes the shard.
+     *
+     * @param index	the index of the shard
+     * @param startRow	the first row (incl)
+     * @param endRow	the last row (excl)
+     */
+    public Shard(int index, long startRow, long endRow) {
+      m_Index    = index;
+      m_StartRow = startRow;
+      m_EndRow   = endRow;
+    }
+
+    /**
+     * Returns the index of the shard.
+     *
+     * @return		the index
+     */
+    public int getIndex() {
+      return m_Index;
+    }
+
+    /**
+     * Returns the first row.
+     *
+     * @return		the row (incl)
+     */
+    public long getStartRow() {
+      return m_StartRow;
+    }
+
+    /**
+     * Returns the last row.
+     *
+     * @return		the row (excl)
+     */
+    public long getEndRow() {
+      return m_EndRow;
+    }
+
+    /**
+     * Returns a short description of the shard.
+     *
+     * @return		the description
+     */
+    @Override
+    public String toString() {
+      return "shard " + m_Index + " (rows " + m_StartRow + "-" + m_EndRow + ")";
+    }
+  }
+
+  /** the serialised model. */
+  protected final File m_Model;
+
+  /** whether the model is a preprocessing map. */
+  protected final boolean m_Map;
+
+  /** the number of worker processes. */
+  protected final int m_NumWorkers;
+
+  /** the maximum number of attempts per shard. */
+  protected int m_MaxAttempts;
+
+  /** the maximum number of bytes each worker maps per chunk. */
+  protected int m_ChunkBytes;
+
+  /** the additional JVM options for the workers (e.g., -Xmx). */
+  protected List<String> m_JvmOptions;
+
+  /**
+   * Initializes the runner.
+   *
+   * @param model	the serialised model
+   * @param map		whether the model is a preprocessing map (otherwise stages)
+   * @param numWorkers	the number of worker processes
+   */
+  public ShardedBatchRunner(File model, boolean map, int numWorkers) {
+    if (numWorkers < 1)
+      throw new IllegalArgumentException("Number of workers must be at least 1, provided: " + numWorkers);
+    m_Model       = model;
+    m_Map         = map;
+    m_NumWorkers  = numWorkers;
+    m_MaxAttempts = DEFAULT_MAX_ATTEMPTS;
+    m_ChunkBytes  = BulkScorer.DEFAULT_CHUNK_BYTES;
+    m_JvmOptions  = new ArrayList<>();
+  }
+
+  /**
+   * Sets the maximum number of attempts per shard.
+   *
+   * @param value	the number of attempts
+   */
+  public void setMaxAttempts(int value) {
+    if (value < 1)
+      throw new IllegalArgumentException("Number of attempts must be at least 1, provided: " + value);
+    m_MaxAttempts = value;
+  }
+
+  /**
+   * Returns the maximum number of attempts per shard.
+   *
+   * @return		the number of attempts
+   */
+  public int getMaxAttempts() {
+    return m_MaxAttempts;
+  }
+
+  /**
+   * Sets the maximum number of bytes each worker maps per chunk.
+   *
+   * @param value	the number of bytes
+   */
+  public void setChunkBytes(int value) {
+    if (value < 1)
+      throw new IllegalArgumentException("Chunk size must be at least 1 byte, provided: " + value);
+    m_ChunkBytes = value;
+  }
+
+  /**
+   * Returns the maximum number of bytes each worker maps per chunk.
+   *
+   * @return		the number of bytes
+   */
+  public int getChunkBytes() {
+    return m_ChunkBytes;
+  }
+
+  /**
+   * Sets the additional JVM options for the workers.
+   *
+   * @param value	the options (e.g., -Xmx512m)
+   */
+  public void setJvmOptions(List<String> value) {
+    m_JvmOptions = new ArrayList<>(value);
+  }
+
+  /**
+   * Returns the additional JVM options for the workers.
+   *
+   * @return		the options
+   */
+  public List<String> getJvmOptions() {
+    return new ArrayList<>(m_JvmOptions);
+  }
+
+  /**
+   * Returns the output width of the model for the input width. The width
+   * gets projected from the dimensions of the serialised matrices (see
+   * {@link ModelLoader#projectStagesOutputWidth(byte[], int)}). Only models
+   * with stages of unknown layout get deserialised, and discarded right
+   * away.
+   *
+   * @param inputWidth	the width of the input rows
+   * @return		the width of the output rows
+   * @throws IOException	if reading the model fails
+   */
+  protected int outputWidth(int inputWidth) throws IOException {
+    byte[] data = Files.readAllBytes(m_Model.toPath());
+    int result;
+    if (m_Map)
+      result = ModelLoader.projectMapOutputWidth(data, inputWidth);
+    else
+      result = ModelLoader.projectStagesOutputWidth(data, inputWidth);
+    if (result != -1)
+      return result;
+
+    try (InputStream stream = new FileInputStream(m_Model)) {
+      if (!m_Map)
+        return new PreprocessingStages(stream).getOutputWidth(inputWidth);
+      result = 0;
+      for (PreprocessingStages stages : new PreprocessingMap(stream).m_OrderedStages)
+        result += stages.getOutputWidth(inputWidth);
+      return result;
+    }
+  }
+
+  /**
+   * Splits the rows into one contiguous shard per worker.
+   *
+   * @param numRows	the number of rows
+   * @return		the shards
+   */
+  protected List<Shard> split(long numRows) {
+    List<Shard> result = new ArrayList<>();
+    int numShards = (int) Math.max(1, Math.min(m_NumWorkers, numRows));
+    for (int i = 0; i < numShards; i++)
+      result.add(new Shard(i, numRows * i / numShards, numRows * (i + 1) / numShards));
+
+    return result;
+  }
+
+  /**
+   * Returns the command line for scoring the shard in a worker process.
+   *
+   * @param shard	the shard to score
+   * @param input	the input matrix file
+   * @param output	the prepared output matrix file
+   * @return		the command line
+   */
+  protected List<String> command(Shard shard, File input, File output) {
+    List<String> result = new ArrayList<>();
+    result.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+    result.addAll(m_JvmOptions);
+    result.add("-cp");
+    result.add(System.getProperty("java.class.path"));
+    result.add(BulkScorer.class.getName());
+    if (m_Map)
+      result.add("-map");
+    result.add("-chunk");
+    result.add("" + m_ChunkBytes);
+    result.add("-rows");
+    result.add("" + shard.getStartRow());
+    result.add("" + shard.getEndRow());
+    result.add(m_Model.getAbsolutePath());
+    result.add(input.getAbsolutePath());
+    result.add(output.getAbsolutePath());
+
+    return result;
+  }
+
+  /**
+   * Returns the log file for the output of the shard's worker processes.
+   *
+   * @param shard	the shard
+   * @param output	the output matrix file
+   * @return		the log file
+   */
+  protected File logFile(Shard shard, File output) {
+    return new File(output.getPath() + ".shard" + shard.getIndex() + ".log");
+  }
+
+  /**
+   * Scores the shard in a worker process, restarting the process if it
+   * fails. The output of the worker processes gets appended to the shard's
+   * log file, which gets kept only if all attempts failed.
+   *
+   * @param shard	the shard to score
+   * @param input	the input matrix file
+   * @param output	the prepared output matrix file
+   * @throws Exception	if all attempts failed
+   */
+  protected void run(Shard shard, File input, File output) throws Exception {
+    File log = logFile(shard, output);
+    Files.deleteIfExists(log.toPath());
+
+    int exitCode = -1;
+    for (int attempt = 0; attempt < m_MaxAttempts; attempt++) {
+      Process process = new ProcessBuilder(command(shard, input, output))
+        .redirectErrorStream(true)
+        .redirectOutput(ProcessBuilder.Redirect.appendTo(log))
+        .start();
+      try {
+        exitCode = process.waitFor();
+      }
+      catch (InterruptedException e) {
+        process.destroyForcibly();
+        throw e;
+      }
+      if (exitCode == 0) {
+        Files.deleteIfExists(log.toPath());
+        return;
+      }
+      try (PrintWriter writer = new PrintWriter(new FileWriter(log, true))) {
+        writer.println("Worker for " + shard + " failed with exit code " + exitCode + " (attempt " + (attempt + 1) + "/" + m_MaxAttempts + ")");
+      }
+    }
+
+    throw new IOException("Failed to score " + shard + " after " + m_MaxAttempts + " attempts, last exit code: " + exitCode + ", see log: " + log);
+  }
+
+  /**
+   * Scores all the rows of the input file with the worker processes and
+   * writes the results to the output file.
+   *
+   * @param input	the input matrix file
+   * @param output	the output matrix file to create
+   * @return		the statistics
+   * @throws Exception	if preparing the output fails or a shard failed
+   */
+  public BulkScorer.Result run(File input, File output) throws Exception {
+    long start = System.nanoTime();
+
+    // Create the output file, without deserialising the model
+    int numRows;
+    int numColumns;
+    try (FileInputStream stream = new FileInputStream(input)) {
+      int[] dimensions = BulkScorer.readInputHeader(stream.getChannel(), input);
+      numRows = dimensions[0];
+      numColumns = dimensions[1];
+    }
+    BulkScorer.prepare(output, numRows, (numRows == 0) ? 0 : outputWidth(numColumns));
+
+    // Score the shards, one worker process each
+    List<Shard> shards = split(numRows);
+    ExecutorService executor = Executors.newFixedThreadPool(shards.size());
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (Shard shard : shards) {
+        futures.add(executor.submit(() -> {
+          run(shard, input, output);
+          return null;
+        }));
+      }
+      for (Future<?> future : futures) {
+        try {
+          future.get();
+        }
+        catch (ExecutionException e) {
+          if (e.getCause() instanceof Exception)
+            throw (Exception) e.getCause();
+          throw e;
+        }
+      }
+    }
+    finally {
+      executor.shutdownNow();
+    }
+
+    return new BulkScorer.Result(numRows, System.nanoTime() - start);
+  }
+
+  /**
+   * Scores a matrix file with several worker processes from the
+   * command-line.
+   * <br>
+   * Usage: ShardedBatchRunner [-map] [-workers n] [-attempts n] [-chunk bytes] [-J jvm-option]... model input output
+   *
+   * @param args	the command-line arguments
+   * @throws Exception	if scoring fails
+   */
+  public static void main(String[] args) throws Exception {
+    boolean map = false;
+    int numWorkers = Runtime.getRuntime().availableProcessors();
+    int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+    int chunkBytes = BulkScorer.DEFAULT_CHUNK_BYTES;
+    List<String> jvmOptions = new ArrayList<>();
+    int index = 0;
+
+    // Parse the options
+    while ((index < args.length) && args[index].startsWith("-")) {
+      if (args[index].equals("-map")) {
+        map = true;
+      }
+      else if (args[index].equals("-workers") && (index + 1 < args.length)) {
+        numWorkers = Integer.parseInt(args[++index]);
+      }
+      else if (args[index].equals("-attempts") && (index + 1 < args.length)) {
+        maxAttempts = Integer.parseInt(args[++index]);
+      }
+      else if (args[index].equals("-chunk") && (index + 1 < args.length)) {
+        chunkBytes = Integer.parseInt(args[++index]);
+      }
+      else if (args[index].equals("-J") && (index + 1 < args.length)) {
+        jvmOptions.add(args[++index]);
+      }
+      else {
+        System.err.println("Unknown option: " + args[index]);
+        System.exit(1);
+      }
+      index++;
+    }
+    if (args.length - index != 3) {
+      System.err.println("Usage: " + ShardedBatchRunner.class.getName() + " [-map] [-workers n] [-attempts n] [-chunk bytes] [-J jvm-option]... model input output");
+      System.exit(1);
+    }
+
+    // Score
+    ShardedBatchRunner runner = new ShardedBatchRunner(new File(args[index]), map, numWorkers);
+    runner.setMaxAttempts(maxAttempts);
+    runner.setChunkBytes(chunkBytes);
+    runner.setJvmOptions(jvmOptions);
+    BulkScorer.Result result = runner.run(new File(args[index + 1]), new File(args[index + 2]));
+    System.out.println(result);
+  }
+}
@@ -22,6 +22,10 @@ package com.github.waikatodatamining.androidmatrix;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.Set;
 
 /**
  * Standardizes the attributes of the data to mean 0 and standard
@@ -31,7 +35,7 @@ import java.io.InputStream;
  */
 public class Standardize
   extends AbstractAlgorithm
-  implements InvertibleAlgorithm {
+  implements InvertibleAlgorithm, ColumnarAlgorithm {
 
   /** The means of the columns to standardize to. */
   protected double[] m_ColumnMeans;
@@ -84,8 +88,66 @@ public class Standardize
 
     // Generate the result data
     double[] result = new double[data.length];
+    applyInto(data, result);
+
+    return result;
+  }
+
+  /**
+   * Applies the algorithm to the data, writing the output into the provided
+   * buffer. Performs no size checks.
+   *
+   * @param data	the data to convert
+   * @param result	the buffer for the converted data
+   */
+  @Override
+  protected void applyInto(double[] data, double[] result) {
     for (int i = 0; i < data.length; i++)
       result[i] = (data[i] - m_ColumnMeans[i]) / m_ColumnStdDevs[i];
+  }
+
+  /**
+   * Applies the algorithm to the data buffer, writing the output into the
+   * result buffer. Performs no size checks.
+   *
+   * @param data	the data to convert
+   * @param result	the buffer for the converted data
+   */
+  @Override
+  protected void applyInto(DoubleBuffer data, DoubleBuffer result) {
+    int dataOffset = data.position();
+    int resultOffset = result.position();
+    for (int i = 0; i < m_ColumnMeans.length; i++)
+      result.put(resultOffset + i, (data.get(dataOffset + i) - m_ColumnMeans[i]) / m_ColumnStdDevs[i]);
+  }
+
+  /**
+   * Applies the algorithm to the batch. The column parameters are
+   * constant for the inner loop across the rows.
+   *
+   * @param batch	the batch to convert
+   * @return		the converted batch
+   * @throws Exception	if conversion fails
+   */
+  @Override
+  public ColumnarBatch applyColumnar(ColumnarBatch batch) throws Exception {
+    // Check the data
+    if (batch.getNumColumns() != m_ColumnMeans.length)
+      throw new RuntimeException("Data size doesn't match state size " +
+            "(" + batch.getNumColumns() + " columns for " +
+            m_ColumnMeans.length + " state columns)");
+
+    // Generate the result data
+    int numRows = batch.getNumRows();
+    ColumnarBatch result = new ColumnarBatch(numRows, m_ColumnMeans.length);
+    for (int j = 0; j < m_ColumnMeans.length; j++) {
+      double mean = m_ColumnMeans[j];
+      double stdDev = m_ColumnStdDevs[j];
+      double[] column = batch.getColumn(j);
+      double[] resultColumn = result.getColumn(j);
+      for (int i = 0; i < numRows; i++)
+        resultColumn[i] = (column[i] - mean) / stdDev;
+    }
 
     return result;
   }
@@ -103,6 +165,102 @@ public class Standardize
     return result;
   }
 
+  /**
+   * Returns the bytes retained by the state, skipping objects that were
+   * counted already.
+   *
+   * @param seen	the objects counted already
+   * @return		the bytes
+   */
+  @Override
+  protected long retainedBytes(Set<Object> seen) {
+    long result = super.retainedBytes(seen);
+    if (result == 0)
+      return 0;
+    result += MemoryFootprint.retained(m_ColumnMeans, seen);
+    result += MemoryFootprint.retained(m_ColumnStdDevs, seen);
+
+    return result;
+  }
+
+  /**
+   * Returns whether the other algorithm has the same state as this one,
+   * i.e., always produces the same output for the same input.
+   *
+   * @param other	the algorithm to compare with
+   * @return		true if the same state
+   */
+  @Override
+  public boolean hasSameState(AbstractAlgorithm other) {
+    if (this == other)
+      return true;
+    if (!(other instanceof Standardize))
+      return false;
+    Standardize std = (Standardize) other;
+    return Arrays.equals(m_ColumnMeans, std.m_ColumnMeans)
+      && Arrays.equals(m_ColumnStdDevs, std.m_ColumnStdDevs);
+  }
+
+  /**
+   * Returns whether the algorithm can be applied to the data, without
+   * throwing an exception.
+   *
+   * @param data	the data to check
+   * @return		true if applicable
+   */
+  @Override
+  public boolean isApplicable(double[] data) {
+    return (data != null) && (data.length == m_ColumnMeans.length);
+  }
+
+  /**
+   * Returns the input width the algorithm requires.
+   *
+   * @return		the number of columns of the state
+   */
+  @Override
+  public int getInputWidth() {
+    return m_ColumnMeans.length;
+  }
+
+  /**
+   * Returns the input width that generates the given output width.
+   *
+   * @param outputWidth	the width of the output
+   * @return		the number of columns of the state
+   */
+  @Override
+  public int getInputWidth(int outputWidth) {
+    return m_ColumnMeans.length;
+  }
+
+  /**
+   * Returns the width of the output for the given input width.
+   *
+   * @param inputWidth	the width of the input
+   * @return		the width of the output
+   */
+  @Override
+  public int getOutputWidth(int inputWidth) {
+    return m_ColumnMeans.length;
+  }
+
+  /**
+   * Generates data around the column means.
+   *
+   * @param width	the width of the data
+   * @param random	the random number generator to use
+   * @return		the data
+   */
+  @Override
+  protected double[] sampleInput(int width, Random random) {
+    double[] result = new double[width];
+    for (int i = 0; i < width; i++)
+      result[i] = m_ColumnMeans[i] + 0.1 * random.nextGaussian() * m_ColumnStdDevs[i];
+
+    return result;
+  }
+
   /**
    * Makes sure the data to apply and applyInverse is the right size
    * for the state matrices.
@@ -0,0 +1,57 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * TunableAlgorithm.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.waikatodatamining.androidmatrix;
+
+/**
+ * Optional interface for algorithms which offer several kernels that
+ * compute the same output, but whose speed depends on the shape of the
+ * state and the device.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ * @see KernelTuner
+ */
+public interface TunableAlgorithm
+  extends Algorithm {
+
+  /**
+   * Returns the names of the available kernels, the first being the
+   * default.
+   *
+   * @return		the names
+   */
+  String[] getKernels();
+
+  /**
+   * Sets the kernel to use.
+   *
+   * @param name	the name of the kernel
+   * @throws IllegalArgumentException	if the kernel is not available
+   */
+  void setKernel(String name);
+
+  /**
+   * Returns the kernel in use.
+   *
+   * @return		the name of the kernel
+   */
+  String getKernel();
+
+}
@@ -0,0 +1,191 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * WarmUpReport.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.waikatodatamining.androidmatrix;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Drives an operation repeatedly, so that the JIT compiles the hot paths,
+ * and reports when the call durations reached a steady state. The calls
+ * get timed in batches; the steady state is reached once the mean duration
+ * of {@link #STABLE_BATCHES} consecutive batches stays within
+ * {@link #TOLERANCE} of the preceding batch.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ * @see PreprocessingStages#warmUp(int)
+ * @see PreprocessingMap#warmUp(int)
+ */
+public class WarmUpReport {
+
+  /** the number of calls per timed batch. */
+  public static final int BATCH_SIZE = 100;
+
+  /** the number of consecutive stable batches. */
+  public static final int STABLE_BATCHES = 3;
+
+  /** the relative tolerance between batches. */
+  public static final double TOLERANCE = 0.1;
+
+  /** the sink for results, to keep them from being optimised away. */
+  protected static volatile Object m_Sink;
+
+  /** the number of calls performed. */
+  protected final int m_Iterations;
+
+  /** the total duration in nanoseconds. */
+  protected final long m_TotalNanos;
+
+  /** the duration until the steady state was reached, -1 if not reached. */
+  protected final long m_SteadyStateNanos;
+
+  /** the number of calls until the steady state was reached, -1 if not reached. */
+  protected final int m_SteadyStateIteration;
+
+  /** the mean duration per call of the last batch. */
+  protected final long m_NanosPerCall;
+
+  /**
+   * Initializes the report.
+   *
+   * @param iterations		the number of calls performed
+   * @param totalNanos		the total duration in nanoseconds
+   * @param steadyStateNanos	the duration until the steady state was reached, -1 if not reached
+   * @param steadyStateIteration	the number of calls until the steady state was reached, -1 if not reached
+   * @param nanosPerCall	the mean duration per call of the last batch
+   */
+  public WarmUpReport(int iterations, long totalNanos, long steadyStateNanos, int steadyStateIteration, long nanosPerCall) {
+    m_Iterations           = iterations;
+    m_TotalNanos           = totalNanos;
+    m_SteadyStateNanos     = steadyStateNanos;
+    m_SteadyStateIteration = steadyStateIteration;
+    m_NanosPerCall         = nanosPerCall;
+  }
+
+  /**
+   * Returns the number of calls performed.
+   *
+   * @return		the number of calls
+   */
+  public int getIterations() {
+    return m_Iterations;
+  }
+
+  /**
+   * Returns the total duration of the warm-up.
+   *
+   * @return		the duration in nanoseconds
+   */
+  public long getTotalNanos() {
+    return m_TotalNanos;
+  }
+
+  /**
+   * Returns whether the steady state was reached.
+   *
+   * @return		true if reached
+   */
+  public boolean isSteady() {
+    return (m_SteadyStateIteration != -1);
+  }
+
+  /**
+   * Returns the time it took to reach the steady state.
+   *
+   * @return		the duration in nanoseconds, -1 if not reached
+   */
+  public long getSteadyStateNanos() {
+    return m_SteadyStateNanos;
+  }
+
+  /**
+   * Returns the number of calls it took to reach the steady state.
+   *
+   * @return		the number of calls, -1 if not reached
+   */
+  public int getSteadyStateIteration() {
+    return m_SteadyStateIteration;
+  }
+
+  /**
+   * Returns the mean duration per call of the last batch.
+   *
+   * @return		the duration in nanoseconds
+   */
+  public long getNanosPerCall() {
+    return m_NanosPerCall;
+  }
+
+  /**
+   * Returns a short description of the report.
+   *
+   * @return		the description
+   */
+  @Override
+  public String toString() {
+    return "iterations=" + m_Iterations
+      + ", total=" + m_TotalNanos + "ns"
+      + ", steady=" + (isSteady() ? m_SteadyStateNanos + "ns after " + m_SteadyStateIteration + " calls" : "no")
+      + ", perCall=" + m_NanosPerCall + "ns";
+  }
+
+  /**
+   * Calls the operation the specified number of times (rounded up to full
+   * batches) and reports the time to steady state.
+   *
+   * @param operation	the operation to call
+   * @param iterations	the number of calls
+   * @return		the report
+   * @throws Exception	if the operation fails
+   */
+  public static WarmUpReport warmUp(Callable<?> operation, int iterations) throws Exception {
+    int numBatches = Math.max(1, (iterations + BATCH_SIZE - 1) / BATCH_SIZE);
+    long start = System.nanoTime();
+    long steadyStateNanos = -1;
+    int steadyStateIteration = -1;
+    long previous = -1;
+    long current = 0;
+    int stable = 0;
+
+    for (int b = 0; b < numBatches; b++) {
+      // Time the batch
+      long batchStart = System.nanoTime();
+      for (int i = 0; i < BATCH_SIZE; i++)
+        m_Sink = operation.call();
+      long now = System.nanoTime();
+      current = (now - batchStart) / BATCH_SIZE;
+
+      // Check for steady state
+      if (steadyStateIteration == -1) {
+        if ((previous != -1) && (Math.abs(current - previous) <= TOLERANCE * previous))
+          stable++;
+        else
+          stable = 0;
+        if (stable == STABLE_BATCHES) {
+          steadyStateNanos = now - start;
+          steadyStateIteration = (b + 1) * BATCH_SIZE;
+        }
+      }
+      previous = current;
+    }
+
+    return new WarmUpReport(numBatches * BATCH_SIZE, System.nanoTime() - start, steadyStateNanos, steadyStateIteration, current);
+  }
+}
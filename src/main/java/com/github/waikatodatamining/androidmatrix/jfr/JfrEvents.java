@@ -0,0 +1,209 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * JfrEvents.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.waikatodatamining.androidmatrix.jfr;
+
+import com.github.waikatodatamining.androidmatrix.AbstractAlgorithm;
+import com.github.waikatodatamining.androidmatrix.LoadMonitor;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * The Java Flight Recorder events of the library. The load events get
+ * emitted via {@link JfrLoadMonitor}, the execution events via
+ * {@link JfrMetrics}.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public final class JfrEvents {
+
+  /** the prefix of the event names. */
+  public static final String PREFIX = "com.github.waikatodatamining.androidmatrix.";
+
+  /** the category of the events. */
+  public static final String CATEGORY = "Android Matrix Algorithms";
+
+  /**
+   * Not to be instantiated.
+   */
+  private JfrEvents() {
+  }
+
+  /**
+   * Deserialisation of a matrix.
+   */
+  @Name(PREFIX + "MatrixLoad")
+  @Label("Matrix Load")
+  @Category({CATEGORY, "Loading"})
+  @StackTrace(false)
+  public static class MatrixLoad
+    extends Event
+    implements LoadMonitor.MatrixTimer {
+
+    @Label("Rows")
+    public int rows;
+
+    @Label("Columns")
+    public int columns;
+
+    @Label("Size")
+    @DataAmount
+    public long bytes;
+
+    /**
+     * Finishes timing and commits the event.
+     *
+     * @param numRows	the number of rows
+     * @param numColumns	the number of columns
+     */
+    @Override
+    public void finished(int numRows, int numColumns) {
+      end();
+      if (shouldCommit()) {
+        rows = numRows;
+        columns = numColumns;
+        bytes = (long) numRows * numColumns * Double.BYTES;
+        commit();
+      }
+    }
+  }
+
+  /**
+   * Deserialisation of a stage, including its matrices.
+   */
+  @Name(PREFIX + "StageLoad")
+  @Label("Stage Load")
+  @Category({CATEGORY, "Loading"})
+  @StackTrace(false)
+  public static class StageLoad
+    extends Event
+    implements LoadMonitor.StageTimer {
+
+    @Label("Stage")
+    public String stage;
+
+    @Label("Input Width")
+    public int inputWidth;
+
+    @Label("Output Width")
+    public int outputWidth;
+
+    /**
+     * Finishes timing and commits the event.
+     *
+     * @param stageName	the name of the stage
+     * @param loaded	the loaded stage
+     */
+    @Override
+    public void finished(String stageName, AbstractAlgorithm loaded) {
+      end();
+      if (shouldCommit()) {
+        int width = loaded.getInputWidth();
+        stage = stageName;
+        inputWidth = width;
+        outputWidth = (width == -1) ? -1 : loaded.getOutputWidth(width);
+        commit();
+      }
+    }
+  }
+
+  /**
+   * Sampled execution of a stage, a pipeline or a map.
+   */
+  @Name(PREFIX + "Execution")
+  @Label("Execution")
+  @Category({CATEGORY, "Execution"})
+  @StackTrace(false)
+  public static class Execution
+    extends Event {
+
+    @Label("Input")
+    public String input;
+
+    @Label("Stage Index")
+    public int stageIndex;
+
+    @Label("Algorithm")
+    public String algorithm;
+
+    @Label("Input Width")
+    public int inputWidth;
+
+    @Label("Output Width")
+    public int outputWidth;
+
+    @Label("Call Duration")
+    @Timespan(Timespan.NANOSECONDS)
+    public long nanos;
+
+    @Label("Failure")
+    public String failure;
+  }
+
+  /**
+   * Returns whether execution events are enabled in a running recording.
+   *
+   * @return		true if enabled
+   */
+  static boolean isExecutionEnabled() {
+    return ExecutionType.TYPE.isEnabled();
+  }
+
+  /**
+   * Holds the type of the execution event, looked up on first use.
+   */
+  private static final class ExecutionType {
+
+    /** the event type. */
+    static final EventType TYPE = EventType.getEventType(Execution.class);
+  }
+
+  /**
+   * Emits an execution event.
+   *
+   * @param input	the name of the input, null if not part of a map
+   * @param stage	the index of the stage
+   * @param algorithm	the name of the algorithm
+   * @param inputWidth	the width of the input
+   * @param outputWidth	the width of the output
+   * @param nanos	the duration of the call
+   * @param failure	the exception, null if successful
+   */
+  static void executed(String input, int stage, String algorithm, int inputWidth, int outputWidth, long nanos, Throwable failure) {
+    Execution event = new Execution();
+    if (event.shouldCommit()) {
+      event.input = input;
+      event.stageIndex = stage;
+      event.algorithm = algorithm;
+      event.inputWidth = inputWidth;
+      event.outputWidth = outputWidth;
+      event.nanos = nanos;
+      event.failure = (failure == null) ? null : failure.getClass().getName();
+      event.commit();
+    }
+  }
+}
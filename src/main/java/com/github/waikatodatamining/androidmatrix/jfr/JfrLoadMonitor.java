@@ -0,0 +1,78 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * JfrLoadMonitor.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+
+package com.github.waikatodatamining.androidmatrix.jfr;
+
+import com.github.waikatodatamining.androidmatrix.LoadMonitor;
+import com.github.waikatodatamining.androidmatrix.LoadMonitoring;
+
+/**
+ * Emits Java Flight Recorder events for loading matrices and stages, while
+ * the events are enabled in a recording. Otherwise, only an event object
+ * gets created and discarded per load.
+ * <br>
+ * Example:
+ * <pre>
+ * JfrLoadMonitor.install();
+ * </pre>
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ * @see JfrEvents.MatrixLoad
+ * @see JfrEvents.StageLoad
+ */
+public class JfrLoadMonitor
+  implements LoadMonitor {
+
+  /**
+   * Starts timing the loading of a matrix.
+   *
+   * @return		the event, null if not enabled
+   */
+  @Override
+  public MatrixTimer beginMatrixLoad() {
+    JfrEvents.MatrixLoad event = new JfrEvents.MatrixLoad();
+    if (!event.isEnabled())
+      return null;
+    event.begin();
+    return event;
+  }
+
+  /**
+   * Starts timing the loading of a stage.
+   *
+   * @return		the event, null if not enabled
+   */
+  @Override
+  public StageTimer beginStageLoad() {
+    JfrEvents.StageLoad event = new JfrEvents.StageLoad();
+    if (!event.isEnabled())
+      return null;
+    event.begin();
+    return event;
+  }
+
+  /**
+   * Installs a new monitor for all subsequent loads.
+   */
+  public static void install() {
+    LoadMonitoring.setMonitor(new JfrLoadMonitor());
+  }
+}
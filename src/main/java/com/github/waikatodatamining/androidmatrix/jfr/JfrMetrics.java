@@ -0,0 +1,142 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * JfrMetrics.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.waikatodatamining.androidmatrix.jfr;
+
+import com.github.waikatodatamining.androidmatrix.Algorithm;
+import com.github.waikatodatamining.androidmatrix.Metrics;
+import com.github.waikatodatamining.androidmatrix.PreprocessingMap;
+
+/**
+ * Metrics that emit Java Flight Recorder events for a sample of the calls
+ * of stages, pipelines and maps. Failed calls always get emitted. Calls
+ * only get timed while the execution event is enabled in a recording.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ * @see JfrEvents.Execution
+ */
+public class JfrMetrics
+  implements Metrics {
+
+  /** the default number of calls per emitted event. */
+  public static final int DEFAULT_SAMPLE_INTERVAL = 100;
+
+  /** the number of calls per emitted event. */
+  protected final int m_SampleInterval;
+
+  /**
+   * Initializes the metrics with the default sample interval.
+   */
+  public JfrMetrics() {
+    this(DEFAULT_SAMPLE_INTERVAL);
+  }
+
+  /**
+   * Initializes the metrics.
+   *
+   * @param sampleInterval	the number of calls per emitted event, 1 for all
+   */
+  public JfrMetrics(int sampleInterval) {
+    if (sampleInterval < 1)
+      throw new IllegalArgumentException("Sample interval must be at least 1, provided: " + sampleInterval);
+    m_SampleInterval = sampleInterval;
+  }
+
+  /**
+   * Returns the number of calls per emitted event.
+   *
+   * @return		the interval
+   */
+  public int getSampleInterval() {
+    return m_SampleInterval;
+  }
+
+  /**
+   * Returns the probe for the specified stage of the named input.
+   *
+   * @param input	the name of the input, null if not part of a map
+   * @param stage	the index of the stage
+   * @param algorithm	the algorithm that gets measured, null for a map
+   * @return		the probe
+   */
+  @Override
+  public Probe probe(String input, int stage, Algorithm algorithm) {
+    String name = (algorithm == null) ? PreprocessingMap.class.getSimpleName() : algorithm.getClass().getSimpleName();
+    return new SampledProbe(input, stage, name, m_SampleInterval);
+  }
+
+  /**
+   * Probe that emits an event for every n-th call.
+   */
+  protected static class SampledProbe
+    implements Probe {
+
+    /** the input name. */
+    protected final String m_Input;
+
+    /** the stage index. */
+    protected final int m_Stage;
+
+    /** the algorithm name. */
+    protected final String m_Algorithm;
+
+    /** the number of calls per emitted event. */
+    protected final int m_SampleInterval;
+
+    /** the call counter (updated racily, only used for sampling). */
+    protected int m_Calls;
+
+    /**
+     * Initializes the probe.
+     *
+     * @param input	the input name
+     * @param stage	the stage index
+     * @param algorithm	the algorithm name
+     * @param sampleInterval	the number of calls per emitted event
+     */
+    protected SampledProbe(String input, int stage, String algorithm, int sampleInterval) {
+      m_Input          = input;
+      m_Stage          = stage;
+      m_Algorithm      = algorithm;
+      m_SampleInterval = sampleInterval;
+    }
+
+    @Override
+    public void record(int inputWidth, int outputWidth, long nanos) {
+      int calls = m_Calls + 1;
+      if (calls < m_SampleInterval) {
+        m_Calls = calls;
+        return;
+      }
+      m_Calls = 0;
+      JfrEvents.executed(m_Input, m_Stage, m_Algorithm, inputWidth, outputWidth, nanos, null);
+    }
+
+    @Override
+    public void failed(Throwable t) {
+      JfrEvents.executed(m_Input, m_Stage, m_Algorithm, -1, -1, 0, t);
+    }
+
+    @Override
+    public boolean isRecording() {
+      return JfrEvents.isExecutionEnabled();
+    }
+  }
+}
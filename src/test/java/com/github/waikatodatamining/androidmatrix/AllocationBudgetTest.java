@@ -0,0 +1,188 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * AllocationBudgetTest.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.waikatodatamining.androidmatrix;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.jupiter.api.Assertions;
+
+import java.io.FileInputStream;
+import java.nio.DoubleBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Asserts the number of bytes allocated per apply call, so that changes
+ * adding garbage to the hot paths fail the build. The budgets are for the
+ * 7-column bolts data on a 64-bit JVM with compressed oops (16 byte array
+ * headers); budgets other than 0 get skipped on other JVMs.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class AllocationBudgetTest {
+
+  /** the directory with the test resources. */
+  public static final String DIR = "src/test/resources/com/github/waikatodatamining/androidmatrix/";
+
+  /** the test data. */
+  protected double[][] m_Bolts;
+
+  @Before
+  public void setUp() throws Exception {
+    Assume.assumeTrue("Thread allocation measurement not supported", AllocationMeter.isSupported());
+    m_Bolts = PyMADeserialisation.deserialiseMatrix(new FileInputStream(DIR + "bolts.dat"));
+  }
+
+  /**
+   * Skips the test if the JVM does not use compressed oops, as the budgets
+   * assume their header and reference sizes.
+   */
+  protected void assumeCompressedOops() {
+    Assume.assumeTrue("Budgets assume compressed oops", AllocationMeter.isCompressedOops());
+  }
+
+  /**
+   * Measures the bytes per call of the algorithm and checks them against the budget.
+   *
+   * @param algorithm	the algorithm to apply to the bolts data
+   * @param budget	the maximum number of bytes per call
+   * @throws Exception	if applying fails
+   */
+  protected void assertBudget(Algorithm algorithm, double budget) throws Exception {
+    if (budget > 0)
+      assumeCompressedOops();
+
+    int[] row = new int[1];
+    double bytes = AllocationMeter.bytesPerCall(() -> {
+      AllocationMeter.sink = algorithm.apply(m_Bolts[row[0]]);
+      row[0] = (row[0] + 1) % m_Bolts.length;
+    });
+    Assertions.assertTrue(bytes <= budget,
+      algorithm.getClass().getSimpleName() + " allocates " + bytes + " bytes per call, budget is " + budget);
+  }
+
+  @Test
+  public void standardize() throws Exception {
+    // one double[7]
+    assertBudget(new Standardize(new FileInputStream(DIR + "Standardize.dat")), 72);
+  }
+
+  @Test
+  public void log() throws Exception {
+    // one double[7]
+    assertBudget(new Log(new FileInputStream(DIR + "Log.dat")), 72);
+  }
+
+  @Test
+  public void savitzkyGolay() throws Exception {
+    // one double[5]
+    assertBudget(new SavitzkyGolay(new FileInputStream(DIR + "SavitzkyGolay.dat")), 56);
+  }
+
+  @Test
+  public void simpls() throws Exception {
+    // one double[5]
+    assertBudget(new SIMPLS(new FileInputStream(DIR + "SIMPLS.dat")), 56);
+  }
+
+  @Test
+  public void stages() throws Exception {
+    // double[7] + double[5] + 2x double[3]
+    assertBudget(new PreprocessingStages(new FileInputStream(DIR + "Stages.dat")), 208);
+  }
+
+  @Test
+  public void plan() throws Exception {
+    // buffers get preallocated when compiling
+    ExecutionPlan plan = new PreprocessingStages(new FileInputStream(DIR + "Stages.dat")).compile();
+    assertBudget(plan, 0);
+  }
+
+  @Test
+  public void planBuffer() throws Exception {
+    // reads and writes the buffers in place
+    ExecutionPlan plan = new PreprocessingStages(new FileInputStream(DIR + "Stages.dat")).compile();
+    DoubleBuffer input = DoubleBuffer.allocate(m_Bolts.length * 7);
+    for (double[] row : m_Bolts)
+      input.put(row);
+    DoubleBuffer output = DoubleBuffer.allocate(3);
+    int[] row = new int[1];
+    double bytes = AllocationMeter.bytesPerCall(() -> {
+      input.limit((row[0] + 1) * 7).position(row[0] * 7);
+      output.clear();
+      plan.apply(input, output);
+      row[0] = (row[0] + 1) % m_Bolts.length;
+    });
+    Assertions.assertTrue(bytes <= 0, "ExecutionPlan (buffer) allocates " + bytes + " bytes per call, budget is 0");
+  }
+
+  @Test
+  public void stagesBuffer() throws Exception {
+    // the per-thread plan provides the buffers between the stages
+    PreprocessingStages stages = new PreprocessingStages(new FileInputStream(DIR + "Stages.dat"));
+    DoubleBuffer input = DoubleBuffer.allocate(m_Bolts.length * 7);
+    for (double[] row : m_Bolts)
+      input.put(row);
+    DoubleBuffer output = DoubleBuffer.allocate(3);
+    int[] row = new int[1];
+    double bytes = AllocationMeter.bytesPerCall(() -> {
+      input.limit((row[0] + 1) * 7).position(row[0] * 7);
+      output.clear();
+      stages.apply(input, output);
+      row[0] = (row[0] + 1) % m_Bolts.length;
+    });
+    Assertions.assertTrue(bytes <= 0, "PreprocessingStages (buffer) allocates " + bytes + " bytes per call, budget is 0");
+  }
+
+  @Test
+  public void map() throws Exception {
+    assumeCompressedOops();
+    PreprocessingMap map = PreprocessingMapTest.twoInputMap();
+    Map<String, double[]> data = new HashMap<>();
+    int[] row = new int[1];
+    double bytes = AllocationMeter.bytesPerCall(() -> {
+      data.put("one", m_Bolts[row[0]]);
+      data.put("two", m_Bolts[row[0]]);
+      AllocationMeter.sink = map.apply(data);
+      row[0] = (row[0] + 1) % m_Bolts.length;
+    });
+    // two pipelines plus the result map (HashMap internals vary between JDKs)
+    Assertions.assertTrue(bytes <= 704, "PreprocessingMap allocates " + bytes + " bytes per call, budget is 704");
+  }
+
+  @Test
+  public void mapFrame() throws Exception {
+    assumeCompressedOops();
+    PreprocessingMap map = PreprocessingMapTest.twoInputMap();
+    FeatureFrame frame = map.newFrame();
+    int[] row = new int[1];
+    double bytes = AllocationMeter.bytesPerCall(() -> {
+      frame.set(0, m_Bolts[row[0]]);
+      frame.set(1, m_Bolts[row[0]]);
+      AllocationMeter.sink = map.apply(frame);
+      row[0] = (row[0] + 1) % m_Bolts.length;
+    });
+    // two pipelines, no map and no output vector
+    Assertions.assertTrue(bytes <= 416, "PreprocessingMap (frame) allocates " + bytes + " bytes per call, budget is 416");
+  }
+
+}
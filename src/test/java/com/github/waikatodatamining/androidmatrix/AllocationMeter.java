@@ -0,0 +1,165 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * AllocationMeter.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.waikatodatamining.androidmatrix;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Test utility for measuring the bytes allocated per call on the current
+ * thread, using com.sun.management.ThreadMXBean where available.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class AllocationMeter {
+
+  /** the number of calls to perform before measuring. */
+  public static final int WARMUP = 20000;
+
+  /** the number of calls to measure. */
+  public static final int ITERATIONS = 10000;
+
+  /** the number of measurement rounds, the smallest result is used. */
+  public static final int ROUNDS = 3;
+
+  /**
+   * The operation to measure.
+   */
+  public interface Operation {
+
+    /**
+     * Performs the operation.
+     *
+     * @throws Exception	if the operation fails
+     */
+    void run() throws Exception;
+  }
+
+  /** the bean to use, null if not supported. */
+  protected static final com.sun.management.ThreadMXBean BEAN = lookUp();
+
+  /** the sink for results, to keep them from being optimised away. */
+  public static volatile Object sink;
+
+  /**
+   * Looks up the thread bean and enables allocation measurement.
+   *
+   * @return		the bean, null if not available
+   */
+  protected static com.sun.management.ThreadMXBean lookUp() {
+    try {
+      ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+      if (!(bean instanceof com.sun.management.ThreadMXBean))
+        return null;
+      com.sun.management.ThreadMXBean result = (com.sun.management.ThreadMXBean) bean;
+      if (!result.isThreadAllocatedMemorySupported())
+        return null;
+      if (!result.isThreadAllocatedMemoryEnabled())
+        result.setThreadAllocatedMemoryEnabled(true);
+      return result;
+    }
+    catch (Throwable t) {
+      return null;
+    }
+  }
+
+  /**
+   * Returns whether allocations can be measured in this JVM.
+   *
+   * @return		true if supported
+   */
+  public static boolean isSupported() {
+    return (BEAN != null);
+  }
+
+  /**
+   * Returns whether the JVM uses compressed oops, which determines the size
+   * of object headers and references.
+   *
+   * @return		true if compressed, false if not or unknown
+   */
+  public static boolean isCompressedOops() {
+    try {
+      com.sun.management.HotSpotDiagnosticMXBean bean = ManagementFactory.getPlatformMXBean(com.sun.management.HotSpotDiagnosticMXBean.class);
+      return (bean != null) && Boolean.parseBoolean(bean.getVMOption("UseCompressedOops").getValue());
+    }
+    catch (Throwable t) {
+      return false;
+    }
+  }
+
+  /**
+   * Returns the number of bytes allocated by the current thread so far.
+   *
+   * @return		the bytes
+   */
+  public static long allocatedBytes() {
+    return BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+  /**
+   * Measures the average number of bytes allocated per call of the operation,
+   * using the default number of warm-up calls and iterations.
+   *
+   * @param operation	the operation to measure
+   * @return		the bytes per call
+   * @throws Exception	if the operation fails
+   */
+  public static double bytesPerCall(Operation operation) throws Exception {
+    return bytesPerCall(operation, WARMUP, ITERATIONS);
+  }
+
+  /**
+   * Measures the average number of bytes allocated per call of the operation.
+   * The operation gets warmed up first, so that the measurement reflects the
+   * compiled code. The smallest of several rounds is returned, to filter out
+   * one-off allocations by the runtime.
+   *
+   * @param operation	the operation to measure
+   * @param warmup	the number of calls before measuring
+   * @param iterations	the number of calls to measure
+   * @return		the bytes per call
+   * @throws Exception	if the operation fails
+   */
+  public static double bytesPerCall(Operation operation, int warmup, int iterations) throws Exception {
+    if (!isSupported())
+      throw new IllegalStateException("Thread allocation measurement not supported");
+
+    // Warm up
+    for (int i = 0; i < warmup; i++)
+      operation.run();
+
+    // Determine the overhead of the measurement itself
+    long overheadStart = allocatedBytes();
+    long overhead = allocatedBytes() - overheadStart;
+
+    // Measure
+    long allocated = Long.MAX_VALUE;
+    for (int n = 0; n < ROUNDS; n++) {
+      long start = allocatedBytes();
+      for (int i = 0; i < iterations; i++)
+        operation.run();
+      allocated = Math.min(allocated, allocatedBytes() - start - overhead);
+    }
+
+    return Math.max(0, allocated) / (double) iterations;
+  }
+}
@@ -0,0 +1,99 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * BulkScorerTest.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.waikatodatamining.androidmatrix;
+
+import org.junit.Test;
+import org.junit.jupiter.api.Assertions;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+
+/**
+ * Tests the BulkScorer class.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class BulkScorerTest {
+
+  @Test
+  public void score() throws Exception {
+    PreprocessingStages stages = new PreprocessingStages(new FileInputStream("src/test/resources/com/github/waikatodatamining/androidmatrix/Stages.dat"));
+
+    double[][] expectedResponse = PyMADeserialisation.deserialiseMatrix(new FileInputStream("src/test/resources/com/github/waikatodatamining/androidmatrix/Stages-bolts.dat"));
+
+    File output = File.createTempFile("bulk", ".dat");
+    output.deleteOnExit();
+
+    // force several chunks (7 doubles per row)
+    BulkScorer scorer = new BulkScorer(stages);
+    scorer.setChunkBytes(7 * 8 * 6);
+    BulkScorer.Result result = scorer.score(new File("src/test/resources/com/github/waikatodatamining/androidmatrix/bolts.dat"), output);
+    Assertions.assertEquals(expectedResponse.length, result.getNumRows());
+
+    double[][] response = PyMADeserialisation.deserialiseMatrix(new FileInputStream(output));
+    Assertions.assertEquals(expectedResponse.length, response.length);
+    for (int i = 0; i < expectedResponse.length; i++)
+      Assertions.assertArrayEquals(expectedResponse[i], response[i]);
+  }
+
+  @Test
+  public void prepareInvalidFirstRow() throws Exception {
+    Log log = new Log(new FileInputStream("src/test/resources/com/github/waikatodatamining/androidmatrix/Log.dat"));
+
+    // the log is undefined for the first row (offset is 1)
+    double[][] bolts = PyMADeserialisation.deserialiseMatrix(new FileInputStream("src/test/resources/com/github/waikatodatamining/androidmatrix/bolts.dat"));
+    bolts[0][2] = -5.0;
+    File input = File.createTempFile("bulk", ".dat");
+    input.deleteOnExit();
+    try (OutputStream out = new FileOutputStream(input)) {
+      PyMASerialisation.serialiseMatrix(out, bolts);
+    }
+
+    File output = File.createTempFile("bulk", ".dat");
+    output.deleteOnExit();
+    Assertions.assertEquals(bolts.length, new BulkScorer(log).prepare(input, output));
+    Assertions.assertEquals(BulkScorer.HEADER_SIZE + (long) bolts.length * 7 * Double.BYTES, output.length());
+  }
+
+  @Test
+  public void scoreMap() throws Exception {
+    PreprocessingMap map = PreprocessingMapTest.twoInputMap();
+
+    double[][] expectedResponse = PyMADeserialisation.deserialiseMatrix(new FileInputStream("src/test/resources/com/github/waikatodatamining/androidmatrix/Stages-bolts.dat"));
+
+    File output = File.createTempFile("bulk", ".dat");
+    output.deleteOnExit();
+
+    new BulkScorer(map).score(new File("src/test/resources/com/github/waikatodatamining/androidmatrix/bolts.dat"), output);
+
+    double[][] response = PyMADeserialisation.deserialiseMatrix(new FileInputStream(output));
+    for (int i = 0; i < expectedResponse.length; i++) {
+      Assertions.assertEquals(6, response[i].length);
+      for (int n = 0; n < 3; n++) {
+        Assertions.assertEquals(expectedResponse[i][n], response[i][n]);
+        Assertions.assertEquals(expectedResponse[i][n], response[i][n + 3]);
+      }
+    }
+  }
+
+}
@@ -0,0 +1,106 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * IncrementalSIMPLSTest.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.waikatodatamining.androidmatrix;
+
+import org.junit.Test;
+import org.junit.jupiter.api.Assertions;
+
+import java.io.FileInputStream;
+
+/**
+ * Tests the IncrementalSIMPLS class.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class IncrementalSIMPLSTest {
+
+  @Test
+  public void apply() throws Exception {
+    SIMPLS simpls = new SIMPLS(new FileInputStream("src/test/resources/com/github/waikatodatamining/androidmatrix/SIMPLS.dat"));
+
+    double[][] bolts = PyMADeserialisation.deserialiseMatrix(new FileInputStream("src/test/resources/com/github/waikatodatamining/androidmatrix/bolts.dat"));
+
+    IncrementalSIMPLS incremental = new IncrementalSIMPLS(simpls);
+    incremental.setMaxChangedFraction(0.5);
+    incremental.setRecomputeInterval(10);
+
+    // change one or two values at a time
+    double[] data = bolts[0].clone();
+    for (int i = 0; i < 50; i++) {
+      data[i % data.length] += 0.5;
+      if (i % 3 == 0)
+        data[(i + 2) % data.length] -= 0.25;
+      Assertions.assertArrayEquals(simpls.apply(data), incremental.apply(data), 1e-10);
+    }
+    // first call plus one every 10 updates
+    Assertions.assertEquals(5, incremental.getNumRecomputes());
+
+    // explicit changes
+    data[3] += 1.0;
+    Assertions.assertArrayEquals(simpls.apply(data), incremental.apply(data, new int[]{3}), 1e-10);
+
+    // invalid indices leave the state untouched
+    double[] invalid = data.clone();
+    invalid[1] += 1.0;
+    Assertions.assertThrows(IllegalArgumentException.class, () -> incremental.apply(invalid, new int[]{1, data.length}));
+    data[5] += 1.0;
+    Assertions.assertArrayEquals(simpls.apply(data), incremental.apply(data, new int[]{5}), 1e-10);
+
+    // too many changes
+    incremental.reset();
+    incremental.apply(bolts[0]);
+    incremental.apply(new double[]{1, 2, 3, 4, 5, 6, 7});
+    Assertions.assertEquals(7, incremental.getNumRecomputes());
+  }
+
+  @Test
+  public void nonFinite() throws Exception {
+    SIMPLS simpls = new SIMPLS(new FileInputStream("src/test/resources/com/github/waikatodatamining/androidmatrix/SIMPLS.dat"));
+
+    double[][] bolts = PyMADeserialisation.deserialiseMatrix(new FileInputStream("src/test/resources/com/github/waikatodatamining/androidmatrix/bolts.dat"));
+
+    IncrementalSIMPLS incremental = new IncrementalSIMPLS(simpls);
+    incremental.setMaxChangedFraction(0.5);
+
+    // NaN followed by a finite value
+    double[] data = bolts[0].clone();
+    incremental.apply(data);
+    data[2] = Double.NaN;
+    Assertions.assertTrue(Double.isNaN(incremental.apply(data)[0]));
+    data[2] = bolts[0][2];
+    Assertions.assertArrayEquals(simpls.apply(data), incremental.apply(data), 1e-10);
+    data[2] = Double.NaN;
+    incremental.apply(data, new int[]{2});
+    data[2] = bolts[0][2];
+    Assertions.assertArrayEquals(simpls.apply(data), incremental.apply(data, new int[]{2}), 1e-10);
+
+    // infinite values
+    data[4] = Double.POSITIVE_INFINITY;
+    incremental.apply(data);
+    data[4] = 1.0;
+    Assertions.assertArrayEquals(simpls.apply(data), incremental.apply(data), 1e-10);
+
+    Assertions.assertThrows(IllegalArgumentException.class, () -> incremental.setMaxChangedFraction(1.5));
+    Assertions.assertThrows(IllegalArgumentException.class, () -> incremental.setMaxChangedFraction(-0.1));
+    Assertions.assertThrows(IllegalArgumentException.class, () -> incremental.setMaxChangedFraction(Double.NaN));
+  }
+
+}
@@ -0,0 +1,104 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * KernelTunerTest.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.waikatodatamining.androidmatrix;
+
+import org.junit.Test;
+import org.junit.jupiter.api.Assertions;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+
+/**
+ * Tests the KernelTuner class.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class KernelTunerTest {
+
+  /**
+   * Creates a synthetic pipeline ending in Savitzky-Golay and SIMPLS.
+   *
+   * @param width	the number of wavelengths
+   * @return		the serialised pipeline
+   * @throws Exception	if generating fails
+   */
+  protected static byte[] model(int width) throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    new SyntheticModelGenerator(1).writeStages(out, width, 10);
+    return out.toByteArray();
+  }
+
+  @Test
+  public void kernels() throws Exception {
+    PreprocessingStages stages = new PreprocessingStages(new ByteArrayInputStream(model(500)));
+    double[][] data = new SyntheticModelGenerator(2).generateData(5, 500);
+    double[][] expected = new double[data.length][];
+    for (int i = 0; i < data.length; i++)
+      expected[i] = stages.apply(data[i]);
+
+    // all kernels compute the same output
+    for (int k = 0; k < 3; k++) {
+      for (AbstractAlgorithm stage : stages.m_Stages) {
+        if (stage instanceof TunableAlgorithm) {
+          TunableAlgorithm tunable = (TunableAlgorithm) stage;
+          tunable.setKernel(tunable.getKernels()[k % tunable.getKernels().length]);
+        }
+      }
+      for (int i = 0; i < data.length; i++)
+        Assertions.assertArrayEquals(expected[i], stages.apply(data[i]));
+    }
+
+    SIMPLS simpls = (SIMPLS) stages.m_Stages[3];
+    Assertions.assertThrows(IllegalArgumentException.class, () -> simpls.setKernel("unknown"));
+  }
+
+  @Test
+  public void tune() throws Exception {
+    File cache = File.createTempFile("kernels", ".props");
+    cache.delete();
+    cache.deleteOnExit();
+    byte[] model = model(500);
+
+    // calibrates Savitzky-Golay and SIMPLS
+    KernelTuner tuner = new KernelTuner(cache);
+    tuner.setWarmUpIterations(2);
+    tuner.setIterations(5);
+    PreprocessingStages stages = new PreprocessingStages(new ByteArrayInputStream(model));
+    tuner.tune(stages);
+    Assertions.assertEquals(2, tuner.getNumCalibrated());
+    Assertions.assertTrue(cache.exists());
+    String sg = tuner.getDecision(stages.m_Stages[2], 500, 494);
+    String simpls = tuner.getDecision(stages.m_Stages[3], 494, 10);
+    Assertions.assertEquals(sg, ((TunableAlgorithm) stages.m_Stages[2]).getKernel());
+    Assertions.assertEquals(simpls, ((TunableAlgorithm) stages.m_Stages[3]).getKernel());
+
+    // later startups use the cached decisions
+    KernelTuner cached = new KernelTuner(cache);
+    ModelLoader loader = new ModelLoader();
+    loader.setKernelTuner(cached);
+    PreprocessingStages loaded = loader.loadStages(model).get();
+    Assertions.assertEquals(0, cached.getNumCalibrated());
+    Assertions.assertEquals(sg, ((TunableAlgorithm) loaded.m_Stages[2]).getKernel());
+    Assertions.assertEquals(simpls, ((TunableAlgorithm) loaded.m_Stages[3]).getKernel());
+  }
+
+}
@@ -58,4 +58,37 @@ public class LogTest {
 
   }
 
+  @Test
+  public void applyBatch() throws Exception {
+    Log log = new Log(new FileInputStream("src/test/resources/com/github/waikatodatamining/androidmatrix/Log.dat"));
+
+    double[][] bolts = PyMADeserialisation.deserialiseMatrix(new FileInputStream("src/test/resources/com/github/waikatodatamining/androidmatrix/bolts.dat"));
+
+    double[][] expectedResponse = PyMADeserialisation.deserialiseMatrix(new FileInputStream("src/test/resources/com/github/waikatodatamining/androidmatrix/Log-bolts.dat"));
+
+    // invalidate row 3 (offset is 1)
+    double[][] data = bolts.clone();
+    data[3] = bolts[3].clone();
+    data[3][2] = -5.0;
+
+    BatchResult nan = log.applyBatch(data, RowPolicy.NAN);
+    Assertions.assertEquals(bolts.length, nan.getRows().length);
+    Assertions.assertEquals(1, nan.getNumInvalid());
+    Assertions.assertFalse(nan.isValid(3));
+    Assertions.assertTrue(nan.isValid(4));
+    Assertions.assertTrue(Double.isNaN(nan.getRows()[3][0]));
+    Assertions.assertArrayEquals(expectedResponse[4], nan.getRows()[4], 1e-15);
+
+    BatchResult skip = log.applyBatch(data, RowPolicy.SKIP);
+    Assertions.assertEquals(bolts.length - 1, skip.getRows().length);
+    Assertions.assertArrayEquals(expectedResponse[4], skip.getRows()[3], 1e-15);
+
+    BatchResult clamp = log.applyBatch(data, RowPolicy.CLAMP);
+    Assertions.assertFalse(clamp.isValid(3));
+    Assertions.assertTrue(Double.isFinite(clamp.getRows()[3][2]));
+    Assertions.assertEquals(expectedResponse[3][0], clamp.getRows()[3][0], 1e-15);
+
+    Assertions.assertThrows(RuntimeException.class, () -> log.applyBatch(data, RowPolicy.FAIL));
+  }
+
 }
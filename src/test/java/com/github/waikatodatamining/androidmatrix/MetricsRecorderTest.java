@@ -0,0 +1,76 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * MetricsRecorderTest.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.waikatodatamining.androidmatrix;
+
+import org.junit.Test;
+import org.junit.jupiter.api.Assertions;
+
+import java.io.FileInputStream;
+
+/**
+ * Tests the MetricsRecorder class.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class MetricsRecorderTest {
+
+  @Test
+  public void record() throws Exception {
+    PreprocessingStages stages = new PreprocessingStages(new FileInputStream("src/test/resources/com/github/waikatodatamining/androidmatrix/Stages.dat"));
+
+    double[][] bolts = PyMADeserialisation.deserialiseMatrix(new FileInputStream("src/test/resources/com/github/waikatodatamining/androidmatrix/bolts.dat"));
+
+    double[][] expectedResponse = PyMADeserialisation.deserialiseMatrix(new FileInputStream("src/test/resources/com/github/waikatodatamining/androidmatrix/Stages-bolts.dat"));
+
+    MetricsRecorder recorder = new MetricsRecorder();
+    stages.setMetrics(recorder, "bolts");
+
+    for (int i = 0; i < bolts.length; i++)
+      Assertions.assertArrayEquals(expectedResponse[i], stages.apply(bolts[i]));
+
+    MetricsSnapshot snapshot = recorder.snapshot();
+    Assertions.assertEquals(5, snapshot.getEntries().size());
+
+    MetricsSnapshot.Entry pipeline = snapshot.getEntry("bolts", Metrics.PIPELINE);
+    Assertions.assertEquals(bolts.length, pipeline.getCount());
+    Assertions.assertEquals(0, pipeline.getFailures());
+    Assertions.assertEquals(7, pipeline.getMaxInputWidth());
+    Assertions.assertEquals(3, pipeline.getMaxOutputWidth());
+
+    MetricsSnapshot.Entry first = snapshot.getEntry("bolts", 0);
+    Assertions.assertEquals("Standardize", first.getAlgorithm());
+    Assertions.assertEquals(bolts.length, first.getCount());
+    long histogramTotal = 0;
+    for (long count : first.getHistogram())
+      histogramTotal += count;
+    Assertions.assertEquals(bolts.length, histogramTotal);
+
+    Assertions.assertThrows(RuntimeException.class, () -> stages.apply(new double[3]));
+    snapshot = recorder.snapshot();
+    Assertions.assertEquals(1, snapshot.getEntry("bolts", Metrics.PIPELINE).getFailures());
+    Assertions.assertEquals(1L, (long) snapshot.getEntry("bolts", 0).getExceptions().get(RuntimeException.class.getName()));
+
+    stages.setMetrics(null, null);
+    stages.apply(bolts[0]);
+    Assertions.assertEquals(bolts.length, recorder.snapshot().getEntry("bolts", Metrics.PIPELINE).getCount());
+  }
+
+}
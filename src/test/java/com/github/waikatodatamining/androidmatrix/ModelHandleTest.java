@@ -0,0 +1,125 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * ModelHandleTest.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.waikatodatamining.androidmatrix;
+
+import org.junit.Test;
+import org.junit.jupiter.api.Assertions;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests the ModelHandle class.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class ModelHandleTest {
+
+  @Test
+  public void reload() throws Exception {
+    File file = File.createTempFile("model", ".dat");
+    file.deleteOnExit();
+    Files.copy(Paths.get("src/test/resources/com/github/waikatodatamining/androidmatrix/Stages.dat"), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+    // the first version gets validated and warmed up as well
+    List<Integer> validated = new ArrayList<>();
+    List<Integer> warmedUp = new ArrayList<>();
+    ModelHandle<PreprocessingStages> handle = new ModelHandle<>(file, PreprocessingStages::new,
+      stages -> validated.add(validated.size() + 1),
+      stages -> warmedUp.add(stages.warmUp(100).getIterations()));
+    Assertions.assertEquals(1, validated.size());
+    Assertions.assertEquals(1, warmedUp.size());
+    List<Integer> retired = new ArrayList<>();
+    handle.addListener(new ModelHandle.Listener<PreprocessingStages>() {
+      @Override
+      public void published(ModelHandle.Version<PreprocessingStages> version) {
+      }
+      @Override
+      public void failed(Exception e) {
+      }
+      @Override
+      public void retired(ModelHandle.Version<PreprocessingStages> version) {
+        retired.add(version.getNumber());
+      }
+    });
+
+    // in-flight request on version 1
+    ModelHandle.Reader<PreprocessingStages> inFlight = handle.acquire();
+    Assertions.assertEquals(1, inFlight.getNumber());
+
+    ModelHandle.Version<PreprocessingStages> version = handle.reload();
+    Assertions.assertEquals(2, version.getNumber());
+    Assertions.assertEquals(2, validated.size());
+    Assertions.assertEquals(2, warmedUp.size());
+    Assertions.assertSame(version.get(), handle.get());
+    Assertions.assertTrue(retired.isEmpty());
+
+    // old version gets retired once released
+    inFlight.close();
+    Assertions.assertEquals(1, retired.size());
+    Assertions.assertEquals(1, (int) retired.get(0));
+    inFlight.close();
+    Assertions.assertEquals(1, retired.size());
+    Assertions.assertThrows(IllegalStateException.class, inFlight::get);
+
+    // closing a reader of the current version twice does not retire it
+    ModelHandle.Reader<PreprocessingStages> reader = handle.acquire();
+    reader.close();
+    reader.close();
+    Assertions.assertEquals(1, retired.size());
+
+    // the reference of the handle cannot be released while current
+    version = handle.acquire().getVersion();
+    version.release();
+    Assertions.assertThrows(IllegalStateException.class, version::release);
+    Assertions.assertEquals(1, retired.size());
+
+    // failed validation keeps the current version
+    handle.setValidator(stages -> { throw new IllegalStateException("invalid"); });
+    Assertions.assertThrows(IllegalStateException.class, handle::reload);
+    try (ModelHandle.Reader<PreprocessingStages> current = handle.acquire()) {
+      Assertions.assertEquals(2, current.getNumber());
+    }
+  }
+
+  @Test
+  public void watch() throws Exception {
+    File file = File.createTempFile("model", ".dat");
+    file.deleteOnExit();
+    Files.copy(Paths.get("src/test/resources/com/github/waikatodatamining/androidmatrix/Stages.dat"), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+    try (ModelHandle<PreprocessingStages> handle = new ModelHandle<>(file, PreprocessingStages::new)) {
+      handle.setDelay(50);
+      handle.start();
+      PreprocessingStages initial = handle.get();
+      Files.copy(Paths.get("src/test/resources/com/github/waikatodatamining/androidmatrix/Stages.dat"), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      long end = System.currentTimeMillis() + 20000;
+      while ((handle.get() == initial) && (System.currentTimeMillis() < end))
+        Thread.sleep(50);
+      Assertions.assertNotSame(initial, handle.get());
+    }
+  }
+
+}
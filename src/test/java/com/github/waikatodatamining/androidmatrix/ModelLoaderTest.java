@@ -0,0 +1,128 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * ModelLoaderTest.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.waikatodatamining.androidmatrix;
+
+import org.junit.Test;
+import org.junit.jupiter.api.Assertions;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests the ModelLoader class.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class ModelLoaderTest {
+
+  @Test
+  public void loadMap() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      ModelLoader loader = new ModelLoader(executor);
+      AtomicInteger loaded = new AtomicInteger();
+      AtomicInteger total = new AtomicInteger();
+      loader.setListener((numLoaded, numStages) -> {
+        loaded.incrementAndGet();
+        total.set(numStages);
+      });
+
+      PreprocessingMap map = loader.loadMap(new ByteArrayInputStream(PreprocessingMapTest.twoInputMapBytes())).get();
+      Assertions.assertEquals(8, loaded.get());
+      Assertions.assertEquals(8, total.get());
+      Assertions.assertArrayEquals(new String[]{"one", "two"}, map.getOrdering());
+
+      double[][] bolts = PyMADeserialisation.deserialiseMatrix(new FileInputStream("src/test/resources/com/github/waikatodatamining/androidmatrix/bolts.dat"));
+
+      double[][] expectedResponse = PyMADeserialisation.deserialiseMatrix(new FileInputStream("src/test/resources/com/github/waikatodatamining/androidmatrix/Stages-bolts.dat"));
+
+      Map<String, double[]> data = new HashMap<>();
+      for (int i = 0; i < bolts.length; i++) {
+        data.put("one", bolts[i]);
+        data.put("two", bolts[i]);
+        Map<String, double[]> result = map.apply(data);
+        Assertions.assertArrayEquals(expectedResponse[i], result.get("one"));
+        Assertions.assertArrayEquals(expectedResponse[i], result.get("two"));
+      }
+    }
+    finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void loadStages() throws Exception {
+    ModelLoader loader = new ModelLoader();
+
+    PreprocessingStages stages = loader.loadStages(new FileInputStream("src/test/resources/com/github/waikatodatamining/androidmatrix/Stages.dat")).get();
+    Assertions.assertEquals(7, stages.getInputWidth());
+    Assertions.assertEquals(3, stages.getOutputWidth(7));
+
+    byte[] truncated = Arrays.copyOf(PreprocessingMapTest.twoInputMapBytes(), 100);
+    Assertions.assertThrows(ExecutionException.class, () -> loader.loadMap(truncated).get());
+  }
+
+  @Test
+  public void memoryBudget() throws Exception {
+    byte[] model = Files.readAllBytes(Paths.get("src/test/resources/com/github/waikatodatamining/androidmatrix/Stages.dat"));
+    PreprocessingStages stages = new PreprocessingStages(new ByteArrayInputStream(model));
+    long projected = ModelLoader.projectStagesBytes(model);
+    Assertions.assertEquals(stages.getRetainedBytes(), projected);
+
+    PreprocessingMap map = PreprocessingMapTest.twoInputMap();
+    Assertions.assertEquals(map.getRetainedBytes(), ModelLoader.projectMapBytes(PreprocessingMapTest.twoInputMapBytes()));
+    Assertions.assertEquals(2 * projected, map.getRetainedBytes());
+
+    // shared pipelines only get counted once
+    PreprocessingMap shared = new PreprocessingMap(new String[]{"one", "two"}, new PreprocessingStages[]{stages, stages});
+    Assertions.assertEquals(projected, shared.getRetainedBytes());
+
+    ModelLoader loader = new ModelLoader();
+    loader.setMemoryBudget(projected);
+    Assertions.assertNotNull(loader.loadStages(model).get());
+    loader.setMemoryBudget(projected - 1);
+    ExecutionException e = Assertions.assertThrows(ExecutionException.class, () -> loader.loadStages(model).get());
+    Assertions.assertTrue(e.getCause() instanceof IllegalStateException);
+    e = Assertions.assertThrows(ExecutionException.class, () -> loader.loadMap(PreprocessingMapTest.twoInputMapBytes()).get());
+    Assertions.assertTrue(e.getCause() instanceof IllegalStateException);
+  }
+
+  @Test
+  public void outputWidth() throws Exception {
+    byte[] model = Files.readAllBytes(Paths.get("src/test/resources/com/github/waikatodatamining/androidmatrix/Stages.dat"));
+    PreprocessingStages stages = new PreprocessingStages(new ByteArrayInputStream(model));
+    int width = stages.getInputWidth();
+    Assertions.assertEquals(stages.getOutputWidth(width), ModelLoader.projectStagesOutputWidth(model, width));
+    Assertions.assertEquals(2 * stages.getOutputWidth(width), ModelLoader.projectMapOutputWidth(PreprocessingMapTest.twoInputMapBytes(), width));
+    Assertions.assertThrows(IOException.class, () -> ModelLoader.projectStagesOutputWidth(Arrays.copyOf(model, model.length / 2), width));
+  }
+
+}
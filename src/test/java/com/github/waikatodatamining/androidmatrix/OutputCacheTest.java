@@ -0,0 +1,100 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * OutputCacheTest.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.waikatodatamining.androidmatrix;
+
+import org.junit.Test;
+import org.junit.jupiter.api.Assertions;
+
+import java.io.FileInputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tests the OutputCache class.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class OutputCacheTest {
+
+  @Test
+  public void evict() {
+    OutputCache cache = new OutputCache(2, Long.MAX_VALUE);
+    double[] a = {1, 2};
+    double[] b = {3, 4};
+    double[] c = {5, 6};
+    cache.put(a, new double[]{1});
+    cache.put(b, new double[]{2});
+
+    // access a, so that b is the least recently used
+    Assertions.assertArrayEquals(new double[]{1}, cache.get(new double[]{1, 2}));
+    cache.put(c, new double[]{3});
+    Assertions.assertNull(cache.get(b));
+    Assertions.assertNotNull(cache.get(a));
+    Assertions.assertNotNull(cache.get(c));
+    Assertions.assertEquals(1, cache.getEvictions());
+    Assertions.assertEquals(0.75, cache.getHitRate());
+
+    // modifying the input does not affect the cache
+    a[0] = 7;
+    Assertions.assertNull(cache.get(a));
+
+    // byte limit
+    OutputCache small = new OutputCache(100, 2 * OutputCache.bytes(a, new double[1]));
+    small.put(a, new double[1]);
+    small.put(b, new double[1]);
+    small.put(c, new double[1]);
+    Assertions.assertEquals(2, small.size());
+    Assertions.assertTrue(small.getBytes() <= 2 * OutputCache.bytes(a, new double[1]));
+  }
+
+  @Test
+  public void map() throws Exception {
+    PreprocessingMap map = PreprocessingMapTest.twoInputMap();
+
+    double[][] bolts = PyMADeserialisation.deserialiseMatrix(new FileInputStream("src/test/resources/com/github/waikatodatamining/androidmatrix/bolts.dat"));
+
+    double[][] expectedResponse = PyMADeserialisation.deserialiseMatrix(new FileInputStream("src/test/resources/com/github/waikatodatamining/androidmatrix/Stages-bolts.dat"));
+
+    MetricsRecorder recorder = new MetricsRecorder();
+    map.setMetrics(recorder);
+    map.setCache(10, 1024 * 1024);
+
+    Map<String, double[]> data = new HashMap<>();
+    for (int n = 0; n < 3; n++) {
+      for (int i = 0; i < 5; i++) {
+        data.put("one", bolts[i]);
+        data.put("two", bolts[i]);
+        Map<String, double[]> result = map.apply(data);
+        Assertions.assertArrayEquals(expectedResponse[i], result.get("one"));
+        Assertions.assertArrayEquals(expectedResponse[i], result.get("two"));
+      }
+    }
+
+    // the kernels only ran for the first round
+    Assertions.assertEquals(5, recorder.snapshot().getEntry("one", 0).getCount());
+    Assertions.assertEquals(10, map.getCache("one").getHits());
+    Assertions.assertEquals(5, map.getCache("two").getMisses());
+
+    map.setCache(0, 0);
+    Assertions.assertNull(map.getCache("one"));
+  }
+
+}
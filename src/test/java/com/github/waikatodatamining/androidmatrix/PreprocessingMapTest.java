@@ -0,0 +1,216 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * PreprocessingMapTest.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.waikatodatamining.androidmatrix;
+
+import org.junit.Test;
+import org.junit.jupiter.api.Assertions;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.nio.DoubleBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tests the PreprocessingMap class.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class PreprocessingMapTest {
+
+  /**
+   * Serialises a map with the inputs "one" and "two", both using the
+   * Stages.dat pipeline.
+   *
+   * @return		the serialised map
+   * @throws Exception	if reading the pipeline fails
+   */
+  public static byte[] twoInputMapBytes() throws Exception {
+    byte[] stages = Files.readAllBytes(Paths.get("src/test/resources/com/github/waikatodatamining/androidmatrix/Stages.dat"));
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    out.write(PyMADeserialisationTest.serialiseInts(2));
+    for (String name : new String[]{"one", "two"}) {
+      byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+      out.write(PyMADeserialisationTest.serialiseInts(bytes.length));
+      out.write(bytes);
+      out.write(stages);
+    }
+    return out.toByteArray();
+  }
+
+  /**
+   * Creates a map with the inputs "one" and "two", both using the
+   * Stages.dat pipeline.
+   *
+   * @return		the map
+   * @throws Exception	if reading the pipeline fails
+   */
+  public static PreprocessingMap twoInputMap() throws Exception {
+    return new PreprocessingMap(new ByteArrayInputStream(twoInputMapBytes()));
+  }
+
+  @Test
+  public void applyFrame() throws Exception {
+    PreprocessingMap map = twoInputMap();
+
+    double[][] bolts = PyMADeserialisation.deserialiseMatrix(new FileInputStream("src/test/resources/com/github/waikatodatamining/androidmatrix/bolts.dat"));
+
+    double[][] expectedResponse = PyMADeserialisation.deserialiseMatrix(new FileInputStream("src/test/resources/com/github/waikatodatamining/androidmatrix/Stages-bolts.dat"));
+
+    FeatureFrame frame = map.newFrame();
+    int one = frame.indexOf("one");
+    int two = frame.indexOf("two");
+    Assertions.assertEquals(-1, frame.indexOf("three"));
+    Assertions.assertThrows(IllegalStateException.class, () -> map.apply(frame));
+
+    for (int i = 0; i < bolts.length; i++) {
+      frame.set(one, bolts[i]);
+      frame.set(two, bolts[(i + 1) % bolts.length]);
+      double[] output = map.apply(frame);
+      Assertions.assertEquals(6, output.length);
+      Assertions.assertEquals(3, frame.getOutputOffset(two));
+      Assertions.assertEquals(3, frame.getOutputLength(one));
+      for (int n = 0; n < 3; n++) {
+        Assertions.assertEquals(expectedResponse[i][n], output[frame.getOutputOffset(one) + n]);
+        Assertions.assertEquals(expectedResponse[(i + 1) % bolts.length][n], output[frame.getOutputOffset(two) + n]);
+      }
+    }
+  }
+
+  @Test
+  public void applyBuffer() throws Exception {
+    PreprocessingMap map = twoInputMap();
+
+    double[][] bolts = PyMADeserialisation.deserialiseMatrix(new FileInputStream("src/test/resources/com/github/waikatodatamining/androidmatrix/bolts.dat"));
+
+    double[][] expectedResponse = PyMADeserialisation.deserialiseMatrix(new FileInputStream("src/test/resources/com/github/waikatodatamining/androidmatrix/Stages-bolts.dat"));
+
+    DoubleBuffer output = DoubleBuffer.allocate(6);
+    for (int i = 0; i < bolts.length; i++) {
+      output.clear();
+      map.apply(new DoubleBuffer[]{DoubleBuffer.wrap(bolts[i]), DoubleBuffer.wrap(bolts[(i + 1) % bolts.length])}, output);
+      Assertions.assertFalse(output.hasRemaining());
+      for (int n = 0; n < 3; n++) {
+        Assertions.assertEquals(expectedResponse[i][n], output.get(n));
+        Assertions.assertEquals(expectedResponse[(i + 1) % bolts.length][n], output.get(3 + n));
+      }
+    }
+
+    Assertions.assertThrows(IllegalArgumentException.class, () -> map.apply(new DoubleBuffer[1], DoubleBuffer.allocate(6)));
+  }
+
+  @Test
+  public void sharedPrefix() throws Exception {
+    PreprocessingStages full = new PreprocessingStages(new FileInputStream("src/test/resources/com/github/waikatodatamining/androidmatrix/Stages.dat"));
+    PreprocessingStages prefix = new PreprocessingStages(Arrays.copyOf(full.m_Stages, 3));
+    PreprocessingMap map = new PreprocessingMap(new String[]{"one", "two", "three"}, new PreprocessingStages[]{prefix, full, full});
+    Assertions.assertEquals(0, map.getSharedPrefixLength("one"));
+    Assertions.assertEquals(3, map.getSharedPrefixLength("two"));
+    Assertions.assertEquals(4, map.getSharedPrefixLength("three"));
+    Assertions.assertEquals(0, map.getSharedPrefixLength("four"));
+
+    double[][] bolts = PyMADeserialisation.deserialiseMatrix(new FileInputStream("src/test/resources/com/github/waikatodatamining/androidmatrix/bolts.dat"));
+    FeatureFrame frame = map.newFrame();
+    for (int i = 0; i < bolts.length; i++) {
+      double[] other = bolts[(i + 1) % bolts.length];
+
+      // same data for all inputs
+      Map<String, double[]> data = new HashMap<>();
+      data.put("one", bolts[i]);
+      data.put("two", bolts[i]);
+      data.put("three", bolts[i]);
+      Map<String, double[]> output = map.apply(data);
+      Assertions.assertArrayEquals(prefix.apply(bolts[i]), output.get("one"));
+      Assertions.assertArrayEquals(full.apply(bolts[i]), output.get("two"));
+      Assertions.assertArrayEquals(full.apply(bolts[i]), output.get("three"));
+      Assertions.assertNotSame(output.get("two"), output.get("three"));
+
+      // diverging data
+      data.put("two", other);
+      output = map.apply(data);
+      Assertions.assertArrayEquals(prefix.apply(bolts[i]), output.get("one"));
+      Assertions.assertArrayEquals(full.apply(other), output.get("two"));
+      Assertions.assertArrayEquals(full.apply(bolts[i]), output.get("three"));
+
+      // frames compare the content of the slots
+      frame.set(0, bolts[i]);
+      frame.set(1, other);
+      frame.set(2, other);
+      double[] vector = map.apply(frame);
+      Assertions.assertArrayEquals(prefix.apply(bolts[i]), Arrays.copyOfRange(vector, 0, 3));
+      Assertions.assertArrayEquals(full.apply(other), Arrays.copyOfRange(vector, 3, 6));
+      Assertions.assertArrayEquals(full.apply(other), Arrays.copyOfRange(vector, 6, 9));
+    }
+  }
+
+  @Test
+  public void selectOutputs() throws Exception {
+    PreprocessingMap map = twoInputMap();
+    PreprocessingStages stages = new PreprocessingStages(new FileInputStream("src/test/resources/com/github/waikatodatamining/androidmatrix/Stages.dat"));
+
+    double[][] bolts = PyMADeserialisation.deserialiseMatrix(new FileInputStream("src/test/resources/com/github/waikatodatamining/androidmatrix/bolts.dat"));
+
+    // only the requested output, without supplying the other input
+    Map<String, double[]> data = new HashMap<>();
+    data.put("two", bolts[0]);
+    Map<String, double[]> output = map.apply(data, Collections.singleton("two"));
+    Assertions.assertEquals(1, output.size());
+    Assertions.assertArrayEquals(stages.apply(bolts[0]), output.get("two"));
+    Assertions.assertThrows(IllegalArgumentException.class, () -> map.apply(data, Collections.singleton("three")));
+    Assertions.assertThrows(IllegalStateException.class, () -> map.apply(data));
+
+    // precompiled subset
+    PreprocessingMap subset = map.select("two");
+    Assertions.assertArrayEquals(new String[]{"two"}, subset.getOrdering());
+    double[][] ordered = subset.applyOrdered(data);
+    Assertions.assertEquals(1, ordered.length);
+    Assertions.assertArrayEquals(stages.apply(bolts[0]), ordered[0]);
+    Assertions.assertThrows(IllegalArgumentException.class, () -> map.select("one", "three"));
+    Assertions.assertThrows(IllegalArgumentException.class, () -> map.select("one", "one"));
+  }
+
+  @Test
+  public void warmUp() throws Exception {
+    PreprocessingMap map = twoInputMap();
+
+    map.setCache(16, 1 << 20);
+    MetricsRecorder recorder = new MetricsRecorder();
+    map.setMetrics(recorder);
+
+    WarmUpReport report = map.warmUp(1000);
+    Assertions.assertEquals(1000, report.getIterations());
+
+    // Neither cached nor recorded
+    for (String name : map.getOrdering()) {
+      Assertions.assertEquals(0, map.getCache(name).size());
+      Assertions.assertEquals(0, map.getCache(name).getMisses());
+    }
+    for (MetricsSnapshot.Entry entry : recorder.snapshot().getEntries())
+      Assertions.assertEquals(0, entry.getCount());
+  }
+
+}
@@ -24,6 +24,9 @@ import org.junit.Test;
 import org.junit.jupiter.api.Assertions;
 
 import java.io.FileInputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
 
 /**
  * Tests the PreprocessingStages class.
@@ -46,4 +49,140 @@ public class PreprocessingStagesTest {
 
   }
 
+  @Test
+  public void applyBatch() throws Exception {
+
+    PreprocessingStages stages = new PreprocessingStages(new FileInputStream("src/test/resources/com/github/waikatodatamining/androidmatrix/Stages.dat"));
+
+    double[][] bolts = PyMADeserialisation.deserialiseMatrix(new FileInputStream("src/test/resources/com/github/waikatodatamining/androidmatrix/bolts.dat"));
+
+    double[][] expectedResponse = PyMADeserialisation.deserialiseMatrix(new FileInputStream("src/test/resources/com/github/waikatodatamining/androidmatrix/Stages-bolts.dat"));
+
+    double[][] data = bolts.clone();
+    data[0] = new double[5];
+
+    BatchResult result = stages.applyBatch(data, RowPolicy.NAN);
+    Assertions.assertFalse(result.isValid(0));
+    Assertions.assertEquals(bolts.length - 1, result.getNumValid());
+    Assertions.assertEquals(3, result.getRows()[0].length);
+    Assertions.assertTrue(Double.isNaN(result.getRows()[0][0]));
+    for (int i = 1; i < bolts.length; i++)
+      Assertions.assertArrayEquals(expectedResponse[i], result.getRows()[i]);
+
+  }
+
+  @Test
+  public void applyColumnar() throws Exception {
+
+    PreprocessingStages stages = new PreprocessingStages(new FileInputStream("src/test/resources/com/github/waikatodatamining/androidmatrix/Stages.dat"));
+
+    double[][] bolts = PyMADeserialisation.deserialiseMatrix(new FileInputStream("src/test/resources/com/github/waikatodatamining/androidmatrix/bolts.dat"));
+
+    double[][] expectedResponse = PyMADeserialisation.deserialiseMatrix(new FileInputStream("src/test/resources/com/github/waikatodatamining/androidmatrix/Stages-bolts.dat"));
+
+    double[][] response = stages.applyColumnar(ColumnarBatch.fromRows(bolts)).toRows();
+    for (int i = 0; i < bolts.length; i++)
+      Assertions.assertArrayEquals(expectedResponse[i], response[i]);
+
+  }
+
+  @Test
+  public void warmUp() throws Exception {
+
+    PreprocessingStages stages = new PreprocessingStages(new FileInputStream("src/test/resources/com/github/waikatodatamining/androidmatrix/Stages.dat"));
+
+    Assertions.assertEquals(7, stages.getInputWidth());
+    Assertions.assertEquals(7, stages.sampleInputs(1)[0].length);
+
+    WarmUpReport report = stages.warmUp(2000);
+    Assertions.assertEquals(2000, report.getIterations());
+    Assertions.assertTrue(report.getTotalNanos() > 0);
+
+  }
+
+  @Test
+  public void compile() throws Exception {
+
+    PreprocessingStages stages = new PreprocessingStages(new FileInputStream("src/test/resources/com/github/waikatodatamining/androidmatrix/Stages.dat"));
+
+    double[][] bolts = PyMADeserialisation.deserialiseMatrix(new FileInputStream("src/test/resources/com/github/waikatodatamining/androidmatrix/bolts.dat"));
+
+    double[][] expectedResponse = PyMADeserialisation.deserialiseMatrix(new FileInputStream("src/test/resources/com/github/waikatodatamining/androidmatrix/Stages-bolts.dat"));
+
+    ExecutionPlan plan = stages.compile();
+    Assertions.assertEquals(7, plan.getInputWidth());
+    Assertions.assertEquals(5, plan.getOutputWidth(1));
+    Assertions.assertEquals(3, plan.getOutputWidth());
+
+    double[] result = new double[plan.getOutputWidth()];
+    for (int i = 0; i < bolts.length; i++) {
+      Assertions.assertArrayEquals(expectedResponse[i], plan.apply(bolts[i]));
+      plan.copy().apply(bolts[i], result);
+      Assertions.assertArrayEquals(expectedResponse[i], result);
+    }
+
+    Assertions.assertThrows(IllegalArgumentException.class, () -> plan.apply(new double[5]));
+
+  }
+
+  @Test
+  public void incompatible() throws Exception {
+
+    PreprocessingStages stages = new PreprocessingStages(new FileInputStream("src/test/resources/com/github/waikatodatamining/androidmatrix/Stages.dat"));
+
+    // Standardize for 7 columns followed by Standardize for 3 columns
+    IllegalArgumentException e = Assertions.assertThrows(IllegalArgumentException.class,
+      () -> new PreprocessingStages(stages.m_Stages[0], stages.m_Stages[3]));
+    Assertions.assertTrue(e.getMessage().startsWith("Stage 1 (Standardize)"));
+
+    // Savitzky-Golay with a window wider than its input
+    PreprocessingStages filter = new PreprocessingStages(stages.m_Stages[1], stages.m_Stages[2]);
+    Assertions.assertEquals(3, filter.compile(7).getOutputWidth());
+    Assertions.assertThrows(IllegalArgumentException.class, () -> filter.compile(4));
+    Assertions.assertThrows(IllegalArgumentException.class, filter::compile);
+
+  }
+
+  @Test
+  public void applyBuffer() throws Exception {
+
+    PreprocessingStages stages = new PreprocessingStages(new FileInputStream("src/test/resources/com/github/waikatodatamining/androidmatrix/Stages.dat"));
+
+    double[][] bolts = PyMADeserialisation.deserialiseMatrix(new FileInputStream("src/test/resources/com/github/waikatodatamining/androidmatrix/bolts.dat"));
+
+    double[][] expectedResponse = PyMADeserialisation.deserialiseMatrix(new FileInputStream("src/test/resources/com/github/waikatodatamining/androidmatrix/Stages-bolts.dat"));
+
+    // Little-endian direct buffers, as in the PyMA layout
+    ByteBuffer input = ByteBuffer.allocateDirect(bolts.length * 7 * Double.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    for (double[] row : bolts)
+      for (double value : row)
+        input.putDouble(value);
+    input.flip();
+    ByteBuffer output = ByteBuffer.allocateDirect(bolts.length * 3 * Double.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    DoubleBuffer planOutput = DoubleBuffer.allocate(bolts.length * 3);
+    ExecutionPlan plan = stages.compile();
+
+    for (int i = 0; i < bolts.length; i++) {
+      input.limit((i + 1) * 7 * Double.BYTES);
+      DoubleBuffer row = input.asDoubleBuffer();
+      stages.apply(input, output);
+      plan.apply(row, planOutput);
+      Assertions.assertEquals((i + 1) * 3 * Double.BYTES, output.position());
+      Assertions.assertFalse(row.hasRemaining());
+    }
+
+    output.flip();
+    planOutput.flip();
+    for (int i = 0; i < bolts.length; i++) {
+      for (int n = 0; n < 3; n++) {
+        Assertions.assertEquals(expectedResponse[i][n], output.getDouble());
+        Assertions.assertEquals(expectedResponse[i][n], planOutput.get());
+      }
+    }
+
+    Assertions.assertThrows(IllegalArgumentException.class, () -> stages.apply(DoubleBuffer.allocate(5), DoubleBuffer.allocate(3)));
+    Assertions.assertThrows(IllegalArgumentException.class, () -> stages.apply(DoubleBuffer.wrap(bolts[0]), DoubleBuffer.allocate(2)));
+
+  }
+
 }
@@ -24,11 +24,15 @@ import org.junit.Test;
 import org.junit.jupiter.api.Assertions;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.zip.InflaterInputStream;
 
 /**
  * Tests the PyMADeserialisation class.
@@ -82,6 +86,80 @@ public class PyMADeserialisationTest{
     Assertions.assertEquals(35.61, bolts[21][6]);
   }
 
+  @Test
+  public void serialise() throws IOException {
+    double[][] bolts = PyMADeserialisation.deserialiseMatrix(new FileInputStream("src/test/resources/com/github/waikatodatamining/androidmatrix/bolts.dat"));
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    PyMASerialisation.serialiseString(out, "bolts");
+    PyMASerialisation.serialiseMatrix(out, bolts);
+
+    InputStream input = new ByteArrayInputStream(out.toByteArray());
+    Assertions.assertEquals("bolts", PyMADeserialisation.deserialiseString(input));
+    Assertions.assertArrayEquals(bolts, PyMADeserialisation.deserialiseMatrix(input));
+  }
+
+  @Test
+  public void compressed() throws IOException {
+    byte[] raw = Files.readAllBytes(Paths.get("src/test/resources/com/github/waikatodatamining/androidmatrix/Stages.dat"));
+    PreprocessingStages expected = new PreprocessingStages(new ByteArrayInputStream(raw));
+
+    for (boolean zlib : new boolean[]{false, true}) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      ModelCompressor.compress(new ByteArrayInputStream(raw), out, zlib);
+      byte[] compressed = out.toByteArray();
+      Assertions.assertTrue(compressed.length < raw.length);
+
+      // Deliver the data in small parts, like slow streams do
+      InputStream slow = new ByteArrayInputStream(compressed) {
+        @Override
+        public synchronized int read(byte[] b, int off, int len) {
+          return super.read(b, off, Math.min(len, 3));
+        }
+      };
+      PreprocessingStages stages = new PreprocessingStages(zlib ? new InflaterInputStream(slow) : slow);
+      Assertions.assertArrayEquals(((Standardize) expected.m_Stages[0]).m_ColumnMeans, ((Standardize) stages.m_Stages[0]).m_ColumnMeans);
+      Assertions.assertArrayEquals(((Standardize) expected.m_Stages[3]).m_ColumnStdDevs, ((Standardize) stages.m_Stages[3]).m_ColumnStdDevs);
+      Assertions.assertArrayEquals(((SavitzkyGolay) expected.m_Stages[1]).m_Coefficients, ((SavitzkyGolay) stages.m_Stages[1]).m_Coefficients);
+    }
+
+    // Raw streams are left untouched, even if their count looks like a zlib header (376 stages)
+    Assertions.assertEquals(raw[0], PyMADeserialisation.open(new ByteArrayInputStream(raw)).read());
+    byte[] count = {0x78, 0x01, 0x00, 0x00};
+    InputStream opened = PyMADeserialisation.open(new ByteArrayInputStream(count));
+    Assertions.assertFalse(opened instanceof InflaterInputStream);
+    Assertions.assertEquals(376, PyMADeserialisation.deserialiseInts(opened, 1)[0]);
+  }
+
+  @Test
+  public void intern() throws Exception {
+    MatrixInterner interner = new MatrixInterner();
+    PreprocessingStages first = new PreprocessingStages(interner.wrap(new FileInputStream("src/test/resources/com/github/waikatodatamining/androidmatrix/Stages.dat")));
+    ModelLoader loader = new ModelLoader();
+    loader.setInterner(interner);
+    PreprocessingStages second = loader.loadStages(new FileInputStream("src/test/resources/com/github/waikatodatamining/androidmatrix/Stages.dat")).get();
+
+    // both SavitzkyGolay stages of a pipeline share their coefficients as well
+    Assertions.assertSame(((Standardize) first.m_Stages[0]).m_ColumnMeans, ((Standardize) second.m_Stages[0]).m_ColumnMeans);
+    Assertions.assertSame(((SavitzkyGolay) first.m_Stages[1]).m_Coefficients, ((SavitzkyGolay) first.m_Stages[2]).m_Coefficients);
+    Assertions.assertTrue(interner.getBytesSaved() > 0);
+    Assertions.assertTrue(interner.getNumVectors() > 0);
+
+    // streams not wrapped by the interner are left alone
+    PreprocessingStages third = new PreprocessingStages(new FileInputStream("src/test/resources/com/github/waikatodatamining/androidmatrix/Stages.dat"));
+    Assertions.assertNotSame(((Standardize) first.m_Stages[0]).m_ColumnMeans, ((Standardize) third.m_Stages[0]).m_ColumnMeans);
+
+    // discarded models do not stay pinned by the interner
+    first = null;
+    second = null;
+    long end = System.currentTimeMillis() + 10000;
+    while ((interner.getNumVectors() > 0) && (System.currentTimeMillis() < end)) {
+      System.gc();
+      Thread.sleep(10);
+    }
+    Assertions.assertEquals(0, interner.getNumVectors());
+  }
+
   /**
    * Serialises some ints to a byte array.
    *
@@ -0,0 +1,70 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * SIMPLSEnsembleTest.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.waikatodatamining.androidmatrix;
+
+import org.junit.Test;
+import org.junit.jupiter.api.Assertions;
+
+import java.io.FileInputStream;
+
+/**
+ * Tests the SIMPLSEnsemble class.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class SIMPLSEnsembleTest {
+
+  @Test
+  public void apply() throws Exception {
+    SIMPLS simpls = new SIMPLS(new FileInputStream("src/test/resources/com/github/waikatodatamining/androidmatrix/SIMPLS.dat"));
+    PreprocessingStages pipeline = new PreprocessingStages(new FileInputStream("src/test/resources/com/github/waikatodatamining/androidmatrix/Stages.dat"));
+    AbstractAlgorithm standardize = new PreprocessingStages(new FileInputStream("src/test/resources/com/github/waikatodatamining/androidmatrix/Stages.dat")).m_Stages[0];
+
+    PreprocessingStages[] models = new PreprocessingStages[]{
+      new PreprocessingStages(pipeline.m_Stages[0], simpls),
+      new PreprocessingStages(simpls),
+      pipeline,
+      new PreprocessingStages(standardize, simpls.truncate(2)),
+    };
+    SIMPLSEnsemble ensemble = new SIMPLSEnsemble(models);
+    Assertions.assertEquals(4, ensemble.getNumModels());
+    Assertions.assertEquals(3, ensemble.getNumPasses());
+    // models without partners are used as is, only the first and last model get stacked
+    Assertions.assertNotNull(ensemble.m_Groups[0].m_Stacked);
+    for (int i = 1; i < ensemble.m_Groups.length; i++) {
+      Assertions.assertNull(ensemble.m_Groups[i].m_Stacked);
+      Assertions.assertSame(models[ensemble.m_Groups[i].m_Models[0]], ensemble.m_Groups[i].m_Upstream);
+    }
+
+    double[][] bolts = PyMADeserialisation.deserialiseMatrix(new FileInputStream("src/test/resources/com/github/waikatodatamining/androidmatrix/bolts.dat"));
+    for (double[] row : bolts) {
+      double[][] outputs = ensemble.applyModels(row);
+      Assertions.assertEquals(models.length, outputs.length);
+      int length = 0;
+      for (int i = 0; i < models.length; i++) {
+        Assertions.assertArrayEquals(models[i].apply(row), outputs[i]);
+        length += outputs[i].length;
+      }
+      Assertions.assertEquals(length, ensemble.apply(row).length);
+    }
+  }
+
+}
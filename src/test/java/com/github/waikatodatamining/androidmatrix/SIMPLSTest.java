@@ -23,7 +23,12 @@ package com.github.waikatodatamining.androidmatrix;
 import org.junit.Test;
 import org.junit.jupiter.api.Assertions;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.FileInputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Tests the SIMPLS algorithm.
@@ -45,4 +50,77 @@ public class SIMPLSTest {
 
   }
 
+  @Test
+  public void truncate() throws Exception {
+    SIMPLS simpls = new SIMPLS(new FileInputStream("src/test/resources/com/github/waikatodatamining/androidmatrix/SIMPLS.dat"));
+
+    double[][] bolts = PyMADeserialisation.deserialiseMatrix(new FileInputStream("src/test/resources/com/github/waikatodatamining/androidmatrix/bolts.dat"));
+
+    double[][] expectedResponse = PyMADeserialisation.deserialiseMatrix(new FileInputStream("src/test/resources/com/github/waikatodatamining/androidmatrix/SIMPLS-bolts.dat"));
+
+    SIMPLS truncated = simpls.truncate(2);
+    Assertions.assertSame(simpls.m_W, truncated.m_W);
+    Assertions.assertEquals(2, truncated.getOutputWidth(7));
+
+    for (int i = 0; i < bolts.length; i++) {
+      double[] expected = new double[]{expectedResponse[i][0], expectedResponse[i][1]};
+      Assertions.assertArrayEquals(expected, truncated.apply(bolts[i]), 1e-15);
+      Assertions.assertArrayEquals(expected, simpls.apply(bolts[i], 2), 1e-15);
+    }
+
+    Assertions.assertThrows(IllegalArgumentException.class, () -> simpls.truncate(0));
+    Assertions.assertThrows(IllegalArgumentException.class, () -> simpls.apply(bolts[0], 6));
+  }
+
+  @Test
+  public void parallel() throws Exception {
+    int width = 20000;
+    SyntheticModelGenerator generator = new SyntheticModelGenerator(1);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    generator.writeSIMPLS(out, width, 8);
+    SIMPLS simpls = new SIMPLS(new ByteArrayInputStream(out.toByteArray()));
+    SIMPLS single = simpls.truncate(1);
+    double[][] data = generator.generateData(5, width);
+
+    ExecutorService executor = Executors.newFixedThreadPool(3);
+    try {
+      ParallelExecution parallel = new ParallelExecution(executor, 4, 1000);
+      Assertions.assertEquals(4, parallel.numRanges((long) width * 8, 8));
+      Assertions.assertEquals(1, parallel.numRanges(999, 8));
+      for (double[] row : data) {
+        double[] expected = simpls.apply(row);
+        double[] expectedSingle = single.apply(row);
+        simpls.setParallelExecution(parallel);
+        single.setParallelExecution(parallel);
+
+        // partitions the components
+        Assertions.assertArrayEquals(expected, simpls.apply(row));
+
+        // reduces the partial sums of blocks of the input
+        Assertions.assertArrayEquals(expectedSingle, single.apply(row), 1e-12);
+
+        simpls.setParallelExecution(null);
+        single.setParallelExecution(null);
+      }
+
+      // waits for the other ranges if the calling thread's range fails
+      AtomicInteger finished = new AtomicInteger();
+      Assertions.assertThrows(IllegalStateException.class, () -> parallel.run(4, 4, (index, from, to) -> {
+        if (index == 0)
+          throw new IllegalStateException("Range " + index + " failed");
+        try {
+          Thread.sleep(50);
+        }
+        catch (InterruptedException e) {
+          throw new IllegalStateException(e);
+        }
+        finished.incrementAndGet();
+      }));
+      Assertions.assertEquals(3, finished.get());
+    }
+    finally {
+      executor.shutdown();
+    }
+  }
+
 }
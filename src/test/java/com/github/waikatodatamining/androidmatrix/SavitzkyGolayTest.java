@@ -23,7 +23,11 @@ package com.github.waikatodatamining.androidmatrix;
 import org.junit.Test;
 import org.junit.jupiter.api.Assertions;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.FileInputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Tests the SavitzkyGolay class.
@@ -45,4 +49,28 @@ public class SavitzkyGolayTest {
 
   }
 
+  @Test
+  public void parallel() throws Exception {
+    int width = 20000;
+    SyntheticModelGenerator generator = new SyntheticModelGenerator(1);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    generator.writeSavitzkyGolay(out);
+    SavitzkyGolay sg = new SavitzkyGolay(new ByteArrayInputStream(out.toByteArray()));
+    double[][] data = generator.generateData(5, width);
+
+    ExecutorService executor = Executors.newFixedThreadPool(3);
+    try {
+      ParallelExecution parallel = new ParallelExecution(executor, 4, 1000);
+      for (double[] row : data) {
+        double[] expected = sg.apply(row);
+        sg.setParallelExecution(parallel);
+        Assertions.assertArrayEquals(expected, sg.apply(row));
+        sg.setParallelExecution(null);
+      }
+    }
+    finally {
+      executor.shutdown();
+    }
+  }
+
 }
@@ -0,0 +1,176 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * ScalingTest.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.waikatodatamining.androidmatrix;
+
+import org.junit.AfterClass;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.jupiter.api.Assertions;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs the algorithms on synthetic models of growing size and reports load
+ * time, memory footprint and throughput to target/surefire-reports/ScalingTest-report.txt.
+ * Only runs if the "scaling" system property is set to true (e.g.,
+ * mvn test -Dscaling=true), the largest width can be set with the
+ * "scaling.maxWidth" system property.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class ScalingTest {
+
+  /** the number of components. */
+  public static final int NUM_COMPONENTS = 50;
+
+  /** the number of rows to score. */
+  public static final int NUM_ROWS = 200;
+
+  /** the file to write the report to. */
+  public static final File REPORT = new File("target/surefire-reports/ScalingTest-report.txt");
+
+  /** the lines of the report. */
+  protected static final List<String> m_Report = new ArrayList<>();
+
+  /**
+   * Skips the tests unless enabled.
+   */
+  @Before
+  public void enabled() {
+    Assume.assumeTrue("Set -Dscaling=true to run", Boolean.getBoolean("scaling"));
+  }
+
+  /**
+   * Adds a line to the report, after checking the measurements.
+   *
+   * @param name	the name of the model
+   * @param size	the size of the serialised model in bytes
+   * @param loadNanos	the load time
+   * @param memory	the memory footprint in bytes
+   * @param rowsPerSecond	the throughput
+   */
+  protected static void report(String name, int size, long loadNanos, long memory, double rowsPerSecond) {
+    // The model is made up of doubles, which take up about the same space on the heap
+    Assertions.assertTrue(loadNanos > 0);
+    Assertions.assertTrue(memory >= size * 0.9, name + ": heap=" + memory + ", file=" + size);
+    Assertions.assertTrue(memory <= size * 1.5, name + ": heap=" + memory + ", file=" + size);
+    Assertions.assertTrue(rowsPerSecond > 0);
+
+    synchronized (m_Report) {
+      m_Report.add(String.format("%-24s file=%10d bytes  load=%8.2f ms  heap=%10d bytes  throughput=%10.0f rows/sec",
+        name, size, loadNanos / 1e6, memory, rowsPerSecond));
+    }
+  }
+
+  /**
+   * Writes the report, if any tests ran.
+   *
+   * @throws IOException	if writing fails
+   */
+  @AfterClass
+  public static void writeReport() throws IOException {
+    synchronized (m_Report) {
+      if (m_Report.isEmpty())
+        return;
+      REPORT.getParentFile().mkdirs();
+      try (PrintWriter writer = new PrintWriter(new FileWriter(REPORT))) {
+        for (String line : m_Report)
+          writer.println(line);
+      }
+      m_Report.clear();
+    }
+  }
+
+  @Test
+  public void stages() throws Exception {
+    int maxWidth = Integer.getInteger("scaling.maxWidth", 20000);
+    SyntheticModelGenerator generator = new SyntheticModelGenerator(1);
+
+    for (int width = 2000; width <= maxWidth; width *= 10) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      generator.writeStages(out, width, NUM_COMPONENTS);
+      byte[] model = out.toByteArray();
+      double[][] data = generator.generateData(NUM_ROWS, width);
+
+      // Load
+      long start = System.nanoTime();
+      PreprocessingStages stages = new PreprocessingStages(new ByteArrayInputStream(model));
+      long loadNanos = System.nanoTime() - start;
+      long memory = stages.getRetainedBytes();
+      Assertions.assertEquals(width, stages.getInputWidth());
+      Assertions.assertEquals(NUM_COMPONENTS, stages.getOutputWidth(width));
+
+      // Score
+      ExecutionPlan plan = stages.compile();
+      Assertions.assertArrayEquals(stages.apply(data[0]), plan.apply(data[0]));
+      start = System.nanoTime();
+      for (double[] row : data) {
+        for (double value : plan.apply(row))
+          Assertions.assertFalse(Double.isNaN(value));
+      }
+      double rowsPerSecond = NUM_ROWS * 1e9 / (System.nanoTime() - start);
+
+      report("stages width=" + width, model.length, loadNanos, memory, rowsPerSecond);
+    }
+  }
+
+  @Test
+  public void map() throws Exception {
+    int width = 500;
+    SyntheticModelGenerator generator = new SyntheticModelGenerator(1);
+
+    for (int numInputs = 1; numInputs <= 100; numInputs *= 10) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      generator.writeMap(out, numInputs, width, NUM_COMPONENTS);
+      byte[] model = out.toByteArray();
+      double[] row = generator.generateData(1, width)[0];
+
+      // Load
+      long start = System.nanoTime();
+      PreprocessingMap map = new PreprocessingMap(new ByteArrayInputStream(model));
+      long loadNanos = System.nanoTime() - start;
+      long memory = map.getRetainedBytes();
+      Assertions.assertEquals(numInputs, map.getOrdering().length);
+
+      // Score
+      Map<String, double[]> data = new HashMap<>();
+      for (String name : map.getOrdering())
+        data.put(name, row);
+      start = System.nanoTime();
+      for (int i = 0; i < NUM_ROWS; i++)
+        Assertions.assertEquals(numInputs, map.apply(data).size());
+      double rowsPerSecond = NUM_ROWS * 1e9 / (System.nanoTime() - start);
+
+      report("map inputs=" + numInputs, model.length, loadNanos, memory, rowsPerSecond);
+    }
+  }
+
+}
@@ -0,0 +1,104 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * ShardedBatchRunnerTest.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.waikatodatamining.androidmatrix;
+
+import org.junit.Test;
+import org.junit.jupiter.api.Assertions;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests the ShardedBatchRunner class.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class ShardedBatchRunnerTest {
+
+  /**
+   * Runner whose workers fail for the first attempts of shard 1.
+   */
+  protected static class FailingRunner
+    extends ShardedBatchRunner {
+
+    /** the number of attempts to fail. */
+    protected final int m_NumFailures;
+
+    /** the number of started workers. */
+    protected final AtomicInteger m_NumStarted = new AtomicInteger();
+
+    /** the number of started workers for shard 1. */
+    protected final AtomicInteger m_NumAttempts = new AtomicInteger();
+
+    /**
+     * Initializes the runner.
+     *
+     * @param numFailures	the number of attempts to fail
+     */
+    protected FailingRunner(int numFailures) {
+      super(new File("src/test/resources/com/github/waikatodatamining/androidmatrix/Stages.dat"), false, 3);
+      m_NumFailures = numFailures;
+    }
+
+    @Override
+    protected List<String> command(Shard shard, File input, File output) {
+      m_NumStarted.incrementAndGet();
+      List<String> result = super.command(shard, input, output);
+      if ((shard.getIndex() == 1) && (m_NumAttempts.getAndIncrement() < m_NumFailures))
+        result.set(result.size() - 3, "does-not-exist.dat");
+      return result;
+    }
+  }
+
+  @Test
+  public void run() throws Exception {
+    double[][] expectedResponse = PyMADeserialisation.deserialiseMatrix(new FileInputStream("src/test/resources/com/github/waikatodatamining/androidmatrix/Stages-bolts.dat"));
+
+    File output = File.createTempFile("sharded", ".dat");
+    output.deleteOnExit();
+
+    // shard 1 fails once and gets restarted
+    FailingRunner runner = new FailingRunner(1);
+    BulkScorer.Result result = runner.run(new File("src/test/resources/com/github/waikatodatamining/androidmatrix/bolts.dat"), output);
+    Assertions.assertEquals(expectedResponse.length, result.getNumRows());
+    Assertions.assertEquals(4, runner.m_NumStarted.get());
+    for (ShardedBatchRunner.Shard shard : runner.split(expectedResponse.length))
+      Assertions.assertFalse(runner.logFile(shard, output).exists());
+
+    double[][] response = PyMADeserialisation.deserialiseMatrix(new FileInputStream(output));
+    Assertions.assertEquals(expectedResponse.length, response.length);
+    for (int i = 0; i < expectedResponse.length; i++)
+      Assertions.assertArrayEquals(expectedResponse[i], response[i]);
+
+    // shard 1 fails every attempt
+    FailingRunner failing = new FailingRunner(ShardedBatchRunner.DEFAULT_MAX_ATTEMPTS);
+    Assertions.assertThrows(IOException.class, () -> failing.run(new File("src/test/resources/com/github/waikatodatamining/androidmatrix/bolts.dat"), output));
+    File log = failing.logFile(failing.split(expectedResponse.length).get(1), output);
+    Assertions.assertTrue(log.exists());
+    Assertions.assertTrue(new String(Files.readAllBytes(log.toPath())).contains("attempt " + ShardedBatchRunner.DEFAULT_MAX_ATTEMPTS + "/"));
+    Assertions.assertTrue(log.delete());
+  }
+
+}
@@ -58,4 +58,18 @@ public class StandardizeTest {
 
   }
 
+  @Test
+  public void applyColumnar() throws Exception {
+    Standardize standardize = new Standardize(new FileInputStream("src/test/resources/com/github/waikatodatamining/androidmatrix/Standardize.dat"));
+
+    double[][] bolts = PyMADeserialisation.deserialiseMatrix(new FileInputStream("src/test/resources/com/github/waikatodatamining/androidmatrix/bolts.dat"));
+
+    double[][] expectedResponse = PyMADeserialisation.deserialiseMatrix(new FileInputStream("src/test/resources/com/github/waikatodatamining/androidmatrix/Standardize-bolts.dat"));
+
+    double[][] response = standardize.applyColumnar(ColumnarBatch.fromRows(bolts)).toRows();
+    for (int i = 0; i < bolts.length; i++)
+      Assertions.assertArrayEquals(expectedResponse[i], response[i]);
+
+  }
+
 }
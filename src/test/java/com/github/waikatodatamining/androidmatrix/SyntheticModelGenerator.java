@@ -0,0 +1,258 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * SyntheticModelGenerator.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.waikatodatamining.androidmatrix;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+
+/**
+ * Generates valid PyMA-format models and matching data at configurable
+ * scale. The pipelines resemble spectral models: Log, Standardize,
+ * Savitzky-Golay smoothing and SIMPLS. The data consists of smooth,
+ * strictly positive spectra. All output is seeded and reproducible.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class SyntheticModelGenerator {
+
+  /** the default window of the Savitzky-Golay stage. */
+  public static final int DEFAULT_WINDOW = 7;
+
+  /** the random number generator. */
+  protected final Random m_Random;
+
+  /** the window of the Savitzky-Golay stage. */
+  protected int m_Window;
+
+  /**
+   * Initializes the generator.
+   *
+   * @param seed	the seed for the random number generator
+   */
+  public SyntheticModelGenerator(long seed) {
+    m_Random = new Random(seed);
+    m_Window = DEFAULT_WINDOW;
+  }
+
+  /**
+   * Sets the window of the Savitzky-Golay stage.
+   *
+   * @param value	the window, odd
+   */
+  public void setWindow(int value) {
+    m_Window = value;
+  }
+
+  /**
+   * Returns the output width of the pipelines for the input width.
+   *
+   * @param width	the number of wavelengths
+   * @return		the width after smoothing
+   */
+  public int getSmoothedWidth(int width) {
+    return width - m_Window + 1;
+  }
+
+  /**
+   * Writes the state of a Log stage (natural logarithm, offset 1).
+   *
+   * @param out		the stream to write to
+   * @throws IOException	if writing fails
+   */
+  public void writeLog(OutputStream out) throws IOException {
+    PyMASerialisation.serialiseDoubles(out, Math.E, 1.0, 1.0);
+  }
+
+  /**
+   * Writes the state of a Standardize stage.
+   *
+   * @param out		the stream to write to
+   * @param width	the number of columns
+   * @throws IOException	if writing fails
+   */
+  public void writeStandardize(OutputStream out, int width) throws IOException {
+    double[] means = new double[width];
+    double[] stdDevs = new double[width];
+    for (int i = 0; i < width; i++) {
+      means[i] = 0.5 + 0.1 * m_Random.nextGaussian();
+      stdDevs[i] = 0.1 + m_Random.nextDouble();
+    }
+    PyMASerialisation.serialiseOneDimensionalMatrix(out, means);
+    PyMASerialisation.serialiseOneDimensionalMatrix(out, stdDevs);
+  }
+
+  /**
+   * Writes the state of a Savitzky-Golay stage (moving average).
+   *
+   * @param out		the stream to write to
+   * @throws IOException	if writing fails
+   */
+  public void writeSavitzkyGolay(OutputStream out) throws IOException {
+    double[] coefficients = new double[m_Window];
+    for (int i = 0; i < m_Window; i++)
+      coefficients[i] = 1.0 / m_Window;
+    PyMASerialisation.serialiseOneDimensionalMatrix(out, coefficients);
+  }
+
+  /**
+   * Writes the state of a SIMPLS stage.
+   *
+   * @param out		the stream to write to
+   * @param width	the number of columns
+   * @param numComponents	the number of components
+   * @throws IOException	if writing fails
+   */
+  public void writeSIMPLS(OutputStream out, int width, int numComponents) throws IOException {
+    double[][] loadings = new double[width][numComponents];
+    for (double[] row : loadings) {
+      for (int i = 0; i < numComponents; i++)
+        row[i] = m_Random.nextGaussian() / Math.sqrt(width);
+    }
+    PyMASerialisation.serialiseMatrix(out, loadings);
+  }
+
+  /**
+   * Writes a pipeline of Log, Standardize, Savitzky-Golay and SIMPLS.
+   *
+   * @param out		the stream to write to
+   * @param width	the number of wavelengths
+   * @param numComponents	the number of components
+   * @throws IOException	if writing fails
+   */
+  public void writeStages(OutputStream out, int width, int numComponents) throws IOException {
+    PyMASerialisation.serialiseInts(out, 4);
+    PyMASerialisation.serialiseString(out, "Log");
+    writeLog(out);
+    PyMASerialisation.serialiseString(out, "Standardize");
+    writeStandardize(out, width);
+    PyMASerialisation.serialiseString(out, "SavitzkyGolay");
+    writeSavitzkyGolay(out);
+    PyMASerialisation.serialiseString(out, "SIMPLS");
+    writeSIMPLS(out, getSmoothedWidth(width), numComponents);
+  }
+
+  /**
+   * Writes a map with the specified number of inputs, named "input0",
+   * "input1", etc, each using its own pipeline.
+   *
+   * @param out		the stream to write to
+   * @param numInputs	the number of inputs
+   * @param width	the number of wavelengths
+   * @param numComponents	the number of components
+   * @throws IOException	if writing fails
+   */
+  public void writeMap(OutputStream out, int numInputs, int width, int numComponents) throws IOException {
+    PyMASerialisation.serialiseInts(out, numInputs);
+    for (int i = 0; i < numInputs; i++) {
+      PyMASerialisation.serialiseString(out, "input" + i);
+      writeStages(out, width, numComponents);
+    }
+  }
+
+  /**
+   * Generates smooth, strictly positive spectra.
+   *
+   * @param numRows	the number of spectra
+   * @param width	the number of wavelengths
+   * @return		the spectra
+   */
+  public double[][] generateData(int numRows, int width) {
+    double[][] result = new double[numRows][width];
+    for (double[] row : result) {
+      double phase = m_Random.nextDouble() * Math.PI;
+      double scale = 0.5 + m_Random.nextDouble();
+      for (int i = 0; i < width; i++)
+        row[i] = scale * (1.1 + Math.sin(phase + 8.0 * i / width)) + 0.01 * m_Random.nextDouble();
+    }
+
+    return result;
+  }
+
+  /**
+   * Writes spectra as matrix.
+   *
+   * @param out		the stream to write to
+   * @param numRows	the number of spectra
+   * @param width	the number of wavelengths
+   * @throws IOException	if writing fails
+   */
+  public void writeData(OutputStream out, int numRows, int width) throws IOException {
+    PyMASerialisation.serialiseMatrix(out, generateData(numRows, width));
+  }
+
+  /**
+   * Writes a model or data file.
+   *
+   * @param file	the file to write
+   * @param writer	the writer for the content
+   * @throws IOException	if writing fails
+   */
+  public static void write(File file, Writer writer) throws IOException {
+    try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+      writer.write(out);
+    }
+  }
+
+  /**
+   * Writes content to a stream.
+   */
+  public interface Writer {
+
+    /**
+     * Writes the content.
+     *
+     * @param out		the stream to write to
+     * @throws IOException	if writing fails
+     */
+    void write(OutputStream out) throws IOException;
+  }
+
+  /**
+   * Generates models and data from the command-line.
+   * <br>
+   * Usage: SyntheticModelGenerator dir numInputs width numComponents numRows
+   *
+   * @param args	the command-line arguments
+   * @throws Exception	if generating fails
+   */
+  public static void main(String[] args) throws Exception {
+    if (args.length != 5) {
+      System.err.println("Usage: " + SyntheticModelGenerator.class.getName() + " dir numInputs width numComponents numRows");
+      System.exit(1);
+    }
+
+    File dir = new File(args[0]);
+    int numInputs = Integer.parseInt(args[1]);
+    int width = Integer.parseInt(args[2]);
+    int numComponents = Integer.parseInt(args[3]);
+    int numRows = Integer.parseInt(args[4]);
+    SyntheticModelGenerator generator = new SyntheticModelGenerator(1);
+
+    write(new File(dir, "map.dat"), (out) -> generator.writeMap(out, numInputs, width, numComponents));
+    write(new File(dir, "stages.dat"), (out) -> generator.writeStages(out, width, numComponents));
+    write(new File(dir, "simpls.dat"), (out) -> generator.writeSIMPLS(out, width, numComponents));
+    write(new File(dir, "data.dat"), (out) -> generator.writeData(out, numRows, width));
+  }
+}
@@ -0,0 +1,108 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * JfrMetricsTest.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.waikatodatamining.androidmatrix.jfr;
+
+import com.github.waikatodatamining.androidmatrix.LoadMonitoring;
+import com.github.waikatodatamining.androidmatrix.Metrics;
+import com.github.waikatodatamining.androidmatrix.PreprocessingMap;
+import com.github.waikatodatamining.androidmatrix.PreprocessingMapTest;
+import com.github.waikatodatamining.androidmatrix.PyMADeserialisation;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Test;
+import org.junit.jupiter.api.Assertions;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tests the JFR events emitted by the JfrLoadMonitor and JfrMetrics classes.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class JfrMetricsTest {
+
+  @Test
+  public void events() throws Exception {
+    double[][] bolts = PyMADeserialisation.deserialiseMatrix(new FileInputStream("src/test/resources/com/github/waikatodatamining/androidmatrix/bolts.dat"));
+
+    File file = File.createTempFile("events", ".jfr");
+    file.deleteOnExit();
+    JfrLoadMonitor.install();
+    try (Recording recording = new Recording()) {
+      recording.enable(JfrEvents.MatrixLoad.class);
+      recording.enable(JfrEvents.StageLoad.class);
+      recording.enable(JfrEvents.Execution.class);
+      recording.start();
+
+      PreprocessingMap map = PreprocessingMapTest.twoInputMap();
+      map.setMetrics(new JfrMetrics(10));
+      Map<String, double[]> data = new HashMap<>();
+      for (int i = 0; i < 20; i++) {
+        data.put("one", bolts[i]);
+        data.put("two", bolts[i]);
+        map.apply(data);
+      }
+
+      recording.stop();
+      recording.dump(file.toPath());
+    }
+    finally {
+      LoadMonitoring.setMonitor(null);
+    }
+
+    // Count the events
+    Map<String, Integer> counts = new HashMap<>();
+    int mapEvents = 0;
+    for (RecordedEvent event : RecordingFile.readAllEvents(file.toPath())) {
+      String name = event.getEventType().getName().substring(JfrEvents.PREFIX.length());
+      counts.merge(name, 1, Integer::sum);
+      if (name.equals("Execution") && (event.getInt("stageIndex") == Metrics.MAP))
+        mapEvents++;
+    }
+
+    // 6 matrices per pipeline (Log has none)
+    Assertions.assertEquals(12, (int) counts.get("MatrixLoad"));
+    Assertions.assertEquals(8, (int) counts.get("StageLoad"));
+    // every 10th call of 2x (4 stages + pipeline) and the map
+    Assertions.assertEquals(22, (int) counts.get("Execution"));
+    Assertions.assertEquals(2, mapEvents);
+  }
+
+  @Test
+  public void recordingOnlyWhileEnabled() {
+    Metrics.Probe probe = new JfrMetrics().probe("one", Metrics.PIPELINE, null);
+    Assertions.assertFalse(probe.isRecording());
+
+    try (Recording recording = new Recording()) {
+      recording.enable(JfrEvents.Execution.class);
+      recording.start();
+      Assertions.assertTrue(probe.isRecording());
+      recording.stop();
+    }
+
+    Assertions.assertFalse(probe.isRecording());
+  }
+
+}